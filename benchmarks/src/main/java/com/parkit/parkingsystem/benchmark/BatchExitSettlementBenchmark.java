@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.VehicleExit;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying 10k exits at once after a gate outage, on an embedded database
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchExitSettlementBenchmark {
+
+    private static final int NUMBER_OF_EXITS = 10000;
+
+    @Param({"false", "true"})
+    public boolean openTicketIndex;
+
+    private final EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig();
+    private ParkingService parkingService;
+    private List<VehicleExit> vehicleExits;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(NUMBER_OF_EXITS, 0);
+        parkVehicles();
+
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailabilityIndex();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.parkingSpotDAO = parkingSpotDAO;
+        if (openTicketIndex) {
+            ticketDAO.loadOpenTickets();
+        }
+        parkingService = new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO);
+
+        Date outTime = new Date();
+        vehicleExits = new ArrayList<>(NUMBER_OF_EXITS);
+        for (int number = 1; number <= NUMBER_OF_EXITS; number++) {
+            vehicleExits.add(new VehicleExit("CAR" + number, outTime));
+        }
+    }
+
+    //one open ticket per spot, every spot occupied
+    private void parkVehicles() throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        try {
+            Timestamp inTime = new Timestamp(System.currentTimeMillis() - (2 * 60 * 60 * 1000));
+            PreparedStatement ps = con.prepareStatement("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(?,?,0,?)");
+            for (int number = 1; number <= NUMBER_OF_EXITS; number++) {
+                ps.setInt(1, number);
+                ps.setString(2, "CAR" + number);
+                ps.setTimestamp(3, inTime);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+            Statement statement = con.createStatement();
+            statement.execute("update parking set AVAILABLE = false");
+            statement.close();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBaseConfig.closeDataSources();
+    }
+
+    @Benchmark
+    public List<ExitResult> settleTenThousandExits() {
+        return parkingService.settleExits(vehicleExits);
+    }
+}
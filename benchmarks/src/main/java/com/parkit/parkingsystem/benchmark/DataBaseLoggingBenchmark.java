@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Logging overhead of the DataBaseConfig connection and statement lifecycle, the four calls a DAO makes
+ * per query: borrow a connection, close the result set and the statement, return the connection.
+ * The JDBC objects are no-op proxies, so the score is the logging cost plus a few virtual calls.
+ * Each benchmark runs in its own JVM with a different log4j setup:
+ * <ul>
+ * <li>synchronousDebugLogging: every line logged and written by the calling thread, as before async loggers</li>
+ * <li>asynchronousDebugLogging: every line logged and handed to the disruptor ring buffer</li>
+ * <li>disabledDebugLogging: the application configuration, the lines are skipped by their level check</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class DataBaseLoggingBenchmark {
+
+    private static final String DEBUG_CONFIGURATION = "-Dlog4j.configurationFile=log4j2-benchmark-debug.properties";
+    private static final String SYNCHRONOUS_LOGGERS = "-DLog4jContextSelector=org.apache.logging.log4j.core.selector.ClassLoaderContextSelector";
+
+    //CPU work standing for the database round trip of a query, 0 floods the loggers with events
+    @Param({"0", "10000"})
+    public long queryTokens;
+
+    private DataBaseConfig dataBaseConfig;
+    private PreparedStatement preparedStatement;
+    private ResultSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Connection connection = stub(Connection.class);
+        DataSource dataSource = stub(DataSource.class, connection);
+        preparedStatement = stub(PreparedStatement.class);
+        resultSet = stub(ResultSet.class);
+        dataBaseConfig = new DataBaseConfig() {
+            @Override
+            public DataSource getDataSource() {
+                return dataSource;
+            }
+        };
+    }
+
+    /**
+     * Proxy doing nothing, a mock would cost more per call than the logging being measured
+     */
+    private static <T> T stub(Class<T> type, Object... returnedValues) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    for (Object returnedValue : returnedValues) {
+                        if (method.getReturnType().isInstance(returnedValue)) {
+                            return returnedValue;
+                        }
+                    }
+                    return null;
+                }));
+    }
+
+    private Connection query() throws SQLException {
+        Connection connection = dataBaseConfig.getConnection();
+        Blackhole.consumeCPU(queryTokens);
+        dataBaseConfig.closeResultSet(resultSet);
+        dataBaseConfig.closePreparedStatement(preparedStatement);
+        dataBaseConfig.closeConnection(connection);
+        return connection;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {DEBUG_CONFIGURATION, SYNCHRONOUS_LOGGERS})
+    public Connection synchronousDebugLogging() throws SQLException {
+        return query();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = DEBUG_CONFIGURATION)
+    public Connection asynchronousDebugLogging() throws SQLException {
+        return query();
+    }
+
+    @Benchmark
+    @Fork(1)
+    public Connection disabledDebugLogging() throws SQLException {
+        return query();
+    }
+}
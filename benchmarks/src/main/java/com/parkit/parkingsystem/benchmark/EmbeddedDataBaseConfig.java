@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Pooled configuration pointing to an in memory H2 database in MySQL mode, with the schema of resources/Data.sql
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    @Override
+    protected String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String getJdbcUrl() {
+        return "jdbc:h2:mem:parking;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected Properties getDataSourceProperties() {
+        return new Properties();
+    }
+
+    @Override
+    protected String getUserName() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    /**
+     * Drop and recreate the schema, with the given number of available spots per type
+     *
+     * @param numberOfCarSpots
+     * @param numberOfBikeSpots
+     * @throws SQLException
+     */
+    public void createSchema(int numberOfCarSpots, int numberOfBikeSpots) throws SQLException {
+        Connection con = getConnection();
+        try {
+            Statement statement = con.createStatement();
+            statement.execute("drop all objects");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL,"
+                    + " FACILITY_ID int NOT NULL DEFAULT 1, LEVEL int NOT NULL DEFAULT 0)");
+            statement.execute("create index PARKING_TYPE_AVAILABLE_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER)");
+            statement.execute("create index PARKING_FACILITY_TYPE_AVAILABLE_IDX on parking(FACILITY_ID, TYPE, AVAILABLE, LEVEL, PARKING_NUMBER)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE decimal(13,3), IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME,"
+                    + " FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            statement.execute("create index TICKET_VEHICLE_OUT_TIME_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME)");
+            statement.execute("create index TICKET_IN_TIME_IDX on ticket(IN_TIME)");
+            statement.execute("create table ticket_archive(ARCHIVE_ID int PRIMARY KEY AUTO_INCREMENT, ID int NOT NULL, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE decimal(13,3), IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL)");
+            statement.execute("create index TICKET_ARCHIVE_IN_TIME_IDX on ticket_archive(IN_TIME)");
+            statement.execute("create index TICKET_ARCHIVE_VEHICLE_IN_TIME_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME)");
+            statement.execute("create table vehicle_visits(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, VISITS int NOT NULL,"
+                    + " LAST_IN_TIME DATETIME NOT NULL)");
+            statement.close();
+
+            PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)");
+            for (int number = 1; number <= numberOfCarSpots + numberOfBikeSpots; number++) {
+                ps.setInt(1, number);
+                ps.setString(2, (number <= numberOfCarSpots) ? "CAR" : "BIKE");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } finally {
+            closeConnection(con);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fare and discount computation of one ticket, and pricing of many stays with tariffs by time of day
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FareCalculatorBenchmark {
+
+    private static final int STAYS = 1024;
+
+    private FareCalculatorService fareCalculatorService;
+    private Ticket carTicket;
+    private Ticket bikeTicket;
+    private TariffTable peakTariffTable;
+    private long[] inTimes;
+    private long[] outTimes;
+
+    @Setup
+    public void setUp() {
+        fareCalculatorService = new FareCalculatorService();
+        Date outTime = new Date();
+        Date inTime = new Date(outTime.getTime() - (3 * 60 * 60 * 1000));
+        carTicket = newTicket(ParkingType.CAR, inTime, outTime);
+        bikeTicket = newTicket(ParkingType.BIKE, inTime, outTime);
+        peakTariffTable = new TariffTable.Builder(ZoneOffset.UTC)
+                .freeDuration(ParkingType.CAR, 0.5)
+                .rate(ParkingType.CAR, 1.5)
+                .rate(2, ParkingType.CAR, 3.0, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), LocalTime.of(8, 0), LocalTime.of(18, 0))
+                .rate(2, ParkingType.CAR, 0.5, EnumSet.allOf(DayOfWeek.class), LocalTime.of(22, 0), LocalTime.of(6, 0))
+                .build();
+        //stays of up to two days starting at any time of a month
+        Random random = new Random(42);
+        inTimes = new long[STAYS];
+        outTimes = new long[STAYS];
+        for (int i = 0; i < STAYS; i++) {
+            inTimes[i] = outTime.getTime() - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(30));
+            outTimes[i] = inTimes[i] + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(2));
+        }
+    }
+
+    private static Ticket newTicket(ParkingType parkingType, Date inTime, Date outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        return ticket;
+    }
+
+    @Benchmark
+    public double calculateFareCar() {
+        fareCalculatorService.calculateFare(carTicket);
+        return carTicket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateFareBike() {
+        fareCalculatorService.calculateFare(bikeTicket);
+        return bikeTicket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateFareWithDiscount() {
+        fareCalculatorService.calculateFare(carTicket);
+        fareCalculatorService.calculateDiscount(carTicket);
+        return carTicket.getPrice();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STAYS)
+    public long priceStaysWithPeakTariffs() {
+        long total = 0;
+        for (int i = 0; i < STAYS; i++) {
+            total += peakTariffTable.priceInMinorUnits(2, ParkingType.CAR, inTimes[i], outTimes[i]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,112 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the gate server: 64 vehicles enter then leave through 1 to 64 concurrent lanes (HTTP clients),
+ * each ticket repository call waiting 1 ms like a database round trip. The gates are served by virtual threads
+ * on Java 21 and by a pool of 64 threads before, in both cases throughput grows with the number of lanes
+ * as long as the requests mostly wait, since a waiting lane does not hold up the others.
+ * The server runs with TCP_NODELAY like the App, a single lane is capped by delayed acks without it
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + GateServer.NO_DELAY_PROPERTY + "=true")
+@State(Scope.Benchmark)
+public class GateServerBenchmark {
+
+    private static final int VEHICLES = 64;
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"1", "4", "16", "64"})
+    public int lanes;
+
+    private GateServer gateServer;
+    private ExecutorService clients;
+    private final AtomicLong vehicles = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        InMemoryParkingSpotRepository parkingSpotRepository = new InMemoryParkingSpotRepository(VEHICLES, 0);
+        TicketRepository ticketRepository = new InMemoryTicketRepository(parkingSpotRepository);
+        TicketRepository slowTicketRepository = (TicketRepository) Proxy.newProxyInstance(TicketRepository.class.getClassLoader(),
+                new Class<?>[]{TicketRepository.class}, (proxy, method, args) -> {
+                    LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                    try {
+                        return method.invoke(ticketRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        gateServer = new GateServer(new ParkingService(null, parkingSpotRepository, slowTicketRepository), 0,
+                GateServer.newLaneExecutor(GateServer.DEFAULT_MAX_LANES));
+        clients = Executors.newFixedThreadPool(lanes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        clients.shutdown();
+        gateServer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VEHICLES)
+    public int enterAndLeave() throws Exception {
+        List<Callable<Integer>> laneWork = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++) {
+            int vehiclesOfLane = VEHICLES / lanes;
+            laneWork.add(() -> {
+                int settled = 0;
+                for (int i = 0; i < vehiclesOfLane; i++) {
+                    String vehicleRegNumber = "G" + vehicles.incrementAndGet();
+                    post("/entry?type=CAR&vehicle=" + vehicleRegNumber);
+                    if (post("/exit?vehicle=" + vehicleRegNumber) == 200) {
+                        settled++;
+                    }
+                }
+                return settled;
+            });
+        }
+        int settled = 0;
+        for (Future<Integer> result : clients.invokeAll(laneWork)) {
+            settled += result.get();
+        }
+        return settled;
+    }
+
+    private int post(String pathAndQuery) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + gateServer.getPort() + pathAndQuery).openConnection();
+        connection.setRequestMethod("POST");
+        int status = connection.getResponseCode();
+        //read to the end so the connection is kept alive for the next request of the lane
+        try (InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            while (body.read() >= 0) {
+                //drain
+            }
+        }
+        return status;
+    }
+}
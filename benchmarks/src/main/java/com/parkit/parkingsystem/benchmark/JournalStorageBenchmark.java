@@ -0,0 +1,67 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.ParkingSystemConfig;
+import com.parkit.parkingsystem.config.StorageType;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One vehicle entering then leaving, on the in memory storage and on the journal storage,
+ * the difference is the cost of appending the spot and ticket records to the memory mapped journal
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalStorageBenchmark {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    @Param({"MEMORY", "JOURNAL"})
+    public StorageType storageType;
+
+    private Path journalDirectory;
+    private ParkingSystemConfig parkingSystemConfig;
+    private ParkingService parkingService;
+    private long visit;
+
+    @Setup
+    public void setUp() throws IOException {
+        journalDirectory = Files.createTempDirectory("journal-benchmark");
+        System.setProperty(ParkingSystemConfig.JOURNAL_DIRECTORY_PROPERTY, journalDirectory.toString());
+        parkingSystemConfig = new ParkingSystemConfig(null, storageType);
+        parkingService = parkingSystemConfig.parkingService;
+    }
+
+    @TearDown
+    public void tearDown() {
+        parkingSystemConfig.shutdown();
+        File[] files = journalDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        journalDirectory.toFile().delete();
+    }
+
+    @Benchmark
+    public ExitResult entryAndExit() {
+        //plates cycle so the per vehicle history stays small
+        String vehicleRegNumber = "V" + (visit++ % 1000);
+        Date inTime = new Date();
+        parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, inTime);
+        return parkingService.processExitingVehicle(vehicleRegNumber, new Date(inTime.getTime() + ONE_HOUR));
+    }
+}
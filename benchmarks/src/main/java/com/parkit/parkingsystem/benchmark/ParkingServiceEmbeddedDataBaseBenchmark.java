@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A vehicle entering then exiting through ParkingService, with the real DAOs on an embedded database
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingServiceEmbeddedDataBaseBenchmark {
+
+    private static final int NUMBER_OF_CAR_SPOTS = 1000;
+    private static final int NUMBER_OF_BIKE_SPOTS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class ParkingLot {
+        private final EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig();
+        private final AtomicInteger gateCount = new AtomicInteger();
+        private ParkingSpotDAO parkingSpotDAO;
+        private TicketDAO ticketDAO;
+
+        @Setup
+        public void setUp() throws Exception {
+            SilentConsole.silence();
+            dataBaseConfig.createSchema(NUMBER_OF_CAR_SPOTS, NUMBER_OF_BIKE_SPOTS);
+            parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            parkingSpotDAO.loadAvailabilityIndex();
+            ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            ticketDAO.parkingSpotDAO = parkingSpotDAO;
+            ticketDAO.loadOpenTickets();
+        }
+
+        @TearDown
+        public void tearDown() {
+            DataBaseConfig.closeDataSources();
+            SilentConsole.restore();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private ParkingService parkingService;
+
+        @Setup
+        public void setUp(ParkingLot parkingLot) throws Exception {
+            //every gate thread drives its own vehicle
+            InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class, withSettings().stubOnly());
+            when(inputReaderUtil.readSelection()).thenReturn(1);
+            when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("GATE" + parkingLot.gateCount.incrementAndGet());
+            parkingService = new ParkingService(inputReaderUtil, parkingLot.parkingSpotDAO, parkingLot.ticketDAO);
+        }
+    }
+
+    @Benchmark
+    public void processIncomingAndExitingVehicle(Gate gate) {
+        gate.parkingService.processIncomingVehicle();
+        gate.parkingService.processExitingVehicle();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void processIncomingAndExitingVehicleFromEightGates(Gate gate) {
+        gate.parkingService.processIncomingVehicle();
+        gate.parkingService.processExitingVehicle();
+    }
+}
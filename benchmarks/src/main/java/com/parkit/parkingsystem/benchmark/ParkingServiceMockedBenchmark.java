@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Entry and exit workflows of ParkingService with mocked DAOs, measuring the service logic alone
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParkingServiceMockedBenchmark {
+
+    private ParkingService parkingService;
+
+    @Setup
+    public void setUp() throws Exception {
+        SilentConsole.silence();
+        //stub only mocks do not record invocations, so memory stays flat over millions of calls
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class, withSettings().stubOnly());
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+
+        TicketDAO ticketDAO = mock(TicketDAO.class, withSettings().stubOnly());
+        when(ticketDAO.getCountOfPreviousTickets(anyString())).thenReturn(2);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class), any(ParkingType.class))).thenAnswer(invocation -> {
+            Ticket ticket = invocation.getArgument(0);
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            return true;
+        });
+        when(ticketDAO.getOpenTicket(anyString())).thenAnswer(invocation -> {
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            ticket.setVehicleRegNumber("ABCDEF");
+            ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+            return ticket;
+        });
+        when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(true);
+
+        ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class, withSettings().stubOnly());
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SilentConsole.restore();
+    }
+
+    @Benchmark
+    public void processIncomingVehicle() {
+        parkingService.processIncomingVehicle();
+    }
+
+    @Benchmark
+    public void processExitingVehicle() {
+        parkingService.processExitingVehicle();
+    }
+}
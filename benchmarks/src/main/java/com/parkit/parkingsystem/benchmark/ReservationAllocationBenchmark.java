@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryReservationRepository;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ReservationService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claiming then releasing a spot while reservations of the next 30 days hold spots. Bookings take the lowest
+ * free spot, so the lowest spots are the ones most likely held within the guard window, out of the spots claims take
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationAllocationBenchmark {
+
+    private static final int NUMBER_OF_CAR_SPOTS = 1000;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long BOOKING_HORIZON_MS = 30 * 24 * HOUR_MS;
+
+    @Param({"0", "50000"})
+    public int reservations;
+
+    private ParkingSpotIndex parkingSpotIndex;
+    private ReservationService reservationService;
+
+    @Setup
+    public void setUp() {
+        parkingSpotIndex = new ParkingSpotIndex();
+        for (int number = 1; number <= NUMBER_OF_CAR_SPOTS; number++) {
+            parkingSpotIndex.update(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        reservationService = new ReservationService(() -> parkingSpotIndex, new InMemoryReservationRepository());
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        int booked = 0;
+        while (booked < reservations) {
+            long start = now + HOUR_MS + (long) (random.nextDouble() * BOOKING_HORIZON_MS);
+            long duration = HOUR_MS + (long) (random.nextDouble() * 3 * HOUR_MS);
+            if (reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "BK" + booked,
+                    new Date(start), new Date(start + duration)) != null) {
+                booked++;
+            }
+        }
+    }
+
+    @Benchmark
+    public int claimAndRelease() {
+        int spot = parkingSpotIndex.claimLowestAvailable(ParkingSpot.ANY_FACILITY, ParkingType.CAR);
+        parkingSpotIndex.update(new ParkingSpot(spot, ParkingType.CAR, true));
+        return spot;
+    }
+}
@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Claiming then releasing a spot from 8 gates at once, with the same number of spots spread over 1 to 8 facilities.
+ * Each gate allocates in facility (gate number % facilities) + 1, so with 8 facilities no two gates share a shard.
+ * Throughput only scales with the number of shards up to the number of cores of the machine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ShardedAllocationBenchmark {
+
+    private static final int NUMBER_OF_CAR_SPOTS = 8000;
+    private static final int LEVELS_PER_FACILITY = 4;
+
+    @Param({"1", "2", "4", "8"})
+    public int facilities;
+
+    private ParkingSpotIndex parkingSpotIndex;
+    private final AtomicInteger gates = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Gate {
+        int facilityId;
+
+        @Setup
+        public void setUp(ShardedAllocationBenchmark benchmark) {
+            facilityId = (benchmark.gates.getAndIncrement() % benchmark.facilities) + 1;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        parkingSpotIndex = new ParkingSpotIndex();
+        int spotsPerFacility = NUMBER_OF_CAR_SPOTS / facilities;
+        for (int number = 1; number <= NUMBER_OF_CAR_SPOTS; number++) {
+            int facilityId = ((number - 1) / spotsPerFacility) + 1;
+            int level = ((number - 1) % spotsPerFacility) * LEVELS_PER_FACILITY / spotsPerFacility;
+            parkingSpotIndex.update(new ParkingSpot(number, ParkingType.CAR, true, facilityId, level));
+        }
+    }
+
+    @Benchmark
+    public int claimAndReleaseInFacility(Gate gate) {
+        int spot = parkingSpotIndex.claimLowestAvailable(gate.facilityId, ParkingType.CAR);
+        //released without its facility and level, the index keeps it in its shard
+        parkingSpotIndex.update(new ParkingSpot(spot, ParkingType.CAR, true));
+        return spot;
+    }
+}
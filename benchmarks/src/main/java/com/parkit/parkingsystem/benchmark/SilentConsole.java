@@ -0,0 +1,31 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Discard the driver prompts printed by ParkingService while a benchmark runs
+ */
+public final class SilentConsole {
+
+    private static final PrintStream originalOut = System.out;
+
+    private SilentConsole() {
+    }
+
+    public static void silence() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    public static void restore() {
+        System.setOut(originalOut);
+    }
+}
@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claiming then releasing a spot from many gates at once, on the in memory index alone
+ * and through ParkingSpotDAO on an embedded database
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SpotAllocationBenchmark {
+
+    private static final int NUMBER_OF_CAR_SPOTS = 10000;
+
+    private final EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig();
+    private ParkingSpotIndex parkingSpotIndex;
+    private ParkingSpotDAO parkingSpotDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        parkingSpotIndex = new ParkingSpotIndex();
+        for (int number = 1; number <= NUMBER_OF_CAR_SPOTS; number++) {
+            parkingSpotIndex.update(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        dataBaseConfig.createSchema(NUMBER_OF_CAR_SPOTS, 0);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailabilityIndex();
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBaseConfig.closeDataSources();
+    }
+
+    @Benchmark
+    public int claimAndReleaseOnIndex() {
+        int spot = parkingSpotIndex.claimLowestAvailable(ParkingType.CAR);
+        parkingSpotIndex.update(new ParkingSpot(spot, ParkingType.CAR, true));
+        return spot;
+    }
+
+    @Benchmark
+    public int claimAndReleaseOnDataBase() {
+        int spot = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        parkingSpotDAO.updateParking(new ParkingSpot(spot, ParkingType.CAR, true));
+        return spot;
+    }
+}
@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of the discount check and of the last ticket of a vehicle on a year of closed tickets, all of them
+ * in the ticket table or all but the last day moved to the archive. The recurring customer cache is disabled
+ * so every count is read from database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketArchiveBenchmark {
+
+    private static final int TICKETS = 200_000;
+    private static final int VEHICLES = 20_000;
+    private static final int SPOTS = 500;
+    private static final long NOW = System.currentTimeMillis();
+    private static final long YEAR_MS = TimeUnit.DAYS.toMillis(365);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"false", "true"})
+    public boolean archived;
+
+    private final EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig();
+    private final TicketDAO ticketDAO = new TicketDAO();
+    private final Random random = new Random(42);
+    private int[] visitsOfVehicle;
+
+    @Setup
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(SPOTS, 0);
+        visitsOfVehicle = new int[VEHICLES];
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement(
+                "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)")) {
+            Random tickets = new Random(7);
+            //in in time order, like tickets saved at the gates
+            for (int i = 0; i < TICKETS; i++) {
+                long inTime = NOW - YEAR_MS + i * (YEAR_MS / TICKETS);
+                int vehicle = tickets.nextInt(VEHICLES);
+                visitsOfVehicle[vehicle]++;
+                ps.setInt(1, 1 + i % SPOTS);
+                ps.setString(2, vehicleRegNumber(vehicle));
+                ps.setBigDecimal(3, BigDecimal.ONE);
+                ps.setTimestamp(4, new Timestamp(inTime));
+                ps.setTimestamp(5, new Timestamp(inTime + 60 * 60 * 1000));
+                ps.addBatch();
+                if (i % 10_000 == 9_999) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.recurringCustomerCache = new RecurringCustomerCache(0, 0);
+        if (archived) {
+            TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+            ticketArchiveDAO.dataBaseConfig = dataBaseConfig;
+            ticketArchiveDAO.archiveClosedBefore(NOW - DAY_MS);
+        }
+        //the archival must not change what the gates read
+        for (int vehicle = 0; vehicle < VEHICLES; vehicle += 499) {
+            int count = ticketDAO.getCountOfPreviousTickets(vehicleRegNumber(vehicle));
+            if (count != visitsOfVehicle[vehicle]) {
+                throw new IllegalStateException(vehicleRegNumber(vehicle) + " has " + count + " tickets instead of " + visitsOfVehicle[vehicle]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBaseConfig.closeDataSources();
+    }
+
+    private static String vehicleRegNumber(int vehicle) {
+        return "AR" + vehicle;
+    }
+
+    @Benchmark
+    public int countOfPreviousTickets() {
+        return ticketDAO.getCountOfPreviousTickets(vehicleRegNumber(random.nextInt(VEHICLES)));
+    }
+
+    @Benchmark
+    public Ticket lastTicket() {
+        return ticketDAO.getTicket(vehicleRegNumber(random.nextInt(VEHICLES)));
+    }
+}
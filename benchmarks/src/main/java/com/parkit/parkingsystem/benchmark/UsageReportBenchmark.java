@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ClosedTicketSource;
+import com.parkit.parkingsystem.dao.TicketReportDAO;
+import com.parkit.parkingsystem.service.UsageReportService;
+import com.parkit.parkingsystem.util.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily revenue and usage report of a year of closed tickets, generated on the fly so that no ticket is ever held,
+ * and streamed from an embedded database with a forward only cursor
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsageReportBenchmark {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TO = FROM.plusYears(1);
+    private static final int GENERATED_TICKETS = 10_000_000;
+    private static final int DATABASE_TICKETS = 200_000;
+    private static final int SPOTS = 500;
+
+    private UsageReportService generatedTicketsReport;
+    private static final Writer nullWriter = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        generatedTicketsReport = new UsageReportService(generatedTickets(GENERATED_TICKETS), ZoneOffset.UTC);
+    }
+
+    /**
+     * Closed tickets in an embedded database, only set up for the database benchmark
+     */
+    @State(Scope.Benchmark)
+    public static class DataBaseTickets {
+        private final EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig();
+        private UsageReportService report;
+
+        @Setup
+        public void setUp() throws Exception {
+            dataBaseConfig.createSchema(SPOTS, 0);
+            Connection con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)")) {
+                long[] batched = new long[1];
+                generatedTickets(DATABASE_TICKETS).forEachClosedTicket(Long.MIN_VALUE, Long.MAX_VALUE, (parkingType, inTime, outTime, price) -> {
+                    try {
+                        ps.setInt(1, 1 + (int) (inTime % SPOTS));
+                        ps.setString(2, "CAR" + (inTime % 100000));
+                        ps.setBigDecimal(3, Money.toBigDecimal(price));
+                        ps.setTimestamp(4, new Timestamp(inTime));
+                        ps.setTimestamp(5, new Timestamp(outTime));
+                        ps.addBatch();
+                        if (++batched[0] % 1000 == 0) {
+                            ps.executeBatch();
+                        }
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                ps.executeBatch();
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+            TicketReportDAO ticketReportDAO = new TicketReportDAO();
+            ticketReportDAO.dataBaseConfig = dataBaseConfig;
+            report = new UsageReportService(ticketReportDAO, ZoneOffset.UTC);
+        }
+
+        @TearDown
+        public void tearDown() {
+            DataBaseConfig.closeDataSources();
+        }
+    }
+
+    /**
+     * Cars entering at a steady pace over the year, staying up to a day and paying 1.5 per hour
+     */
+    private static ClosedTicketSource generatedTickets(int numberOfTickets) {
+        return (fromInTime, toInTime, visitor) -> {
+            Random random = new Random(42);
+            long start = FROM.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long interval = TimeUnit.DAYS.toMillis(365) / numberOfTickets;
+            long count = 0;
+            for (int i = 0; i < numberOfTickets; i++) {
+                long inTime = start + i * interval;
+                if (inTime >= fromInTime && inTime < toInTime) {
+                    long stay = (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(1));
+                    visitor.visit(ParkingType.CAR, inTime, inTime + stay, stay * 1500 / TimeUnit.HOURS.toMillis(1));
+                    count++;
+                }
+            }
+            return count;
+        };
+    }
+
+    //a small heap, the report holds no ticket
+    @Benchmark
+    @Fork(value = 1, jvmArgs = {"-Xmx32m"})
+    public long reportTenMillionGeneratedTickets() throws Exception {
+        return generatedTicketsReport.writeCsv(FROM, TO, nullWriter);
+    }
+
+    @Benchmark
+    public long reportDataBaseTickets(DataBaseTickets dataBaseTickets) throws Exception {
+        return dataBaseTickets.report.writeCsv(FROM, TO, nullWriter);
+    }
+}
@@ -5,19 +5,55 @@ use prod;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+FACILITY_ID int NOT NULL DEFAULT 1,
+LEVEL int NOT NULL DEFAULT 0
 );
 
+create index PARKING_TYPE_AVAILABLE_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+create index PARKING_FACILITY_TYPE_AVAILABLE_IDX on parking(FACILITY_ID, TYPE, AVAILABLE, LEVEL, PARKING_NUMBER);
+
 create table ticket(
  ID int PRIMARY KEY AUTO_INCREMENT,
  PARKING_NUMBER int NOT NULL,
  VEHICLE_REG_NUMBER varchar(10) NOT NULL,
- PRICE double,
+ PRICE decimal(13,3),
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create index TICKET_VEHICLE_OUT_TIME_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
+create index TICKET_IN_TIME_IDX on ticket(IN_TIME);
+
+create table reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create index RESERVATION_END_TIME_IDX on reservation(END_TIME);
+
+create table ticket_archive(
+ ARCHIVE_ID int PRIMARY KEY AUTO_INCREMENT,
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(13,3),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index TICKET_ARCHIVE_IN_TIME_IDX on ticket_archive(IN_TIME);
+create index TICKET_ARCHIVE_VEHICLE_IN_TIME_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table vehicle_visits(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL,
+ LAST_IN_TIME DATETIME NOT NULL);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -32,19 +68,55 @@ use test;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+FACILITY_ID int NOT NULL DEFAULT 1,
+LEVEL int NOT NULL DEFAULT 0
 );
 
+create index PARKING_TYPE_AVAILABLE_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+create index PARKING_FACILITY_TYPE_AVAILABLE_IDX on parking(FACILITY_ID, TYPE, AVAILABLE, LEVEL, PARKING_NUMBER);
+
 create table ticket(
  ID int PRIMARY KEY AUTO_INCREMENT,
  PARKING_NUMBER int NOT NULL,
  VEHICLE_REG_NUMBER varchar(10) NOT NULL,
- PRICE double,
+ PRICE decimal(13,3),
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create index TICKET_VEHICLE_OUT_TIME_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
+create index TICKET_IN_TIME_IDX on ticket(IN_TIME);
+
+create table reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create index RESERVATION_END_TIME_IDX on reservation(END_TIME);
+
+create table ticket_archive(
+ ARCHIVE_ID int PRIMARY KEY AUTO_INCREMENT,
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(13,3),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index TICKET_ARCHIVE_IN_TIME_IDX on ticket_archive(IN_TIME);
+create index TICKET_ARCHIVE_VEHICLE_IN_TIME_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table vehicle_visits(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL,
+ LAST_IN_TIME DATETIME NOT NULL);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -0,0 +1,6 @@
+/* Index used by the next available slot query when the in memory index is not loaded */
+use prod;
+create index PARKING_TYPE_AVAILABLE_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+use test;
+create index PARKING_TYPE_AVAILABLE_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER);
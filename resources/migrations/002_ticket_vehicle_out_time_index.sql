@@ -0,0 +1,6 @@
+/* Index used to find the open ticket of a vehicle when it is not in the open ticket index */
+use prod;
+create index TICKET_VEHICLE_OUT_TIME_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
+
+use test;
+create index TICKET_VEHICLE_OUT_TIME_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
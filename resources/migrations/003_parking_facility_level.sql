@@ -0,0 +1,8 @@
+/* Facility and level of each spot, existing spots are on the ground level of facility 1 */
+use prod;
+alter table parking add column FACILITY_ID int NOT NULL DEFAULT 1, add column LEVEL int NOT NULL DEFAULT 0;
+create index PARKING_FACILITY_TYPE_AVAILABLE_IDX on parking(FACILITY_ID, TYPE, AVAILABLE, LEVEL, PARKING_NUMBER);
+
+use test;
+alter table parking add column FACILITY_ID int NOT NULL DEFAULT 1, add column LEVEL int NOT NULL DEFAULT 0;
+create index PARKING_FACILITY_TYPE_AVAILABLE_IDX on parking(FACILITY_ID, TYPE, AVAILABLE, LEVEL, PARKING_NUMBER);
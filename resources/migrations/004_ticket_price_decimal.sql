@@ -0,0 +1,6 @@
+/* Ticket prices are exact amounts with three decimals, existing prices are rounded half up */
+use prod;
+alter table ticket modify PRICE decimal(13,3);
+
+use test;
+alter table ticket modify PRICE decimal(13,3);
@@ -0,0 +1,6 @@
+/* Closed tickets are streamed by in time for the reports, without sorting the ticket table */
+use prod;
+create index TICKET_IN_TIME_IDX on ticket(IN_TIME);
+
+use test;
+create index TICKET_IN_TIME_IDX on ticket(IN_TIME);
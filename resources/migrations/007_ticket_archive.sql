@@ -0,0 +1,34 @@
+/* Closed tickets older than parkingsystem.archive.afterDays moved out of the ticket table, with their visits rolled up per vehicle */
+use prod;
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(13,3),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index TICKET_ARCHIVE_IN_TIME_IDX on ticket_archive(IN_TIME);
+create index TICKET_ARCHIVE_VEHICLE_IN_TIME_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table vehicle_visits(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL,
+ LAST_IN_TIME DATETIME NOT NULL);
+
+use test;
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(13,3),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index TICKET_ARCHIVE_IN_TIME_IDX on ticket_archive(IN_TIME);
+create index TICKET_ARCHIVE_VEHICLE_IN_TIME_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table vehicle_visits(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL,
+ LAST_IN_TIME DATETIME NOT NULL);
\ No newline at end of file
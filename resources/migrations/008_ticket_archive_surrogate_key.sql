@@ -0,0 +1,6 @@
+/* Archived tickets get their own key, a ticket ID may be given again by MySQL before 8 once the ticket table is emptied and the server restarted */
+use prod;
+alter table ticket_archive drop primary key, modify ID int NOT NULL, add ARCHIVE_ID int PRIMARY KEY AUTO_INCREMENT FIRST;
+
+use test;
+alter table ticket_archive drop primary key, modify ID int NOT NULL, add ARCHIVE_ID int PRIMARY KEY AUTO_INCREMENT FIRST;
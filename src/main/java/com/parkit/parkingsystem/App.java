@@ -1,13 +1,207 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ParkingSystemConfig;
+import com.parkit.parkingsystem.config.StorageType;
+import com.parkit.parkingsystem.dao.ClosedTicketSource;
+import com.parkit.parkingsystem.dao.TicketExportReader;
+import com.parkit.parkingsystem.dao.TicketReportDAO;
+import com.parkit.parkingsystem.model.IngestionReport;
+import com.parkit.parkingsystem.model.Occupancy;
+import com.parkit.parkingsystem.model.SimulationReport;
+import com.parkit.parkingsystem.model.TrafficProfile;
+import com.parkit.parkingsystem.service.EventIngestionService;
+import com.parkit.parkingsystem.service.GateServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.TrafficSimulator;
+import com.parkit.parkingsystem.service.UsageReportService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
     public static void main(String args[]){
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        boolean headless = false;
+        boolean simulate = false;
+        Long seed = null;
+        StorageType storageType = ParkingSystemConfig.getConfiguredStorageType();
+        String eventsFile = null;
+        Integer lanes = null;
+        Integer gatePort = null;
+        LocalDate reportFrom = null;
+        LocalDate reportTo = null;
+        String exportFile = null;
+        String reportFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--headless")) {
+                headless = true;
+            } else if (args[i].equals("--simulate")) {
+                simulate = true;
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--gate") && i + 1 < args.length) {
+                gatePort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--report") && i + 2 < args.length) {
+                reportFrom = LocalDate.parse(args[++i]);
+                reportTo = LocalDate.parse(args[++i]);
+            } else if (args[i].equals("--export") && i + 1 < args.length) {
+                exportFile = args[++i];
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                reportFile = args[++i];
+            } else if (args[i].equals("--storage") && i + 1 < args.length) {
+                storageType = StorageType.fromName(args[++i]);
+            } else if (args[i].equals("--lanes") && i + 1 < args.length) {
+                lanes = Integer.parseInt(args[++i]);
+            } else {
+                eventsFile = args[i];
+            }
+        }
+        if (reportFrom != null) {
+            runReport(reportFrom, reportTo, exportFile, reportFile);
+        } else if (gatePort != null) {
+            runGateServer(storageType, gatePort, (lanes == null) ? GateServer.DEFAULT_MAX_LANES : lanes);
+        } else if (simulate) {
+            runSimulation(storageType, eventsFile, seed, reportFile, (lanes == null) ? EventIngestionService.DEFAULT_LANES : lanes);
+        } else if (headless) {
+            runHeadless(storageType, eventsFile, (lanes == null) ? EventIngestionService.DEFAULT_LANES : lanes);
+        } else {
+            InteractiveShell.loadInterface(storageType);
+        }
+    }
+
+    /**
+     * Write the daily revenue and usage CSV report of the closed tickets:
+     * --report FROM TO [--export tickets.csv] [--out report.csv], the days being yyyy-MM-dd and TO excluded.
+     * Tickets are streamed from the export when given, from the report database otherwise,
+     * and the report is written to standard output when no file is given
+     */
+    private static void runReport(LocalDate from, LocalDate to, String exportFile, String reportFile) {
+        ZoneId zone = ZoneId.systemDefault();
+        ClosedTicketSource closedTicketSource = (exportFile == null) ? new TicketReportDAO()
+                : new TicketExportReader(Paths.get(exportFile), zone);
+        UsageReportService usageReportService = new UsageReportService(closedTicketSource, zone);
+        try {
+            if (reportFile == null) {
+                //standard output is flushed by the report and stays open
+                usageReportService.writeCsv(from, to, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8)) {
+                    usageReportService.writeCsv(from, to, writer);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Report failed", e);
+        } finally {
+            DataBaseConfig.closeDataSources();
+        }
+    }
+
+    /**
+     * Serve the entries and exits of the gate controllers over HTTP until the process is stopped:
+     * --gate PORT [--lanes N] [--storage mysql|memory|journal], N being the number of threads when there are no virtual threads
+     */
+    private static void runGateServer(StorageType storageType, int port, int lanes) {
+        //the JDK server writes the headers and the body of a response separately, without no delay each small
+        //response waits for the delayed ack of the client. Read once by the first server, the metrics one included
+        if (System.getProperty(GateServer.NO_DELAY_PROPERTY) == null) {
+            System.setProperty(GateServer.NO_DELAY_PROPERTY, "true");
+        }
+        ParkingSystemConfig parkingSystemConfig = new ParkingSystemConfig(null, storageType);
+        CountDownLatch stopped = new CountDownLatch(1);
+        try {
+            GateServer gateServer = new GateServer(parkingSystemConfig.parkingService, port, GateServer.newLaneExecutor(lanes));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                gateServer.close();
+                parkingSystemConfig.shutdown();
+                stopped.countDown();
+            }, "gate-server-shutdown"));
+            stopped.await();
+        } catch (Exception e) {
+            logger.error("Gate server failed", e);
+            parkingSystemConfig.shutdown();
+        }
+    }
+
+    /**
+     * Process gate events without the interactive menu:
+     * --headless [events file] [--lanes N] [--storage mysql|memory|journal], events are read from standard input when no file is given
+     */
+    private static void runHeadless(StorageType storageType, String eventsFile, int lanes) {
+        ParkingSystemConfig parkingSystemConfig = new ParkingSystemConfig(null, storageType);
+        EventIngestionService eventIngestionService = new EventIngestionService(parkingSystemConfig.parkingService,
+                lanes, EventIngestionService.DEFAULT_LANE_CAPACITY);
+        try (BufferedReader reader = (eventsFile == null)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(eventsFile), StandardCharsets.UTF_8)) {
+            IngestionReport report = eventIngestionService.ingest(reader);
+            System.out.println(report);
+            for (Occupancy occupancy : parkingSystemConfig.occupancyService.getOccupancies()) {
+                System.out.println(occupancy);
+            }
+        } catch (Exception e) {
+            logger.error("Headless ingestion failed", e);
+        } finally {
+            parkingSystemConfig.shutdown();
+        }
+    }
+
+    /**
+     * Drive the parking service with generated traffic and print the outcome:
+     * --simulate [profile file] [--seed N] [--lanes N] [--storage mysql|memory|journal] [--out events.csv].
+     * The profile is read from a properties file (see {@link TrafficProfile#fromProperties(Properties)}),
+     * the default one is used when no file is given. With --out the events are written for --headless instead
+     */
+    private static void runSimulation(StorageType storageType, String profileFile, Long seed, String eventsFile, int lanes) {
+        TrafficProfile profile;
+        try {
+            Properties properties = new Properties();
+            if (profileFile != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(profileFile), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+            profile = TrafficProfile.fromProperties(properties);
+        } catch (Exception e) {
+            logger.error("Unable to read traffic profile " + profileFile, e);
+            return;
+        }
+        if (seed != null) {
+            profile.setSeed(seed);
+        }
+        if (eventsFile != null) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(eventsFile), StandardCharsets.UTF_8)) {
+                new TrafficSimulator(null, profile, lanes).writeEvents(writer);
+            } catch (Exception e) {
+                logger.error("Unable to write events to " + eventsFile, e);
+            }
+            return;
+        }
+        ParkingSystemConfig parkingSystemConfig = new ParkingSystemConfig(null, storageType);
+        try {
+            SimulationReport report = new TrafficSimulator(parkingSystemConfig.parkingService, profile, lanes).run();
+            System.out.println(report);
+            for (Occupancy occupancy : parkingSystemConfig.occupancyService.getOccupancies()) {
+                System.out.println(occupancy);
+            }
+        } catch (Exception e) {
+            logger.error("Simulation failed", e);
+        } finally {
+            parkingSystemConfig.shutdown();
+        }
     }
 }
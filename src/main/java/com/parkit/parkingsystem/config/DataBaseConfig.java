@@ -1,37 +1,165 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.OperationTimer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataBaseConfig {
 
+    //the connection and statement lifecycle lines are logged at debug level behind a level check, so the
+    //hot path neither builds nor dispatches a log event when debug is off
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
-    public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+    //time waited for a pooled connection, a high percentile means the pool is too small
+    private static final OperationTimer connectionTimer = MetricsRegistry.getDefault().timer("DataBaseConfig.getConnection");
+
+    //pool settings shared by every database the application talks to, the size can be raised for many gate lanes
+    public static final String POOL_SIZE_PROPERTY = "parkingsystem.db.poolSize";
+    private static final int MAXIMUM_POOL_SIZE = 10;
+    private static final int MINIMUM_IDLE = 2;
+    private static final long IDLE_TIMEOUT_MS = 60 * 1000;
+    private static final long VALIDATION_TIMEOUT_MS = 3 * 1000;
+    private static final long LEAK_DETECTION_THRESHOLD_MS = 10 * 1000;
+    //statements cached per connection, room for every DBConstants query and the batch sizes of the IN list queries
+    private static final int PREPARED_STATEMENT_CACHE_SIZE = 250;
+    //the IN list queries of a full batch are a bit more than 2000 characters long
+    private static final int PREPARED_STATEMENT_CACHE_SQL_LIMIT = 4096;
+
+    //one pool per JDBC url, so every DAO pointing to the same database borrows from the same pool
+    private static final Map<String, HikariDataSource> dataSources = new ConcurrentHashMap<>();
+
+    public Connection getConnection() throws SQLException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Borrow DB connection from pool");
+        }
+        long start = System.nanoTime();
+        try {
+            Connection con = getDataSource().getConnection();
+            connectionTimer.record(start);
+            return con;
+        } catch (SQLException | RuntimeException e) {
+            connectionTimer.recordError(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the pooled data source of this configuration, the pool is created on first use
+     *
+     * @return the pooled data source for {@link #getJdbcUrl()}
+     */
+    public DataSource getDataSource() {
+        return dataSources.computeIfAbsent(getJdbcUrl(), this::createDataSource);
+    }
+
+    protected String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    protected String getJdbcUrl() {
+        return "jdbc:mysql://localhost:3306/prod";
+    }
+
+    protected String getUserName() {
+        return "root";
+    }
+
+    protected String getPassword() {
+        return "rootroot";
+    }
+
+    /**
+     * Get the driver properties of the pooled connections
+     *
+     * @return the MySQL driver properties
+     */
+    protected Properties getDataSourceProperties() {
+        Properties properties = new Properties();
+        //send JDBC batches as multi-row statements instead of one round trip per row
+        properties.setProperty("rewriteBatchedStatements", "true");
+        //prepare each query once on the server, then keep it in a per connection cache when the statement is closed,
+        //so the next DAO call borrowing the pooled connection only sends the parameters
+        properties.setProperty("useServerPrepStmts", "true");
+        properties.setProperty("cachePrepStmts", "true");
+        properties.setProperty("prepStmtCacheSize", String.valueOf(PREPARED_STATEMENT_CACHE_SIZE));
+        properties.setProperty("prepStmtCacheSqlLimit", String.valueOf(PREPARED_STATEMENT_CACHE_SQL_LIMIT));
+        return properties;
+    }
+
+    private HikariDataSource createDataSource(String jdbcUrl) {
+        logger.info("Create DB connection pool for " + jdbcUrl);
+        HikariConfig config = new HikariConfig();
+        config.setDriverClassName(getDriverClassName());
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(getUserName());
+        config.setPassword(getPassword());
+        config.setDataSourceProperties(getDataSourceProperties());
+        config.setMaximumPoolSize(Integer.getInteger(POOL_SIZE_PROPERTY, MAXIMUM_POOL_SIZE));
+        config.setMinimumIdle(MINIMUM_IDLE);
+        //idle connections above minimum idle are evicted after this timeout
+        config.setIdleTimeout(IDLE_TIMEOUT_MS);
+        //connections are validated with Connection.isValid() when borrowed
+        config.setValidationTimeout(VALIDATION_TIMEOUT_MS);
+        //log a warning with the borrowing stack trace when a connection is not returned in time
+        config.setLeakDetectionThreshold(LEAK_DETECTION_THRESHOLD_MS);
+        config.setPoolName("ParkingSystemPool-" + (dataSources.size() + 1));
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Close every connection pool, to be called when the application shuts down
+     */
+    public static void closeDataSources() {
+        for (HikariDataSource dataSource : dataSources.values()) {
+            logger.info("Closing DB connection pool " + dataSource.getPoolName());
+            dataSource.close();
+        }
+        dataSources.clear();
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
+                //closing a pooled connection returns it to the pool
                 con.close();
-                logger.info("Closing DB connection");
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Returning DB connection to pool");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
         }
     }
 
+    public void rollback(Connection con) {
+        if(con!=null){
+            try {
+                con.rollback();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Rolling back DB transaction");
+                }
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction",e);
+            }
+        }
+    }
+
     public void closePreparedStatement(PreparedStatement ps) {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Closing Prepared Statement");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +170,9 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Closing Result Set");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
@@ -0,0 +1,314 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryReservationRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.JournalParkingSpotRepository;
+import com.parkit.parkingsystem.dao.JournalTicketRepository;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.dao.WriteBehindTicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsEndpoint;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.OperationTimer;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import com.parkit.parkingsystem.service.TariffTable;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wiring of the repositories and the parking service shared by the interactive shell and the headless mode.
+ * The storage is MySQL unless another one is given or set with -Dparkingsystem.storage=memory|journal.
+ * With MySQL, the in memory indexes and caches are loaded from database before the first vehicle is processed,
+ * and incoming tickets are saved by a background writer when -Dparkingsystem.writeBehind=true.
+ * The operations of the parking service are timed, and served to Prometheus when -Dparkingsystem.metrics.port is set.
+ * Fares use the tariffs of the file set with -Dparkingsystem.tariffs, reloaded when it changes, or the Fare constants.
+ * Reservations are stored in MySQL with the MySQL storage, and only kept in memory with the other ones.
+ * With MySQL, the tickets closed for -Dparkingsystem.archive.afterDays days are moved to the archive every hour.
+ * The journal is compacted every -Dparkingsystem.journal.compactionMinutes minutes, 15 by default.
+ */
+public class ParkingSystemConfig {
+
+    private static final Logger logger = LogManager.getLogger("ParkingSystemConfig");
+
+    public static final String STORAGE_PROPERTY = "parkingsystem.storage";
+    //size of the in memory parking, the same as the one of Data.sql unless set with these properties
+    public static final String CAR_SPOTS_PROPERTY = "parkingsystem.memory.carSpots";
+    public static final String BIKE_SPOTS_PROPERTY = "parkingsystem.memory.bikeSpots";
+    private static final int DEFAULT_CAR_SPOTS = 3;
+    private static final int DEFAULT_BIKE_SPOTS = 2;
+    //directory and size in records of the journal
+    public static final String JOURNAL_DIRECTORY_PROPERTY = "parkingsystem.journal.dir";
+    public static final String JOURNAL_CAPACITY_PROPERTY = "parkingsystem.journal.capacity";
+    private static final String DEFAULT_JOURNAL_DIRECTORY = "journal";
+    //false to acknowledge the changes before they are forced to disk, they may then be lost if the machine crashes
+    public static final String JOURNAL_SYNC_PROPERTY = "parkingsystem.journal.sync";
+    //minutes between two compactions of the journal into a snapshot, which bound the journal replayed at startup
+    public static final String JOURNAL_COMPACTION_MINUTES_PROPERTY = "parkingsystem.journal.compactionMinutes";
+    private static final long DEFAULT_JOURNAL_COMPACTION_MINUTES = 15;
+    //MySQL only, queue the incoming tickets instead of saving them before the spot is given, off by default
+    //since the queued tickets are lost if the process crashes
+    public static final String WRITE_BEHIND_PROPERTY = "parkingsystem.writeBehind";
+    //MySQL only, facility id of the gates of this application, spots of every facility are given when not set
+    public static final String FACILITY_PROPERTY = "parkingsystem.facility";
+    //local port of the Prometheus metrics endpoint, not started when not set
+    public static final String METRICS_PORT_PROPERTY = "parkingsystem.metrics.port";
+    //tariff rules read by TariffTable.parse, the Fare constants are used when not set
+    public static final String TARIFFS_PROPERTY = "parkingsystem.tariffs";
+    private static final long TARIFFS_CHECK_INTERVAL_SECONDS = 10;
+    //how long before its start a reservation holds its spot
+    public static final String RESERVATION_GUARD_MINUTES_PROPERTY = "parkingsystem.reservation.guardMinutes";
+    //MySQL only, days after their exit the tickets are archived, they are kept in the ticket table when not set
+    public static final String ARCHIVE_AFTER_DAYS_PROPERTY = "parkingsystem.archive.afterDays";
+    private static final long ARCHIVE_INTERVAL_MINUTES = 60;
+
+    public final StorageType storageType;
+    public final ParkingSpotRepository parkingSpotRepository;
+    public final TicketRepository ticketRepository;
+    public final ParkingService parkingService;
+    //free spot counts read from the availability index, without querying the parking table
+    public final OccupancyService occupancyService;
+    //bookings of spots, skipped by the allocations of the availability index while they are held
+    public final ReservationService reservationService;
+
+    //null unless the storage is the journal
+    private TicketJournal ticketJournal;
+    private ScheduledExecutorService journalCompactor;
+    //null unless a metrics port is set
+    private MetricsEndpoint metricsEndpoint;
+    //null unless a tariff file is set
+    private Path tariffsFile;
+    private long tariffsLastModified;
+    private ScheduledExecutorService tariffsReloader;
+    //null unless the storage is MySQL and an archival age is set
+    private ScheduledExecutorService ticketArchiver;
+
+    public ParkingSystemConfig(InputReaderUtil inputReaderUtil) {
+        this(inputReaderUtil, getConfiguredStorageType());
+    }
+
+    /**
+     * @return the storage type set with -Dparkingsystem.storage, MySQL by default
+     */
+    public static StorageType getConfiguredStorageType() {
+        return StorageType.fromName(System.getProperty(STORAGE_PROPERTY, StorageType.MYSQL.name()));
+    }
+
+    public ParkingSystemConfig(InputReaderUtil inputReaderUtil, StorageType storageType) {
+        this.storageType = storageType;
+        logger.info("Using " + storageType + " storage");
+        switch (storageType) {
+            case MEMORY: {
+                InMemoryParkingSpotRepository inMemoryParkingSpotRepository = createInMemoryParkingSpotRepository();
+                parkingSpotRepository = inMemoryParkingSpotRepository;
+                ticketRepository = new InMemoryTicketRepository(inMemoryParkingSpotRepository);
+                occupancyService = new OccupancyService(inMemoryParkingSpotRepository::getAvailabilityIndex);
+                reservationService = new ReservationService(inMemoryParkingSpotRepository::getAvailabilityIndex,
+                        new InMemoryReservationRepository(), getReservationGuardMs());
+                break;
+            }
+            case JOURNAL: {
+                InMemoryParkingSpotRepository inMemoryParkingSpotRepository = createInMemoryParkingSpotRepository();
+                InMemoryTicketRepository inMemoryTicketRepository = new InMemoryTicketRepository(inMemoryParkingSpotRepository);
+                Path journalDirectory = Paths.get(System.getProperty(JOURNAL_DIRECTORY_PROPERTY, DEFAULT_JOURNAL_DIRECTORY));
+                try {
+                    ticketJournal = new TicketJournal(journalDirectory,
+                            Integer.getInteger(JOURNAL_CAPACITY_PROPERTY, TicketJournal.DEFAULT_CAPACITY),
+                            inMemoryParkingSpotRepository, inMemoryTicketRepository,
+                            Boolean.parseBoolean(System.getProperty(JOURNAL_SYNC_PROPERTY, "true")));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to open ticket journal in " + journalDirectory.toAbsolutePath(), e);
+                }
+                scheduleJournalCompaction();
+                parkingSpotRepository = new JournalParkingSpotRepository(inMemoryParkingSpotRepository, ticketJournal);
+                ticketRepository = new JournalTicketRepository(inMemoryTicketRepository, ticketJournal);
+                occupancyService = new OccupancyService(inMemoryParkingSpotRepository::getAvailabilityIndex);
+                reservationService = new ReservationService(inMemoryParkingSpotRepository::getAvailabilityIndex,
+                        new InMemoryReservationRepository(), getReservationGuardMs());
+                break;
+            }
+            default: {
+                ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+                parkingSpotDAO.loadAvailabilityIndex();
+                TicketDAO ticketDAO = new TicketDAO();
+                //tickets and spots share the same availability index
+                ticketDAO.parkingSpotDAO = parkingSpotDAO;
+                ticketDAO.facilityId = Integer.getInteger(FACILITY_PROPERTY, ParkingSpot.ANY_FACILITY);
+                ticketDAO.loadRecurringCustomers();
+                ticketDAO.loadOpenTickets();
+                parkingSpotRepository = parkingSpotDAO;
+                occupancyService = new OccupancyService(parkingSpotDAO::getAvailabilityIndex);
+                reservationService = new ReservationService(parkingSpotDAO::getAvailabilityIndex, new ReservationDAO(), getReservationGuardMs());
+                if (Boolean.getBoolean(WRITE_BEHIND_PROPERTY)) {
+                    logger.warn("Write-behind entries: incoming tickets are queued in memory and lost if the process crashes");
+                    ticketRepository = new WriteBehindTicketRepository(ticketDAO);
+                } else {
+                    ticketRepository = ticketDAO;
+                }
+                scheduleArchival();
+            }
+        }
+        reservationService.load();
+        //every repository call of the service is timed, whatever the storage
+        MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+        parkingService = new ParkingService(inputReaderUtil,
+                metricsRegistry.timed(ParkingSpotRepository.class, parkingSpotRepository),
+                metricsRegistry.timed(TicketRepository.class, ticketRepository));
+        parkingService.setReservationService(reservationService);
+        Integer metricsPort = Integer.getInteger(METRICS_PORT_PROPERTY);
+        if (metricsPort != null) {
+            try {
+                metricsEndpoint = new MetricsEndpoint(metricsRegistry, metricsPort);
+            } catch (IOException e) {
+                //the parking keeps working without its metrics endpoint
+                logger.error("Unable to serve metrics on port " + metricsPort, e);
+            }
+        }
+        String tariffs = System.getProperty(TARIFFS_PROPERTY);
+        if (tariffs != null) {
+            tariffsFile = Paths.get(tariffs);
+            reloadTariffs();
+            tariffsReloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tariffs-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            tariffsReloader.scheduleWithFixedDelay(() -> reloadTariffs(),
+                    TARIFFS_CHECK_INTERVAL_SECONDS, TARIFFS_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Compile the tariff file again if it changed since it was last read, and swap it in for the next fares.
+     * The current tariffs are kept when the file cannot be read or is not valid
+     */
+    public synchronized void reloadTariffs() {
+        if (tariffsFile == null) {
+            return;
+        }
+        try {
+            long lastModified = Files.getLastModifiedTime(tariffsFile).toMillis();
+            if (lastModified == tariffsLastModified) {
+                return;
+            }
+            //an invalid file is not read again until it changes
+            tariffsLastModified = lastModified;
+            TariffTable tariffTable;
+            try (BufferedReader reader = Files.newBufferedReader(tariffsFile, StandardCharsets.UTF_8)) {
+                tariffTable = TariffTable.parse(reader);
+            }
+            ParkingService.getFareCalculatorService().setTariffTable(tariffTable);
+            logger.info("Loaded tariffs from " + tariffsFile.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to load tariffs from " + tariffsFile.toAbsolutePath(), e);
+        }
+    }
+
+    private void scheduleArchival() {
+        Long afterDays = Long.getLong(ARCHIVE_AFTER_DAYS_PROPERTY);
+        if (afterDays == null) {
+            return;
+        }
+        long afterMs = TimeUnit.DAYS.toMillis(afterDays);
+        TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+        ticketArchiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //the first run catches up on the backlog shortly after the start, not before the first vehicle
+        ticketArchiver.scheduleWithFixedDelay(() -> ticketArchiveDAO.archiveClosedBefore(System.currentTimeMillis() - afterMs),
+                1, ARCHIVE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void scheduleJournalCompaction() {
+        long intervalMinutes = Long.getLong(JOURNAL_COMPACTION_MINUTES_PROPERTY, DEFAULT_JOURNAL_COMPACTION_MINUTES);
+        journalCompactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        journalCompactor.scheduleWithFixedDelay(() -> {
+            try {
+                if (ticketJournal.getRecordCount() > 0) {
+                    ticketJournal.compact();
+                }
+            } catch (IOException e) {
+                //the journal keeps the changes, the next compaction will try again
+                logger.error("Unable to compact ticket journal", e);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    private static long getReservationGuardMs() {
+        Long guardMinutes = Long.getLong(RESERVATION_GUARD_MINUTES_PROPERTY);
+        return (guardMinutes == null) ? ReservationService.DEFAULT_GUARD_MS : TimeUnit.MINUTES.toMillis(guardMinutes);
+    }
+
+    private static InMemoryParkingSpotRepository createInMemoryParkingSpotRepository() {
+        return new InMemoryParkingSpotRepository(Integer.getInteger(CAR_SPOTS_PROPERTY, DEFAULT_CAR_SPOTS),
+                Integer.getInteger(BIKE_SPOTS_PROPERTY, DEFAULT_BIKE_SPOTS));
+    }
+
+    /**
+     * Release the resources held by the application, to be called when it shuts down
+     */
+    public void shutdown() {
+        occupancyService.close();
+        if (tariffsReloader != null) {
+            tariffsReloader.shutdownNow();
+        }
+        if (ticketArchiver != null) {
+            //a batch cut short by the closing pool is never committed
+            ticketArchiver.shutdownNow();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
+        if (ticketRepository instanceof TicketDAO) {
+            logger.info(((TicketDAO) ticketRepository).recurringCustomerCache);
+        }
+        if (ticketRepository instanceof WriteBehindTicketRepository) {
+            //saves the queued tickets while the connection pool is still open
+            ((WriteBehindTicketRepository) ticketRepository).close();
+        }
+        if (journalCompactor != null) {
+            journalCompactor.shutdownNow();
+        }
+        if (ticketJournal != null) {
+            try {
+                //the next start only replays the snapshot
+                ticketJournal.compact();
+                ticketJournal.close();
+            } catch (IOException e) {
+                logger.error("Error closing ticket journal", e);
+            }
+        }
+        DataBaseConfig.closeDataSources();
+        if (logger.isInfoEnabled()) {
+            for (OperationTimer timer : MetricsRegistry.getDefault().getTimers().values()) {
+                logger.info(timer);
+            }
+        }
+    }
+}
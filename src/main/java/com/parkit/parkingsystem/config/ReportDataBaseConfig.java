@@ -0,0 +1,27 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.Properties;
+
+/**
+ * Connections of the reports, to a replica when -Dparkingsystem.report.jdbcUrl is set, or to the production
+ * database through a pool of their own so a long report never holds a connection the gates are waiting for.
+ * Results are read with a server side cursor, the driver holds one fetch of rows at a time.
+ */
+public class ReportDataBaseConfig extends DataBaseConfig {
+
+    public static final String REPORT_JDBC_URL_PROPERTY = "parkingsystem.report.jdbcUrl";
+
+    @Override
+    protected String getJdbcUrl() {
+        //the parameter also keeps the report connections out of the pool of the production url
+        return System.getProperty(REPORT_JDBC_URL_PROPERTY, super.getJdbcUrl() + "?useCursorFetch=true");
+    }
+
+    @Override
+    protected Properties getDataSourceProperties() {
+        Properties properties = super.getDataSourceProperties();
+        //MySQL only honours the fetch size of a statement with cursor fetch, otherwise the whole result is buffered
+        properties.setProperty("useCursorFetch", "true");
+        return properties;
+    }
+}
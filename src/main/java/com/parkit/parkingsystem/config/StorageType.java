@@ -0,0 +1,26 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.Locale;
+
+/**
+ * Where spots and tickets are stored, chosen when the application starts
+ */
+public enum StorageType {
+    //the MySQL database of DataBaseConfig
+    MYSQL,
+    //process memory only, nothing survives a restart
+    MEMORY,
+    //process memory, with every change appended to a memory mapped journal replayed at startup
+    JOURNAL;
+
+    /**
+     * Get a storage type from its name, ignoring case
+     *
+     * @param name
+     * @return the storage type
+     * @throws IllegalArgumentException if no storage type has this name
+     */
+    public static StorageType fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -3,10 +3,43 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_NEXT_PARKING_SPOT_IN_FACILITY = "select PARKING_NUMBER from parking where FACILITY_ID = ? and TYPE = ? and AVAILABLE = true order by LEVEL, PARKING_NUMBER limit 1";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE, FACILITY_ID, LEVEL from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
-    public static final String GET_COUNT_OF_PREVIOUS_TICKETS = "select count(ID) from ticket where VEHICLE_REG_NUMBER=?";
+    public static final String CLOSE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null limit 1";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null";
+    //tickets of the ticket table plus the visits rolled up when their tickets were archived, the vehicle is set twice
+    public static final String GET_COUNT_OF_PREVIOUS_TICKETS = "select (select count(ID) from ticket where VEHICLE_REG_NUMBER=?)"
+            + " + coalesce((select VISITS from vehicle_visits where VEHICLE_REG_NUMBER=?), 0)";
+    //batch lookups, %s is replaced by one ? placeholder per vehicle
+    public static final String GET_OPEN_TICKETS_OF_VEHICLES = GET_OPEN_TICKETS + " and t.VEHICLE_REG_NUMBER in (%s)";
+    public static final String GET_COUNT_OF_PREVIOUS_TICKETS_OF_VEHICLES = "select VEHICLE_REG_NUMBER, sum(VISITS) from ("
+            + "select VEHICLE_REG_NUMBER, count(ID) VISITS from ticket where VEHICLE_REG_NUMBER in (%1$s) group by VEHICLE_REG_NUMBER"
+            + " union all select VEHICLE_REG_NUMBER, VISITS from vehicle_visits where VEHICLE_REG_NUMBER in (%1$s)) v group by VEHICLE_REG_NUMBER";
+    //reports, streamed with a forward only cursor in the order of the TICKET_IN_TIME_IDX index
+    public static final String GET_CLOSED_TICKETS_BY_IN_TIME = "select t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.IN_TIME >= ? and t.IN_TIME < ? and t.OUT_TIME is not null order by t.IN_TIME";
+    public static final String GET_ARCHIVED_CLOSED_TICKETS_BY_IN_TIME = "select t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket_archive t,parking p where p.parking_number = t.parking_number and t.IN_TIME >= ? and t.IN_TIME < ? order by t.IN_TIME";
+    public static final String GET_RECURRING_CUSTOMERS = "select VEHICLE_REG_NUMBER, sum(VISITS) from ("
+            + "select VEHICLE_REG_NUMBER, count(ID) VISITS, max(IN_TIME) LAST_IN_TIME from ticket group by VEHICLE_REG_NUMBER"
+            + " union all select VEHICLE_REG_NUMBER, VISITS, LAST_IN_TIME from vehicle_visits) v group by VEHICLE_REG_NUMBER order by max(LAST_IN_TIME) desc limit ?";
+    //the last ticket of a vehicle that has none left in the ticket table
+    public static final String GET_ARCHIVED_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket_archive t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+
+    //archival of closed tickets, one batch of ids per transaction, %s is replaced by one ? placeholder per ticket
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID, VEHICLE_REG_NUMBER, IN_TIME from ticket where IN_TIME < ? and OUT_TIME < ? order by IN_TIME limit ? for update";
+    public static final String ARCHIVE_TICKETS = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)"
+            + " select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where ID in (%s)";
+    public static final String DELETE_TICKETS = "delete from ticket where ID in (%s)";
+    public static final String ADD_VEHICLE_VISITS = "insert into vehicle_visits(VEHICLE_REG_NUMBER, VISITS, LAST_IN_TIME) values(?,?,?)"
+            + " on duplicate key update VISITS = VISITS + values(VISITS), LAST_IN_TIME = greatest(LAST_IN_TIME, values(LAST_IN_TIME))";
+
+    public static final String SAVE_RESERVATION = "insert into reservation(PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME) values(?,?,?,?)";
+    public static final String DELETE_RESERVATION = "delete from reservation where ID=?";
+    public static final String GET_RESERVATIONS_ENDING_AFTER = "select r.ID, r.PARKING_NUMBER, r.VEHICLE_REG_NUMBER, r.START_TIME, r.END_TIME, p.TYPE from reservation r,parking p where p.parking_number = r.parking_number and r.END_TIME > ?";
 }
@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.dao;
+
+import java.io.IOException;
+
+/**
+ * Forward only stream of the closed tickets, in in time order, for the reports.
+ * A source never holds more than a fetch of tickets in memory, whatever the number of tickets.
+ */
+public interface ClosedTicketSource {
+
+    /**
+     * Pass each closed ticket that entered in a time range to a visitor, in in time order
+     *
+     * @param fromInTime epoch millis, included
+     * @param toInTime   epoch millis, excluded
+     * @param visitor
+     * @return the number of tickets visited
+     * @throws IOException if the tickets cannot be read, the visitor may have been given some of them
+     */
+    long forEachClosedTicket(long fromInTime, long toInTime, ClosedTicketVisitor visitor) throws IOException;
+}
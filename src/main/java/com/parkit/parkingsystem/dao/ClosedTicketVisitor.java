@@ -0,0 +1,18 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Receives the closed tickets streamed by a {@link ClosedTicketSource}, one call per ticket with no ticket object
+ */
+@FunctionalInterface
+public interface ClosedTicketVisitor {
+
+    /**
+     * @param parkingType
+     * @param inTime      epoch millis
+     * @param outTime     epoch millis
+     * @param price       in minor units
+     */
+    void visit(ParkingType parkingType, long inTime, long outTime, long price);
+}
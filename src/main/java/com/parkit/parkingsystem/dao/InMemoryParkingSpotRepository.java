@@ -0,0 +1,125 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Parking spots kept in memory only, for kiosks running without a database and for tests.
+ * The availability of each spot is a slot of an array indexed by spot number and only changes through
+ * compare and set, so claims never lock. The lowest available spot is found with a {@link ParkingSpotIndex}.
+ */
+public class InMemoryParkingSpotRepository implements ParkingSpotRepository {
+
+    private static final int OCCUPIED = 0;
+    private static final int AVAILABLE = 1;
+
+    //type and availability by spot number, slot 0 is unused since spot numbers start at 1
+    private final ParkingType[] parkingTypes;
+    private final AtomicIntegerArray availability;
+    private final ParkingSpotIndex availabilityIndex = new ParkingSpotIndex();
+
+    /**
+     * Create the spots of a parking, all available, the car spots are numbered first like in Data.sql
+     *
+     * @param numberOfCarSpots
+     * @param numberOfBikeSpots
+     */
+    public InMemoryParkingSpotRepository(int numberOfCarSpots, int numberOfBikeSpots) {
+        if (numberOfCarSpots < 0 || numberOfBikeSpots < 0) {
+            throw new IllegalArgumentException("Number of spots must not be negative");
+        }
+        int numberOfSpots = numberOfCarSpots + numberOfBikeSpots;
+        parkingTypes = new ParkingType[numberOfSpots + 1];
+        availability = new AtomicIntegerArray(numberOfSpots + 1);
+        for (int number = 1; number <= numberOfSpots; number++) {
+            parkingTypes[number] = (number <= numberOfCarSpots) ? ParkingType.CAR : ParkingType.BIKE;
+            availability.set(number, AVAILABLE);
+            availabilityIndex.update(new ParkingSpot(number, parkingTypes[number], true));
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return availabilityIndex.getLowestAvailable(parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return claimNextAvailableSlot(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * The spots of the in memory parking are all on the ground level of {@link ParkingSpot#DEFAULT_FACILITY}
+     */
+    @Override
+    public int claimNextAvailableSlot(int facilityId, ParkingType parkingType) {
+        while (true) {
+            int candidate = availabilityIndex.claimLowestAvailable(facilityId, parkingType);
+            if (candidate <= 0) {
+                return -1;
+            }
+            if (availability.compareAndSet(candidate, AVAILABLE, OCCUPIED)) {
+                return candidate;
+            }
+            //occupied through updateParking since it was indexed, try the next one
+        }
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int number = parkingSpot.getId();
+        if (number <= 0 || number >= parkingTypes.length) {
+            return false;
+        }
+        //the array is written before the index, so a spot found in the index is never claimed twice
+        availability.set(number, parkingSpot.isAvailable() ? AVAILABLE : OCCUPIED);
+        availabilityIndex.update(new ParkingSpot(number, parkingTypes[number], parkingSpot.isAvailable()));
+        return true;
+    }
+
+    /**
+     * Release an occupied spot
+     *
+     * @param number
+     * @return true if the spot was occupied and is now available
+     */
+    public boolean releaseSlot(int number) {
+        if (number <= 0 || number >= parkingTypes.length || !availability.compareAndSet(number, OCCUPIED, AVAILABLE)) {
+            return false;
+        }
+        availabilityIndex.update(new ParkingSpot(number, parkingTypes[number], true));
+        return true;
+    }
+
+    /**
+     * @return the current state of every spot, by spot number
+     */
+    List<ParkingSpot> getParkingSpots() {
+        List<ParkingSpot> parkingSpots = new ArrayList<>(parkingTypes.length - 1);
+        for (int number = 1; number < parkingTypes.length; number++) {
+            parkingSpots.add(new ParkingSpot(number, parkingTypes[number], availability.get(number) == AVAILABLE));
+        }
+        return parkingSpots;
+    }
+
+    /**
+     * @return the index of the available spots, kept current by every claim and update
+     */
+    public ParkingSpotIndex getAvailabilityIndex() {
+        return availabilityIndex;
+    }
+
+    /**
+     * Get the number of available spots for a parking type
+     *
+     * @param parkingType
+     * @return the count of available spots
+     */
+    public int countAvailable(ParkingType parkingType) {
+        return availabilityIndex.countAvailable(parkingType);
+    }
+}
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reservations kept in memory only, they do not survive a restart
+ */
+public class InMemoryReservationRepository implements ReservationRepository {
+
+    private final AtomicInteger lastReservationId = new AtomicInteger();
+    private final Map<Integer, Reservation> reservations = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean saveReservation(Reservation reservation) {
+        reservation.setId(lastReservationId.incrementAndGet());
+        reservations.put(reservation.getId(), reservation);
+        return true;
+    }
+
+    @Override
+    public boolean deleteReservation(Reservation reservation) {
+        return reservations.remove(reservation.getId()) != null;
+    }
+
+    @Override
+    public List<Reservation> getReservationsEndingAfter(long time) {
+        List<Reservation> endingAfter = new ArrayList<>();
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.getEndTime().getTime() > time) {
+                endingAfter.add(reservation);
+            }
+        }
+        return endingAfter;
+    }
+}
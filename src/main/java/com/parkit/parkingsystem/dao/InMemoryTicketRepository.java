@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tickets kept in memory only, for kiosks running without a database and for tests.
+ * Stored tickets are private copies that are never modified, callers get copies of their own.
+ * A change replaces the stored copy with a compare and set on the tickets by id, so a ticket is only closed once
+ * even when two gates close it at the same time. The open ticket and ticket count of each vehicle are kept in
+ * {@link LongKeyMap}s, read without a lock and updated under the lock of one of their segments.
+ */
+public class InMemoryTicketRepository implements TicketRepository {
+
+    private final InMemoryParkingSpotRepository parkingSpotRepository;
+
+    private final AtomicInteger lastTicketId = new AtomicInteger();
+    //every ticket by id
+    private final Map<Integer, Ticket> tickets = new ConcurrentHashMap<>();
+    //open ticket, and latest ticket id and number of tickets, per packed vehicle registration number
+    private final LongKeyMap<Ticket> openTickets = new LongKeyMap<>();
+    private final LongKeyMap<VehicleTickets> vehicleTickets = new LongKeyMap<>();
+
+    public InMemoryTicketRepository(InMemoryParkingSpotRepository parkingSpotRepository) {
+        this.parkingSpotRepository = parkingSpotRepository;
+    }
+
+    @Override
+    public boolean saveIncomingTicket(Ticket ticket, ParkingType parkingType) {
+        int parkingNumber = parkingSpotRepository.claimNextAvailableSlot(parkingType);
+        if (parkingNumber <= 0) {
+            return false;
+        }
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        return saveTicket(ticket);
+    }
+
+    @Override
+    public boolean closeTicket(Ticket ticket) {
+        if (!writeFare(ticket, true)) {
+            return false;
+        }
+        parkingSpotRepository.releaseSlot(ticket.getParkingSpot().getId());
+        ticket.getParkingSpot().setAvailable(true);
+        return true;
+    }
+
+    @Override
+    public boolean[] closeTickets(List<Ticket> tickets) {
+        boolean[] closed = new boolean[tickets.size()];
+        for (int i = 0; i < tickets.size(); i++) {
+            closed[i] = closeTicket(tickets.get(i));
+        }
+        return closed;
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        Ticket openTicket = openTickets.get(vehicle);
+        return (openTicket == null || !VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, openTicket.getVehicleRegNumber()))
+                ? null : TicketDAO.copyOf(openTicket);
+    }
+
+    @Override
+    public Map<String, Ticket> getOpenTickets(List<String> vehicleRegNumbers) {
+        Map<String, Ticket> result = new HashMap<>();
+        for (String vehicleRegNumber : vehicleRegNumbers) {
+            Ticket openTicket = getOpenTicket(vehicleRegNumber);
+            if (openTicket != null) {
+                result.put(vehicleRegNumber, openTicket);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getCountOfPreviousTickets(String vehicleRegNumber) {
+        VehicleTickets tickets = vehicleTickets.get(VehicleRegNumber.pack(vehicleRegNumber));
+        return (tickets == null) ? 0 : tickets.count;
+    }
+
+    @Override
+    public Map<String, Integer> getCountsOfPreviousTickets(List<String> vehicleRegNumbers) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String vehicleRegNumber : vehicleRegNumbers) {
+            counts.put(vehicleRegNumber, getCountOfPreviousTickets(vehicleRegNumber));
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        ticket.setId(lastTicketId.incrementAndGet());
+        putTicket(ticket);
+        return true;
+    }
+
+    /**
+     * Store a ticket with its id, replacing the stored ticket with the same id.
+     * Used to rebuild the tickets from a journal, where the ids are already given
+     *
+     * @param ticket
+     */
+    void putTicket(Ticket ticket) {
+        Ticket stored = TicketDAO.copyOf(ticket);
+        lastTicketId.accumulateAndGet(stored.getId(), Math::max);
+        Ticket previous = tickets.put(stored.getId(), stored);
+        long vehicle = VehicleRegNumber.pack(stored.getVehicleRegNumber());
+        if (previous == null) {
+            //ids grow with time, so the highest one is the latest ticket even when two entries race
+            vehicleTickets.compute(vehicle, current -> (current == null) ? new VehicleTickets(stored.getId(), 1)
+                    : new VehicleTickets(Math.max(current.latestTicketId, stored.getId()), current.count + 1));
+        } else {
+            openTickets.remove(VehicleRegNumber.pack(previous.getVehicleRegNumber()), previous);
+        }
+        if (stored.getOutTime() == null) {
+            openTickets.put(vehicle, stored);
+        }
+    }
+
+    /**
+     * @return the stored ticket with this id, or null if there is none. Stored tickets are never modified
+     */
+    Ticket getStoredTicket(int id) {
+        return tickets.get(id);
+    }
+
+    /**
+     * @return every stored ticket, the stored tickets are never modified so they can be read as they are
+     */
+    Collection<Ticket> getTickets() {
+        return new ArrayList<>(tickets.values());
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        VehicleTickets latestTickets = vehicleTickets.get(vehicle);
+        Ticket latestTicket = (latestTickets == null) ? null : tickets.get(latestTickets.latestTicketId);
+        return (latestTicket == null || !VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, latestTicket.getVehicleRegNumber()))
+                ? null : TicketDAO.copyOf(latestTicket);
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        return writeFare(ticket, false);
+    }
+
+    /**
+     * Replace the stored ticket with one carrying the fare and out time of the given ticket
+     *
+     * @param ticket
+     * @param onlyIfOpen true to leave a ticket already closed unchanged
+     * @return true if the stored ticket has been replaced
+     */
+    private boolean writeFare(Ticket ticket, boolean onlyIfOpen) {
+        while (true) {
+            Ticket stored = tickets.get(ticket.getId());
+            if (stored == null || (onlyIfOpen && stored.getOutTime() != null)) {
+                return false;
+            }
+            Ticket updated = TicketDAO.copyOf(stored);
+            updated.setPriceInMinorUnits(ticket.getPriceInMinorUnits());
+            updated.setOutTime(ticket.getOutTime());
+            if (onlyIfOpen) {
+                updated.getParkingSpot().setAvailable(true);
+            }
+            if (tickets.replace(ticket.getId(), stored, updated)) {
+                if (updated.getOutTime() != null) {
+                    openTickets.remove(VehicleRegNumber.pack(stored.getVehicleRegNumber()), stored);
+                }
+                return true;
+            }
+            //changed by another gate in the meantime, read it again
+        }
+    }
+
+    //replaced on each new ticket, so it is read without a lock
+    private static class VehicleTickets {
+        private final int latestTicketId;
+        private final int count;
+
+        private VehicleTickets(int latestTicketId, int count) {
+            this.latestTicketId = latestTicketId;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * In memory parking spots with every change recorded in a {@link TicketJournal}.
+ * A change and its record are made while holding the journal, so the journal order is the order of the changes,
+ * and the change is acknowledged once its record is synced to disk
+ */
+public class JournalParkingSpotRepository implements ParkingSpotRepository {
+
+    private static final Logger logger = LogManager.getLogger("JournalParkingSpotRepository");
+
+    private final InMemoryParkingSpotRepository parkingSpotRepository;
+    private final TicketJournal journal;
+
+    public JournalParkingSpotRepository(InMemoryParkingSpotRepository parkingSpotRepository, TicketJournal journal) {
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.journal = journal;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotRepository.getNextAvailableSlot(parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return claimNextAvailableSlot(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(int facilityId, ParkingType parkingType) {
+        int parkingNumber;
+        synchronized (journal) {
+            parkingNumber = parkingSpotRepository.claimNextAvailableSlot(facilityId, parkingType);
+            if (parkingNumber > 0) {
+                record(new ParkingSpot(parkingNumber, parkingType, false));
+            }
+        }
+        if (parkingNumber > 0) {
+            sync();
+        }
+        return parkingNumber;
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        boolean updated;
+        synchronized (journal) {
+            updated = parkingSpotRepository.updateParking(parkingSpot);
+            if (updated) {
+                record(parkingSpot);
+            }
+        }
+        if (updated) {
+            sync();
+        }
+        return updated;
+    }
+
+    private void record(ParkingSpot parkingSpot) {
+        try {
+            journal.append(parkingSpot);
+        } catch (IOException e) {
+            //the change is kept in memory and will be part of the next snapshot that can be written
+            logger.error("Unable to record parking spot " + parkingSpot.getId() + " in journal", e);
+        }
+    }
+
+    private void sync() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            //the change is kept in memory and will be part of the next snapshot that can be written
+            logger.error("Unable to sync parking spots to journal", e);
+        }
+    }
+}
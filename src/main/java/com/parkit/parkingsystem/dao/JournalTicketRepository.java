@@ -0,0 +1,154 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory tickets with every change recorded in a {@link TicketJournal}, entries and exits take microseconds
+ * and do not need a database. Reads are served from memory without touching the journal.
+ * A change and its records are made while holding the journal, so the journal order is the order of the changes,
+ * and the change is acknowledged once its records are synced to disk
+ */
+public class JournalTicketRepository implements TicketRepository {
+
+    private static final Logger logger = LogManager.getLogger("JournalTicketRepository");
+
+    private final InMemoryTicketRepository ticketRepository;
+    private final TicketJournal journal;
+
+    public JournalTicketRepository(InMemoryTicketRepository ticketRepository, TicketJournal journal) {
+        this.ticketRepository = ticketRepository;
+        this.journal = journal;
+    }
+
+    @Override
+    public boolean saveIncomingTicket(Ticket ticket, ParkingType parkingType) {
+        TicketJournal.checkVehicleRegNumber(ticket.getVehicleRegNumber());
+        boolean saved;
+        synchronized (journal) {
+            saved = ticketRepository.saveIncomingTicket(ticket, parkingType);
+            if (saved) {
+                record(ticket.getParkingSpot(), ticket.getId());
+            }
+        }
+        if (saved) {
+            sync(ticket.getId());
+        }
+        return saved;
+    }
+
+    @Override
+    public boolean closeTicket(Ticket ticket) {
+        boolean closed;
+        synchronized (journal) {
+            closed = ticketRepository.closeTicket(ticket);
+            if (closed) {
+                record(ticket.getParkingSpot(), ticket.getId());
+            }
+        }
+        if (closed) {
+            sync(ticket.getId());
+        }
+        return closed;
+    }
+
+    @Override
+    public boolean[] closeTickets(List<Ticket> tickets) {
+        boolean[] closed = new boolean[tickets.size()];
+        for (int i = 0; i < tickets.size(); i++) {
+            closed[i] = closeTicket(tickets.get(i));
+        }
+        return closed;
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        return ticketRepository.getOpenTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public Map<String, Ticket> getOpenTickets(List<String> vehicleRegNumbers) {
+        return ticketRepository.getOpenTickets(vehicleRegNumbers);
+    }
+
+    @Override
+    public int getCountOfPreviousTickets(String vehicleRegNumber) {
+        return ticketRepository.getCountOfPreviousTickets(vehicleRegNumber);
+    }
+
+    @Override
+    public Map<String, Integer> getCountsOfPreviousTickets(List<String> vehicleRegNumbers) {
+        return ticketRepository.getCountsOfPreviousTickets(vehicleRegNumbers);
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        TicketJournal.checkVehicleRegNumber(ticket.getVehicleRegNumber());
+        boolean saved;
+        synchronized (journal) {
+            saved = ticketRepository.saveTicket(ticket);
+            if (saved) {
+                record(null, ticket.getId());
+            }
+        }
+        if (saved) {
+            sync(ticket.getId());
+        }
+        return saved;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        return ticketRepository.getTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        boolean updated;
+        synchronized (journal) {
+            updated = ticketRepository.updateTicket(ticket);
+            if (updated) {
+                record(null, ticket.getId());
+            }
+        }
+        if (updated) {
+            sync(ticket.getId());
+        }
+        return updated;
+    }
+
+    /**
+     * Record the spot changed by an entry or exit, if any, then the stored state of the ticket
+     */
+    private void record(ParkingSpot parkingSpot, int ticketId) {
+        try {
+            if (parkingSpot != null) {
+                journal.append(parkingSpot);
+            }
+            journal.append(ticketRepository.getStoredTicket(ticketId));
+        } catch (IOException e) {
+            //the change is kept in memory and will be part of the next snapshot that can be written
+            logger.error("Unable to record ticket " + ticketId + " in journal", e);
+        }
+    }
+
+    /**
+     * Wait for the records of a change to be on disk, out of the lock of the journal so other changes are
+     * recorded meanwhile and forced along
+     */
+    private void sync(int ticketId) {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            //the change is kept in memory and will be part of the next snapshot that can be written
+            logger.error("Unable to sync ticket " + ticketId + " to journal", e);
+        }
+    }
+}
@@ -10,25 +10,61 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    //null until loadAvailabilityIndex is called, the parking table is queried directly in that case
+    private volatile ParkingSpotIndex availabilityIndex;
+
+    /**
+     * Load the availability of every parking spot from database into the in memory index,
+     * next available slots are then served from memory
+     *
+     * @return true if the index has been loaded
+     */
+    public boolean loadAvailabilityIndex() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ParkingSpotIndex index = new ParkingSpotIndex();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    index.update(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2),
+                            rs.getInt(4), rs.getInt(5)));
+                }
+            }
+            ParkingSpotIndex previousIndex = availabilityIndex;
+            if (previousIndex != null) {
+                //the reservations hold their spots in the new index on its first lookup or claim
+                index.setHoldUpdater(previousIndex.getHoldUpdater());
+            }
+            availabilityIndex = index;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading parking spot availability", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        ParkingSpotIndex index = availabilityIndex;
+        if (index != null) {
+            return index.getLowestAvailable(parkingType);
+        }
         Connection con = null;
         int result=-1;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);;
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            result = selectNextAvailableSlot(con, parkingType);
         }catch (Exception ex){
             logger.error("Error fetching next available slot",ex);
         }finally {
@@ -37,17 +73,130 @@ public class ParkingSpotDAO {
         return result;
     }
 
+    /**
+     * The spot is only taken if it is still available in database, so two gates claiming at the
+     * same time always get different spots
+     */
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return claimNextAvailableSlot(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(int facilityId, ParkingType parkingType) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            return claimNextAvailableSlot(con, facilityId, parkingType);
+        } catch (Exception ex) {
+            logger.error("Error claiming next available slot", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Claim the next available spot of a parking type on the given connection, so the claim can be part
+     * of a larger transaction. If that transaction is rolled back, the caller must give the spot back
+     * with {@link #updateAvailabilityIndex(ParkingSpot)}
+     *
+     * @param con
+     * @param parkingType
+     * @return the claimed spot number, or -1 if there is no available spot of this type
+     * @throws SQLException
+     */
+    public int claimNextAvailableSlot(Connection con, ParkingType parkingType) throws SQLException {
+        return claimNextAvailableSlot(con, ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * Claim the next available spot of a parking type in a facility on the given connection, lowest level first
+     *
+     * @param con
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the claimed spot number, or -1 if there is no available spot of this type in the facility
+     * @throws SQLException
+     */
+    public int claimNextAvailableSlot(Connection con, int facilityId, ParkingType parkingType) throws SQLException {
+        ParkingSpotIndex index = availabilityIndex;
+        int candidate = -1;
+        //prepared once and executed again for each candidate already taken by another gate
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+            while (true) {
+                candidate = (index != null) ? index.claimLowestAvailable(facilityId, parkingType)
+                        : selectNextAvailableSlot(con, facilityId, parkingType);
+                if (candidate <= 0) {
+                    return -1;
+                }
+                ps.setInt(1, candidate);
+                int updateRowCount = ps.executeUpdate();
+                if (updateRowCount == 1) {
+                    return candidate;
+                }
+                //another gate took this spot in the meantime, try the next one
+                if (logger.isInfoEnabled()) {
+                    logger.info("Parking spot " + candidate + " already taken, claiming next one");
+                }
+            }
+        } catch (SQLException ex) {
+            if (index != null && candidate > 0) {
+                //the spot has not been taken in database, give it back to the index
+                index.update(new ParkingSpot(candidate, parkingType, true));
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Take the lowest available spot of a parking type from the in memory index only, the parking table is
+     * not changed. Only safe when this process is the only one allocating spots, the caller writes the spot
+     * as occupied later or gives it back with {@link #updateAvailabilityIndex(ParkingSpot)}
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the reserved spot number, or -1 if the index is not loaded or there is no available spot of this type
+     */
+    public int reserveNextAvailableSlot(int facilityId, ParkingType parkingType) {
+        ParkingSpotIndex index = availabilityIndex;
+        return (index == null) ? -1 : index.claimLowestAvailable(facilityId, parkingType);
+    }
+
+    private int selectNextAvailableSlot(Connection con, ParkingType parkingType) throws SQLException {
+        return selectNextAvailableSlot(con, ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    private int selectNextAvailableSlot(Connection con, int facilityId, ParkingType parkingType) throws SQLException {
+        if (facilityId == ParkingSpot.ANY_FACILITY) {
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT)) {
+                ps.setString(1, parkingType.toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    //min of no row is a null read as 0
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT_IN_FACILITY)) {
+            ps.setInt(1, facilityId);
+            ps.setString(2, parkingType.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
-            ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
-            return (updateRowCount == 1);
+            boolean updated = updateParking(con, parkingSpot);
+            if (updated) {
+                updateAvailabilityIndex(parkingSpot);
+            }
+            return updated;
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
             return false;
@@ -56,4 +205,80 @@ public class ParkingSpotDAO {
         }
     }
 
+    /**
+     * Update the availability of a parking spot on the given connection, so the update can be part of a
+     * larger transaction. The in memory index is not touched, the caller updates it once the transaction
+     * is committed with {@link #updateAvailabilityIndex(ParkingSpot)}
+     *
+     * @param con
+     * @param parkingSpot
+     * @return true if the spot has been updated
+     * @throws SQLException
+     */
+    public boolean updateParking(Connection con, ParkingSpot parkingSpot) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+            ps.setBoolean(1, parkingSpot.isAvailable());
+            ps.setInt(2, parkingSpot.getId());
+            int updateRowCount = ps.executeUpdate();
+            return (updateRowCount == 1);
+        }
+    }
+
+    /**
+     * Update the availability of many parking spots on the given connection with one JDBC batch,
+     * the in memory index is not touched
+     *
+     * @param con
+     * @param parkingSpots
+     * @return the update count of each spot, in order
+     * @throws SQLException
+     */
+    public int[] updateParkings(Connection con, List<ParkingSpot> parkingSpots) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                ps.setBoolean(1, parkingSpot.isAvailable());
+                ps.setInt(2, parkingSpot.getId());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    /**
+     * Mark many parking spots as occupied on the given connection with one JDBC batch, only where they are
+     * still available, the in memory index is not touched
+     *
+     * @param con
+     * @param parkingNumbers
+     * @return the update count of each spot in order, 1 if it has been claimed and 0 if it was already taken
+     * @throws SQLException
+     */
+    public int[] claimParkings(Connection con, List<Integer> parkingNumbers) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+            for (int parkingNumber : parkingNumbers) {
+                ps.setInt(1, parkingNumber);
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    /**
+     * @return the in memory availability index, or null if it is not loaded
+     */
+    public ParkingSpotIndex getAvailabilityIndex() {
+        return availabilityIndex;
+    }
+
+    /**
+     * Keep the in memory index consistent with the parking table after a write committed elsewhere
+     *
+     * @param parkingSpot
+     */
+    public void updateAvailabilityIndex(ParkingSpot parkingSpot) {
+        ParkingSpotIndex index = availabilityIndex;
+        if (index != null) {
+            index.update(parkingSpot);
+        }
+    }
 }
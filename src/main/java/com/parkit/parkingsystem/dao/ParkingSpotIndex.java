@@ -0,0 +1,325 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory index of the available parking spots, sharded by facility, level and parking type.
+ * Each shard has its own sorted set of spot numbers and its own counter, so allocations in different
+ * facilities or levels never touch the same memory. The lowest available spot of a shard is found in O(log n)
+ * without querying the parking table, and the number of available spots of a shard is read without a lock.
+ * <p>
+ * Allocations without a facility take the lowest level of the lowest facility that has an available spot,
+ * which is the lowest spot number of a parking with a single facility and level.
+ * <p>
+ * A held spot, such as a spot booked soon, stays available and counted but is kept in a held set of its shard
+ * instead of its available spots, so lookups and claims never see it and still take the first available spot.
+ */
+public class ParkingSpotIndex {
+
+    //shards of each parking type ordered by facility then level
+    private final Map<ParkingType, ConcurrentSkipListMap<Long, Shard>> shards = new EnumMap<>(ParkingType.class);
+    //shard of each spot number seen so far, so a spot updated without its facility and level stays in its shard
+    private final Map<Integer, Shard> shardOfSpot = new ConcurrentHashMap<>();
+    //spots held, whether they are available or not
+    private final Set<Integer> heldSpots = ConcurrentHashMap.newKeySet();
+    //run before each lookup and claim to hold and release the spots whose hold starts or ends, none when null
+    private volatile Runnable holdUpdater;
+
+    public ParkingSpotIndex() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            shards.put(parkingType, new ConcurrentSkipListMap<Long, Shard>());
+        }
+    }
+
+    /**
+     * Get the lowest available spot number for a parking type
+     *
+     * @param parkingType
+     * @return the spot number, or -1 if there is no available spot of this type
+     */
+    public int getLowestAvailable(ParkingType parkingType) {
+        return getLowestAvailable(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * Get the lowest available spot number for a parking type in a facility, lowest level first
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the spot number, or -1 if there is no available spot of this type
+     */
+    public int getLowestAvailable(int facilityId, ParkingType parkingType) {
+        updateHolds();
+        for (Shard shard : shardsOf(facilityId, parkingType).values()) {
+            //ceiling returns null instead of throwing when the set is empty
+            Integer lowest = shard.spots.ceiling(Integer.MIN_VALUE);
+            if (lowest != null) {
+                return lowest;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the lowest available spot of a parking type from the index in one atomic step,
+     * concurrent callers never get the same spot number
+     *
+     * @param parkingType
+     * @return the removed spot number, or -1 if there is no available spot of this type
+     */
+    public int claimLowestAvailable(ParkingType parkingType) {
+        return claimLowestAvailable(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * Remove the lowest available spot of a parking type in a facility from the index in one atomic step,
+     * only the shards of that facility are touched
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the removed spot number, or -1 if there is no available spot of this type
+     */
+    public int claimLowestAvailable(int facilityId, ParkingType parkingType) {
+        updateHolds();
+        for (Shard shard : shardsOf(facilityId, parkingType).values()) {
+            Integer lowest = shard.spots.pollFirst();
+            if (lowest != null) {
+                shard.available.decrement();
+                return lowest;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keep a spot from lookups and claims until it is unheld, it stays available and counted
+     *
+     * @param spotNumber indexed or not yet
+     */
+    public void hold(int spotNumber) {
+        //added first, so an update of the spot running meanwhile either sees it held or is followed by the move
+        heldSpots.add(spotNumber);
+        Shard shard = shardOfSpot.get(spotNumber);
+        if (shard != null) {
+            synchronized (shard) {
+                if (shard.spots.remove(spotNumber)) {
+                    shard.held.add(spotNumber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Give a held spot back to lookups and claims
+     *
+     * @param spotNumber
+     */
+    public void unhold(int spotNumber) {
+        heldSpots.remove(spotNumber);
+        Shard shard = shardOfSpot.get(spotNumber);
+        if (shard != null) {
+            synchronized (shard) {
+                if (shard.held.remove(spotNumber)) {
+                    shard.spots.add(spotNumber);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the spots held, available or not
+     */
+    public Set<Integer> getHeldSpots() {
+        return new TreeSet<>(heldSpots);
+    }
+
+    /**
+     * Set the task holding and releasing the spots whose hold starts or ends, it runs before each lookup and claim
+     * so it must return at once when no hold is due
+     *
+     * @param holdUpdater or null for none
+     */
+    public void setHoldUpdater(Runnable holdUpdater) {
+        this.holdUpdater = holdUpdater;
+    }
+
+    public Runnable getHoldUpdater() {
+        return holdUpdater;
+    }
+
+    private void updateHolds() {
+        Runnable updater = holdUpdater;
+        if (updater != null) {
+            updater.run();
+        }
+    }
+
+    /**
+     * @param spotNumber
+     * @return true if the spot is indexed and available, held or not
+     */
+    public boolean isAvailable(int spotNumber) {
+        Shard shard = shardOfSpot.get(spotNumber);
+        return shard != null && (shard.spots.contains(spotNumber) || shard.held.contains(spotNumber));
+    }
+
+    /**
+     * Get the indexed spots of a parking type in a facility, available or not
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the spot numbers, in the order claims give them
+     */
+    public List<Integer> getSpots(int facilityId, ParkingType parkingType) {
+        List<Integer> spots = new ArrayList<>();
+        for (Shard shard : shardsOf(facilityId, parkingType).values()) {
+            spots.addAll(shard.allSpots);
+        }
+        return spots;
+    }
+
+    /**
+     * Record the availability of a parking spot, an available spot is added to the index, to the held spots
+     * of its shard when it is held, and an occupied one is removed from it. A spot stays in the shard of its first update
+     *
+     * @param parkingSpot
+     */
+    public void update(ParkingSpot parkingSpot) {
+        Shard shard = shardOfSpot.computeIfAbsent(parkingSpot.getId(), number -> {
+            Shard firstShard = shards.get(parkingSpot.getParkingType())
+                    .computeIfAbsent(shardKey(parkingSpot.getFacilityId(), parkingSpot.getLevel()), key -> new Shard());
+            firstShard.total.increment();
+            firstShard.allSpots.add(parkingSpot.getId());
+            return firstShard;
+        });
+        int number = parkingSpot.getId();
+        //claims only poll the available spots, the moves between them and the held spots are made under the shard lock
+        synchronized (shard) {
+            if (parkingSpot.isAvailable()) {
+                if (!shard.spots.contains(number) && !shard.held.contains(number)
+                        && (heldSpots.contains(number) ? shard.held : shard.spots).add(number)) {
+                    shard.available.increment();
+                }
+            } else if (shard.spots.remove(number) || shard.held.remove(number)) {
+                shard.available.decrement();
+            }
+        }
+    }
+
+    /**
+     * Get the number of available spots for a parking type
+     *
+     * @param parkingType
+     * @return the count of available spots
+     */
+    public int countAvailable(ParkingType parkingType) {
+        return countAvailable(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * Get the number of available spots for a parking type in a facility
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the count of available spots
+     */
+    public int countAvailable(int facilityId, ParkingType parkingType) {
+        int count = 0;
+        for (Shard shard : shardsOf(facilityId, parkingType).values()) {
+            count += shard.available.intValue();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of indexed spots for a parking type in a facility, available or not
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the count of spots
+     */
+    public int countSpots(int facilityId, ParkingType parkingType) {
+        int count = 0;
+        for (Shard shard : shardsOf(facilityId, parkingType).values()) {
+            count += shard.total.intValue();
+        }
+        return count;
+    }
+
+    /**
+     * @return the ids of the facilities with at least one indexed spot, in order
+     */
+    public SortedSet<Integer> getFacilityIds() {
+        SortedSet<Integer> facilityIds = new TreeSet<>();
+        for (ConcurrentSkipListMap<Long, Shard> shardsOfType : shards.values()) {
+            for (Long shardKey : shardsOfType.keySet()) {
+                facilityIds.add((int) (shardKey >> 32));
+            }
+        }
+        return facilityIds;
+    }
+
+    /**
+     * @return the number of facility, level and parking type shards
+     */
+    public int getShardCount() {
+        int count = 0;
+        for (ConcurrentSkipListMap<Long, Shard> shardsOfType : shards.values()) {
+            count += shardsOfType.size();
+        }
+        return count;
+    }
+
+    /**
+     * Forget every spot, the held spots stay held when they are indexed again
+     */
+    public void clear() {
+        for (ConcurrentSkipListMap<Long, Shard> shardsOfType : shards.values()) {
+            shardsOfType.clear();
+        }
+        shardOfSpot.clear();
+    }
+
+    private ConcurrentNavigableMap<Long, Shard> shardsOf(int facilityId, ParkingType parkingType) {
+        ConcurrentSkipListMap<Long, Shard> shardsOfType = shards.get(parkingType);
+        if (facilityId == ParkingSpot.ANY_FACILITY) {
+            return shardsOfType;
+        }
+        return shardsOfType.subMap(shardKey(facilityId, Integer.MIN_VALUE), true, shardKey(facilityId, Integer.MAX_VALUE), true);
+    }
+
+    /**
+     * Facility in the high bits and level in the low bits, with the sign bit of the level flipped
+     * so basement levels sort before the ground level
+     */
+    private static long shardKey(int facilityId, int level) {
+        return ((long) facilityId << 32) | ((level ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static class Shard {
+        //available and not held
+        private final ConcurrentSkipListSet<Integer> spots = new ConcurrentSkipListSet<>();
+        //available and held
+        private final ConcurrentSkipListSet<Integer> held = new ConcurrentSkipListSet<>();
+        //available or not
+        private final ConcurrentSkipListSet<Integer> allSpots = new ConcurrentSkipListSet<>();
+        //size of a skip list set is O(n), the counter is kept next to it and striped so that
+        //occupancy reads and allocations of many gates do not contend on one word
+        private final LongAdder available = new LongAdder();
+        private final LongAdder total = new LongAdder();
+    }
+}
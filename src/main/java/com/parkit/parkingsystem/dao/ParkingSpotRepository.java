@@ -0,0 +1,45 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Storage of the parking spots and their availability
+ */
+public interface ParkingSpotRepository {
+
+    /**
+     * Get the lowest available spot of a parking type, without taking it
+     *
+     * @param parkingType
+     * @return the spot number, or -1 if there is no available spot of this type
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Pick the lowest available spot of a parking type and mark it as occupied in one atomic step,
+     * two gates claiming at the same time always get different spots
+     *
+     * @param parkingType
+     * @return the claimed spot number, or -1 if there is no available spot of this type
+     */
+    int claimNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Pick the lowest available spot of a parking type in a facility, lowest level first, and mark it as occupied
+     * in one atomic step. Claims in different facilities do not contend with each other
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the claimed spot number, or -1 if there is no available spot of this type in the facility
+     */
+    int claimNextAvailableSlot(int facilityId, ParkingType parkingType);
+
+    /**
+     * Update the availability of a parking spot
+     *
+     * @param parkingSpot
+     * @return true if the spot has been updated
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+}
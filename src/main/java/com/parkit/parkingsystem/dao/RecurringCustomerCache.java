@@ -0,0 +1,216 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the number of tickets per vehicle. An entry expires after its time to live so the count
+ * is reloaded from database, and once the cache is full the expired entries are evicted to make room,
+ * a vehicle is left out when none has expired. Vehicles are keyed by their packed registration number
+ * in a {@link LongKeyMap}, so lookups take no lock and updates only lock one segment.
+ * <p>
+ * A count read from database is only cached with the token of {@link #beginLoad(String)}, so a ticket saved
+ * while it was read, whose increment it may miss, makes the cache drop it instead of keeping a stale count.
+ */
+public class RecurringCustomerCache {
+
+    private final int maximumSize;
+    private final long timeToLiveMs;
+    private final LongSupplier clock;
+    private final LongKeyMap<CachedCount> counts = new LongKeyMap<>();
+
+    //token of the last load, 0 is the token of the counts
+    private final AtomicLong lastLoadToken = new AtomicLong();
+    //no entry expires before, so a full cache is not swept again until then
+    private volatile long nextSweepAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RecurringCustomerCache(int maximumSize, long timeToLiveMs) {
+        this(maximumSize, timeToLiveMs, System::currentTimeMillis);
+    }
+
+    public RecurringCustomerCache(int maximumSize, long timeToLiveMs, LongSupplier clock) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveMs = timeToLiveMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached number of tickets of a vehicle
+     *
+     * @param vehicleRegNumber
+     * @return the number of tickets, or null if the vehicle is not cached or its entry expired
+     */
+    public Integer get(String vehicleRegNumber) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        CachedCount cachedCount = counts.get(vehicle);
+        if (cachedCount == null || cachedCount.expiresAt <= clock.getAsLong()) {
+            if (cachedCount != null) {
+                counts.remove(vehicle, cachedCount);
+            }
+            misses.increment();
+            return null;
+        }
+        if (cachedCount.loadToken != 0) {
+            //still being read from database
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cachedCount.count;
+    }
+
+    /**
+     * Start reading the number of tickets of a vehicle from database, call it before the query
+     *
+     * @param vehicleRegNumber
+     * @return the token to cache the count read with {@link #put(String, int, long)}
+     */
+    public long beginLoad(String vehicleRegNumber) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        long loadToken = lastLoadToken.incrementAndGet();
+        long now = clock.getAsLong();
+        if (counts.get(vehicle) == null && !hasRoom(now)) {
+            //not cached, the count read is dropped
+            return loadToken;
+        }
+        counts.compute(vehicle, cachedCount -> {
+            if (cachedCount == null || cachedCount.loadToken != 0 || cachedCount.expiresAt <= now) {
+                //a concurrent load of the same vehicle is superseded, its count is dropped
+                return new CachedCount(0, now + timeToLiveMs, loadToken);
+            }
+            return cachedCount;
+        });
+        return loadToken;
+    }
+
+    /**
+     * Cache the number of tickets of a vehicle read from database since {@link #beginLoad(String)}.
+     * The count is dropped if a ticket of the vehicle was counted meanwhile, and an entry already in cache is kept
+     * since it has been incremented after the database was read
+     *
+     * @param vehicleRegNumber
+     * @param count
+     * @param loadToken returned by {@link #beginLoad(String)}
+     */
+    public void put(String vehicleRegNumber, int count, long loadToken) {
+        long now = clock.getAsLong();
+        counts.compute(VehicleRegNumber.pack(vehicleRegNumber), cachedCount ->
+                (cachedCount != null && cachedCount.loadToken == loadToken) ? new CachedCount(count, now + timeToLiveMs, 0) : cachedCount);
+    }
+
+    /**
+     * Cache the number of tickets of a vehicle loaded from database before any ticket is counted,
+     * to warm up the cache at startup. An entry already in cache is kept
+     *
+     * @param vehicleRegNumber
+     * @param count
+     */
+    public void put(String vehicleRegNumber, int count) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        long now = clock.getAsLong();
+        if (counts.get(vehicle) == null && !hasRoom(now)) {
+            return;
+        }
+        counts.compute(vehicle, cachedCount ->
+                (cachedCount == null || cachedCount.expiresAt <= now) ? new CachedCount(count, now + timeToLiveMs, 0) : cachedCount);
+    }
+
+    /**
+     * Count one more ticket for a vehicle once it is saved, a vehicle not in cache is left out
+     * and its count is loaded from database on next lookup, a count being loaded is dropped
+     *
+     * @param vehicleRegNumber
+     */
+    public void increment(String vehicleRegNumber) {
+        counts.compute(VehicleRegNumber.pack(vehicleRegNumber), cachedCount -> {
+            if (cachedCount == null || cachedCount.loadToken != 0) {
+                //the load may have read the database before this ticket was saved
+                return null;
+            }
+            return new CachedCount(cachedCount.count + 1, cachedCount.expiresAt, 0);
+        });
+    }
+
+    /**
+     * Make room for one more vehicle, evicting the expired ones when the cache is full.
+     * The size is checked before the entry is added, so concurrent loads may overshoot it by a few entries
+     */
+    private boolean hasRoom(long now) {
+        if (counts.size() < maximumSize) {
+            return true;
+        }
+        if (now < nextSweepAt) {
+            return false;
+        }
+        synchronized (this) {
+            if (now >= nextSweepAt) {
+                long[] earliestExpiry = {Long.MAX_VALUE};
+                counts.removeIf(cachedCount -> {
+                    if (cachedCount.expiresAt <= now) {
+                        return true;
+                    }
+                    earliestExpiry[0] = Math.min(earliestExpiry[0], cachedCount.expiresAt);
+                    return false;
+                });
+                nextSweepAt = earliestExpiry[0];
+            }
+        }
+        return counts.size() < maximumSize;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    public void clear() {
+        counts.clear();
+        nextSweepAt = 0;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return (lookups == 0) ? 0 : (double) hitCount / lookups;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public String toString() {
+        return "RecurringCustomerCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", hitRatio=" + getHitRatio() + "}";
+    }
+
+    /**
+     * Replaced as a whole on update, so a lookup never sees it half written
+     */
+    private static class CachedCount {
+        private final int count;
+        private final long expiresAt;
+        //token of the load of the count, 0 once it is loaded
+        private final long loadToken;
+
+        private CachedCount(int count, long expiresAt, long loadToken) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+            this.loadToken = loadToken;
+        }
+    }
+}
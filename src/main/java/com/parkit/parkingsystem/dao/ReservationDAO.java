@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class ReservationDAO implements ReservationRepository {
+
+    private static final Logger logger = LogManager.getLogger("ReservationDAO");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    @Override
+    public boolean saveReservation(Reservation reservation) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS)) {
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME
+                ps.setInt(1, reservation.getParkingNumber());
+                ps.setString(2, reservation.getVehicleRegNumber());
+                ps.setTimestamp(3, new Timestamp(reservation.getStartTime().getTime()));
+                ps.setTimestamp(4, new Timestamp(reservation.getEndTime().getTime()));
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        reservation.setId(keys.getInt(1));
+                    }
+                }
+            }
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving reservation", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public boolean deleteReservation(Reservation reservation) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.DELETE_RESERVATION)) {
+                ps.setInt(1, reservation.getId());
+                return ps.executeUpdate() == 1;
+            }
+        } catch (Exception ex) {
+            logger.error("Error deleting reservation", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public List<Reservation> getReservationsEndingAfter(long time) {
+        List<Reservation> reservations = new ArrayList<>();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_RESERVATIONS_ENDING_AFTER)) {
+                ps.setTimestamp(1, new Timestamp(time));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Reservation reservation = new Reservation(rs.getInt(2), ParkingType.valueOf(rs.getString(6)),
+                                rs.getString(3), new Date(rs.getTimestamp(4).getTime()), new Date(rs.getTimestamp(5).getTime()));
+                        reservation.setId(rs.getInt(1));
+                        reservations.add(reservation);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error fetching reservations", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return reservations;
+    }
+}
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Reservation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In memory index of the reservations of each parking spot, by start time. The reservations of a spot never overlap,
+ * so the one starting last before the end of a window is the only one that may overlap it, and checking that a spot
+ * is free for a window is one O(log n) lookup in the reservations of that spot, whatever the total number of reservations.
+ */
+public class ReservationIndex {
+
+    //reservations of each spot by start time, guarded by the map of the spot
+    private final Map<Integer, NavigableMap<Long, Reservation>> reservationsOfSpot = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Add a reservation if its spot is free for its whole window
+     *
+     * @param reservation
+     * @return false if another reservation of the spot overlaps it, it is not added then
+     */
+    public boolean add(Reservation reservation) {
+        NavigableMap<Long, Reservation> reservations = reservationsOfSpot.computeIfAbsent(reservation.getParkingNumber(),
+                number -> new TreeMap<>());
+        long startTime = reservation.getStartTime().getTime();
+        synchronized (reservations) {
+            if (overlaps(reservations, startTime, reservation.getEndTime().getTime())) {
+                return false;
+            }
+            reservations.put(startTime, reservation);
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @param reservation
+     * @return true if the reservation was in the index
+     */
+    public boolean remove(Reservation reservation) {
+        NavigableMap<Long, Reservation> reservations = reservationsOfSpot.get(reservation.getParkingNumber());
+        if (reservations == null) {
+            return false;
+        }
+        boolean removed;
+        synchronized (reservations) {
+            removed = reservations.remove(reservation.getStartTime().getTime(), reservation);
+        }
+        if (removed) {
+            size.decrementAndGet();
+        }
+        return removed;
+    }
+
+    /**
+     * @param parkingNumber
+     * @param fromTime      epoch millis, included
+     * @param toTime        epoch millis, excluded
+     * @return true if no reservation of the spot overlaps the window
+     */
+    public boolean isFree(int parkingNumber, long fromTime, long toTime) {
+        NavigableMap<Long, Reservation> reservations = reservationsOfSpot.get(parkingNumber);
+        if (reservations == null) {
+            return true;
+        }
+        synchronized (reservations) {
+            return !overlaps(reservations, fromTime, toTime);
+        }
+    }
+
+    /**
+     * Forget the reservations ended at a time
+     *
+     * @param time    epoch millis
+     * @param removed given each removed reservation, under the lock of its spot
+     * @return the number of reservations removed
+     */
+    public int removeEndedBefore(long time, Consumer<Reservation> removed) {
+        int count = 0;
+        for (NavigableMap<Long, Reservation> reservations : reservationsOfSpot.values()) {
+            synchronized (reservations) {
+                Iterator<Reservation> iterator = reservations.values().iterator();
+                while (iterator.hasNext()) {
+                    Reservation reservation = iterator.next();
+                    if (reservation.getEndTime().getTime() > time) {
+                        break;
+                    }
+                    iterator.remove();
+                    removed.accept(reservation);
+                    count++;
+                }
+            }
+        }
+        size.addAndGet(-count);
+        return count;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private static boolean overlaps(NavigableMap<Long, Reservation> reservations, long fromTime, long toTime) {
+        Map.Entry<Long, Reservation> lastStartingBefore = reservations.lowerEntry(toTime);
+        return lastStartingBefore != null && lastStartingBefore.getValue().getEndTime().getTime() > fromTime;
+    }
+}
@@ -0,0 +1,31 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Reservation;
+
+import java.util.List;
+
+/**
+ * Storage of the reservations, the reservation index is rebuilt from it at startup
+ */
+public interface ReservationRepository {
+
+    /**
+     * Save a new reservation and set its id
+     *
+     * @param reservation
+     * @return true if the reservation has been saved
+     */
+    boolean saveReservation(Reservation reservation);
+
+    /**
+     * @param reservation
+     * @return true if the reservation has been deleted
+     */
+    boolean deleteReservation(Reservation reservation);
+
+    /**
+     * @param time epoch millis
+     * @return the reservations ending after a time
+     */
+    List<Reservation> getReservationsEndingAfter(long time);
+}
@@ -0,0 +1,126 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the closed tickets out of the ticket table into the ticket_archive table, so that the ticket table
+ * only holds the open tickets and the recent history, and its indexes stay small enough to be kept in memory.
+ * <p>
+ * The archived tickets of each vehicle are rolled up into its vehicle_visits row, which the counts of previous
+ * tickets add to the ticket table, so the recurring customer discount is unchanged by the archival.
+ * Each batch is copied, rolled up and deleted in one transaction, so a ticket is never counted twice or lost.
+ */
+public class TicketArchiveDAO {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveDAO");
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    //tickets moved per transaction, so that the locks on the ticket table are held briefly
+    public int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Archive the tickets that left before a time, batch after batch, stopping at the first failing batch
+     *
+     * @param outTime the tickets that left before are archived
+     * @return the number of archived tickets
+     */
+    public long archiveClosedBefore(long outTime) {
+        long archived = 0;
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int batch;
+            do {
+                batch = archiveBatch(con, new Timestamp(outTime));
+                con.commit();
+                archived += batch;
+            } while (batch == batchSize);
+        } catch (Exception ex) {
+            logger.error("Error archiving tickets after " + archived + " tickets", ex);
+            dataBaseConfig.rollback(con);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        logger.info("Archived " + archived + " tickets");
+        return archived;
+    }
+
+    private int archiveBatch(Connection con, Timestamp outTime) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        //keyed like the case insensitive VEHICLE_REG_NUMBER column compares them
+        Map<String, VehicleVisits> visits = new HashMap<>();
+        //IN_TIME is before OUT_TIME, bounding it walks the TICKET_IN_TIME_IDX index from the oldest ticket
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS)) {
+            ps.setTimestamp(1, outTime);
+            ps.setTimestamp(2, outTime);
+            ps.setInt(3, batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                    VehicleVisits vehicleVisits = visits.computeIfAbsent(VehicleRegNumber.normalize(rs.getString(2)),
+                            vehicleRegNumber -> new VehicleVisits());
+                    vehicleVisits.visits++;
+                    //read in in time order, the last one is the latest
+                    vehicleVisits.lastInTime = rs.getTimestamp(3);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        executeForIds(con, DBConstants.ARCHIVE_TICKETS, ids);
+        rollUp(con, visits);
+        executeForIds(con, DBConstants.DELETE_TICKETS, ids);
+        return ids.size();
+    }
+
+    private static void executeForIds(Connection con, String sql, List<Integer> ids) throws SQLException {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append((i == 0) ? "?" : ",?");
+        }
+        try (PreparedStatement ps = con.prepareStatement(String.format(sql, placeholders))) {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setInt(i + 1, ids.get(i));
+            }
+            if (ps.executeUpdate() != ids.size()) {
+                throw new SQLException("Tickets changed while being archived");
+            }
+        }
+    }
+
+    private static void rollUp(Connection con, Map<String, VehicleVisits> visits) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.ADD_VEHICLE_VISITS)) {
+            for (Map.Entry<String, VehicleVisits> entry : visits.entrySet()) {
+                ps.setString(1, entry.getKey());
+                ps.setInt(2, entry.getValue().visits);
+                ps.setTimestamp(3, entry.getValue().lastInTime);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static class VehicleVisits {
+        private int visits;
+        private Timestamp lastInTime;
+    }
+}
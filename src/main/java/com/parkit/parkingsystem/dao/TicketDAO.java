@@ -5,62 +5,624 @@ import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+import com.parkit.parkingsystem.util.Money;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final int RECURRING_CUSTOMER_CACHE_SIZE = 10000;
+    private static final long RECURRING_CUSTOMER_CACHE_TTL_MS = 24 * 60 * 60 * 1000;
+    //number of vehicles per batch query and tickets per batch transaction
+    private static final int BATCH_SIZE = 1000;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
-    public boolean saveTicket(Ticket ticket) {
+    //spot updates of the entry and exit transactions, share it with the ParkingService one to share its index
+    public ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+
+    //facility of the gates served by this DAO, incoming vehicles are only given spots of that facility
+    public int facilityId = ParkingSpot.ANY_FACILITY;
+
+    //number of tickets per vehicle, so the recurring user discount does not query the ticket history
+    public RecurringCustomerCache recurringCustomerCache = new RecurringCustomerCache(
+            RECURRING_CUSTOMER_CACHE_SIZE, RECURRING_CUSTOMER_CACHE_TTL_MS);
+
+    //open ticket per packed vehicle registration number, null until loadOpenTickets is called
+    private volatile LongKeyMap<Ticket> openTickets;
+
+    /**
+     * Load every open ticket, with no out time, from database into the open ticket index.
+     * Exiting vehicles are then served from memory
+     *
+     * @return true if the index has been loaded
+     */
+    public boolean loadOpenTickets() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            LongKeyMap<Ticket> index = new LongKeyMap<>();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Ticket ticket = readTicket(rs, rs.getString(7));
+                    index.put(VehicleRegNumber.pack(ticket.getVehicleRegNumber()), ticket);
+                }
+            }
+            openTickets = index;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading open tickets", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Get the open ticket of a vehicle, from the open ticket index when it is loaded, from database otherwise
+     *
+     * @param vehicleRegNumber
+     * @return a copy of the open ticket, or null if the vehicle has no open ticket
+     */
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        LongKeyMap<Ticket> index = openTickets;
+        if (index != null) {
+            long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+            Ticket openTicket = index.get(vehicle);
+            if (openTicket != null && VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, openTicket.getVehicleRegNumber())) {
+                return copyOf(openTicket);
+            }
+        }
+        //not opened through this process, look for it with the (VEHICLE_REG_NUMBER, OUT_TIME) index
+        Connection con = null;
+        Ticket ticket = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET)) {
+                ps.setString(1, vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        ticket = readTicket(rs, vehicleRegNumber);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error fetching open ticket", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return ticket;
+    }
+
+    /**
+     * Get the open tickets of many vehicles at once, from the open ticket index when it is loaded
+     * and with one query per batch of vehicles otherwise
+     *
+     * @param vehicleRegNumbers
+     * @return a copy of the open ticket of each vehicle by registration number, vehicles without open ticket are left out
+     */
+    @Override
+    public Map<String, Ticket> getOpenTickets(List<String> vehicleRegNumbers) {
+        Map<String, Ticket> tickets = new HashMap<>();
+        List<String> notIndexed = new ArrayList<>();
+        LongKeyMap<Ticket> index = openTickets;
+        for (String vehicleRegNumber : vehicleRegNumbers) {
+            long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+            Ticket openTicket = (index == null) ? null : index.get(vehicle);
+            if (openTicket != null && VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, openTicket.getVehicleRegNumber())) {
+                tickets.put(vehicleRegNumber, copyOf(openTicket));
+            } else {
+                notIndexed.add(vehicleRegNumber);
+            }
+        }
+        for (List<String> batch : batches(notIndexed)) {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                try (PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_OPEN_TICKETS_OF_VEHICLES, placeholders(batch.size())))) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        ps.setString(i + 1, batch.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Ticket ticket = readTicket(rs, rs.getString(7));
+                            tickets.put(ticket.getVehicleRegNumber(), ticket);
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                logger.error("Error fetching open tickets", ex);
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * Get sum of previous tickets for many vehicles at once, from the recurring customer cache
+     * and with one query per batch of vehicles not in cache
+     *
+     * @param vehicleRegNumbers
+     * @return the sum of tickets by vehicle registration number
+     */
+    @Override
+    public Map<String, Integer> getCountsOfPreviousTickets(List<String> vehicleRegNumbers) {
+        Map<String, Integer> counts = new HashMap<>();
+        List<String> notCached = new ArrayList<>();
+        for (String vehicleRegNumber : vehicleRegNumbers) {
+            Integer cachedCount = recurringCustomerCache.get(vehicleRegNumber);
+            if (cachedCount != null) {
+                counts.put(vehicleRegNumber, cachedCount);
+            } else {
+                notCached.add(vehicleRegNumber);
+            }
+        }
+        for (List<String> batch : batches(notCached)) {
+            Connection con = null;
+            Map<String, Long> loadTokens = new HashMap<>();
+            for (String vehicleRegNumber : batch) {
+                loadTokens.put(vehicleRegNumber, recurringCustomerCache.beginLoad(vehicleRegNumber));
+            }
+            try {
+                con = dataBaseConfig.getConnection();
+                Map<String, Integer> batchCounts = new HashMap<>();
+                try (PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_COUNT_OF_PREVIOUS_TICKETS_OF_VEHICLES, placeholders(batch.size())))) {
+                    //once for the ticket table, once for the visits of the archived tickets
+                    for (int i = 0; i < batch.size(); i++) {
+                        ps.setString(i + 1, batch.get(i));
+                        ps.setString(batch.size() + i + 1, batch.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            batchCounts.put(rs.getString(1), rs.getInt(2));
+                        }
+                    }
+                }
+                for (String vehicleRegNumber : batch) {
+                    //vehicles without any ticket are not returned by the group by
+                    int count = batchCounts.getOrDefault(vehicleRegNumber, 0);
+                    counts.put(vehicleRegNumber, count);
+                    recurringCustomerCache.put(vehicleRegNumber, count, loadTokens.get(vehicleRegNumber));
+                }
+            } catch (Exception ex) {
+                logger.error("Error fetching count of previous tickets", ex);
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Close many priced tickets and release their parking spots with JDBC batches, one transaction per batch of tickets.
+     * Only the spots of the tickets actually closed are released
+     *
+     * @param tickets the priced tickets, with their out time
+     * @return for each ticket in order, true if it was still open and has been closed
+     */
+    @Override
+    public boolean[] closeTickets(List<Ticket> tickets) {
+        boolean[] closed = new boolean[tickets.size()];
+        int offset = 0;
+        for (List<Ticket> batch : batches(tickets)) {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                con.setAutoCommit(false);
+                int[] updateRowCounts;
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.CLOSE_TICKET)) {
+                    for (Ticket ticket : batch) {
+                        ps.setBigDecimal(1, Money.toBigDecimal(ticket.getPriceInMinorUnits()));
+                        ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                        ps.setInt(3, ticket.getId());
+                        ps.addBatch();
+                    }
+                    updateRowCounts = ps.executeBatch();
+                }
+
+                List<Ticket> closedTickets = new ArrayList<>();
+                List<ParkingSpot> releasedSpots = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (updateRowCounts[i] == 1 || updateRowCounts[i] == Statement.SUCCESS_NO_INFO) {
+                        Ticket ticket = batch.get(i);
+                        closedTickets.add(ticket);
+                        releasedSpots.add(new ParkingSpot(ticket.getParkingSpot().getId(), ticket.getParkingSpot().getParkingType(), true));
+                        closed[offset + i] = true;
+                    }
+                }
+                parkingSpotDAO.updateParkings(con, releasedSpots);
+                con.commit();
+                for (int i = 0; i < closedTickets.size(); i++) {
+                    unindexClosedTicket(closedTickets.get(i));
+                    closedTickets.get(i).getParkingSpot().setAvailable(true);
+                    parkingSpotDAO.updateAvailabilityIndex(releasedSpots.get(i));
+                }
+            } catch (Exception ex) {
+                logger.error("Error closing batch of tickets", ex);
+                dataBaseConfig.rollback(con);
+                Arrays.fill(closed, offset, offset + batch.size(), false);
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+            offset += batch.size();
+        }
+        return closed;
+    }
+
+    private static <T> List<List<T>> batches(List<T> items) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            batches.add(items.subList(from, Math.min(from + BATCH_SIZE, items.size())));
+        }
+        return batches;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append((i == 0) ? "?" : ",?");
+        }
+        return placeholders.toString();
+    }
+
+    //PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE columns, in that order
+    private static Ticket readTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPriceInMinorUnits(Money.fromBigDecimal(rs.getBigDecimal(3)));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        return ticket;
+    }
+
+    /**
+     * Warm the recurring customer cache with the ticket counts of the most recently seen vehicles
+     *
+     * @return the number of vehicles loaded into the cache
+     */
+    public int loadRecurringCustomers() {
+        Connection con = null;
+        int loaded = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_RECURRING_CUSTOMERS)) {
+                ps.setInt(1, recurringCustomerCache.getMaximumSize());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        recurringCustomerCache.put(rs.getString(1), rs.getInt(2));
+                        loaded++;
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error loading recurring customers", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return loaded;
+    }
+
+    /**
+     * Claim the next available spot of a parking type and save the incoming ticket on it,
+     * both in one transaction on one connection
+     *
+     * @param ticket      the incoming ticket, its parking spot is set to the claimed one
+     * @param parkingType
+     * @return true if a spot has been claimed and the ticket saved, false if no spot is available
+     * @throws IllegalStateException if the ticket could not be saved, once the transaction is rolled back
+     */
+    @Override
+    public boolean saveIncomingTicket(Ticket ticket, ParkingType parkingType) {
+        Connection con = null;
+        int parkingNumber = -1;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            parkingNumber = parkingSpotDAO.claimNextAvailableSlot(con, facilityId, parkingType);
+            if (parkingNumber <= 0) {
+                con.rollback();
+                return false;
+            }
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            insertTicket(con, ticket);
+            con.commit();
+        } catch (Exception ex) {
+            logger.error("Error saving incoming ticket", ex);
+            dataBaseConfig.rollback(con);
+            if (parkingNumber > 0) {
+                parkingSpotDAO.updateAvailabilityIndex(new ParkingSpot(parkingNumber, parkingType, true));
+            }
+            //not a full parking, the gate must tell the driver apart
+            throw new IllegalStateException("Unable to save incoming ticket of " + ticket.getVehicleRegNumber(), ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        //committed, nothing is rolled back or given back from here
+        cacheSavedTicket(ticket);
+        return true;
+    }
+
+    /**
+     * Count a committed ticket for its vehicle and index it as open. A failure is only logged: the ticket is saved,
+     * and the vehicle is then read from database
+     */
+    private void cacheSavedTicket(Ticket ticket) {
+        try {
+            recurringCustomerCache.increment(ticket.getVehicleRegNumber());
+        } catch (RuntimeException ex) {
+            logger.error("Error counting saved ticket of " + ticket.getVehicleRegNumber(), ex);
+        }
+        try {
+            indexOpenTicket(ticket);
+        } catch (RuntimeException ex) {
+            logger.error("Error indexing saved ticket of " + ticket.getVehicleRegNumber(), ex);
+        }
+    }
+
+    /**
+     * Save many incoming tickets on spots reserved with {@link ParkingSpotDAO#reserveNextAvailableSlot(int, ParkingType)},
+     * with one batch claiming the spots and one multi-row insert of the tickets, in one transaction.
+     * A spot found already taken in database is replaced by the next available one, set on the ticket,
+     * and nothing is saved when there is none. The id of each ticket is set from the generated keys
+     *
+     * @param tickets the incoming tickets, with their parking spot
+     * @return true if every ticket has been saved, none is saved otherwise
+     */
+    public boolean saveIncomingTickets(List<Ticket> tickets) {
+        Connection con = null;
+        List<ParkingSpot> replacementSpots = new ArrayList<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            List<Integer> parkingNumbers = new ArrayList<>(tickets.size());
+            for (Ticket ticket : tickets) {
+                parkingNumbers.add(ticket.getParkingSpot().getId());
+            }
+            int[] claimCounts = parkingSpotDAO.claimParkings(con, parkingNumbers);
+            for (int i = 0; i < tickets.size(); i++) {
+                if (claimCounts[i] == 1) {
+                    continue;
+                }
+                //taken in database since the index gave it, by another process allocating spots
+                Ticket ticket = tickets.get(i);
+                ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+                int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(con, facilityId, parkingType);
+                if (parkingNumber <= 0) {
+                    logger.error("Parking spot " + ticket.getParkingSpot().getId() + " of " + ticket.getVehicleRegNumber()
+                            + " already taken and no other one available");
+                    rollback(con, replacementSpots);
+                    return false;
+                }
+                logger.warn("Parking spot " + ticket.getParkingSpot().getId() + " of " + ticket.getVehicleRegNumber()
+                        + " already taken, saved on " + parkingNumber);
+                ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+                replacementSpots.add(new ParkingSpot(parkingNumber, parkingType, true));
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+                for (Ticket ticket : tickets) {
+                    ps.setInt(1, ticket.getParkingSpot().getId());
+                    ps.setString(2, ticket.getVehicleRegNumber());
+                    ps.setBigDecimal(3, Money.toBigDecimal(ticket.getPriceInMinorUnits()));
+                    ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                    ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                //one generated key per row, in insert order
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < tickets.size() && rs.next(); i++) {
+                        tickets.get(i).setId(rs.getInt(1));
+                    }
+                }
+            }
+            con.commit();
+        } catch (Exception ex) {
+            logger.error("Error saving batch of incoming tickets", ex);
+            rollback(con, replacementSpots);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        //committed, a failed batch would be retried and its tickets saved twice
+        for (Ticket ticket : tickets) {
+            cacheSavedTicket(ticket);
+        }
+        return true;
+    }
+
+    /**
+     * Roll back a transaction and give back to the availability index the spots it claimed
+     */
+    private void rollback(Connection con, List<ParkingSpot> claimedSpots) {
+        dataBaseConfig.rollback(con);
+        for (ParkingSpot parkingSpot : claimedSpots) {
+            parkingSpotDAO.updateAvailabilityIndex(parkingSpot);
+        }
+    }
+
+    /**
+     * Write the fare and out time of an open ticket and release its parking spot,
+     * both in one transaction on one connection
+     *
+     * @param ticket the priced ticket, with its out time
+     * @return true if the ticket was still open and has been closed
+     */
+    @Override
+    public boolean closeTicket(Ticket ticket) {
         Connection con = null;
+        ParkingSpot releasedSpot;
+        boolean alreadyClosed = false;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            con.setAutoCommit(false);
+            int updateRowCount;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.CLOSE_TICKET)) {
+                ps.setBigDecimal(1, Money.toBigDecimal(ticket.getPriceInMinorUnits()));
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setInt(3, ticket.getId());
+                updateRowCount = ps.executeUpdate();
+            }
+            releasedSpot = new ParkingSpot(ticket.getParkingSpot().getId(), ticket.getParkingSpot().getParkingType(), true);
+            //the ticket is already closed or unknown
+            alreadyClosed = updateRowCount != 1;
+            if (alreadyClosed || !parkingSpotDAO.updateParking(con, releasedSpot)) {
+                con.rollback();
+                return false;
+            }
+            con.commit();
+        } catch (Exception ex) {
+            logger.error("Error closing ticket", ex);
+            dataBaseConfig.rollback(con);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            if (alreadyClosed) {
+                //an index entry left by another exit must not keep the vehicle parked
+                uncacheClosedTicket(ticket);
+            }
+        }
+        //committed, nothing is rolled back from here
+        uncacheClosedTicket(ticket);
+        try {
+            ticket.getParkingSpot().setAvailable(true);
+            parkingSpotDAO.updateAvailabilityIndex(releasedSpot);
+        } catch (RuntimeException ex) {
+            logger.error("Error freeing spot of closed ticket " + ticket.getId(), ex);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a closed ticket from the open ticket index. A failure is only logged: the ticket is closed in database
+     */
+    private void uncacheClosedTicket(Ticket ticket) {
+        try {
+            unindexClosedTicket(ticket);
+        } catch (RuntimeException ex) {
+            logger.error("Error unindexing closed ticket " + ticket.getId(), ex);
+        }
+    }
+
+    private void insertTicket(Connection con, Ticket ticket) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            //ps.setInt(1,ticket.getId());
             ps.setInt(1, ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
+            ps.setBigDecimal(3, Money.toBigDecimal(ticket.getPriceInMinorUnits()));
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
-            return ps.execute();
+            ps.execute();
+            //the generated ID is needed to close the ticket without reading it back
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    ticket.setId(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Record a ticket in the open ticket index if it is loaded and the ticket is still open
+     */
+    private void indexOpenTicket(Ticket ticket) {
+        LongKeyMap<Ticket> index = openTickets;
+        if (index != null && ticket.getOutTime() == null) {
+            index.put(VehicleRegNumber.pack(ticket.getVehicleRegNumber()), copyOf(ticket));
+        }
+    }
+
+    /**
+     * Remove a closed ticket from the open ticket index if it is loaded
+     */
+    private void unindexClosedTicket(Ticket ticket) {
+        LongKeyMap<Ticket> index = openTickets;
+        if (index != null) {
+            long vehicle = VehicleRegNumber.pack(ticket.getVehicleRegNumber());
+            Ticket openTicket = index.get(vehicle);
+            if (openTicket != null && openTicket.getId() == ticket.getId()) {
+                index.remove(vehicle, openTicket);
+            }
+        }
+    }
+
+    //indexed, queued and stored tickets are private copies, so callers pricing a ticket never change them
+    static Ticket copyOf(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPriceInMinorUnits(ticket.getPriceInMinorUnits());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        return copy;
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            insertTicket(con, ticket);
+            recurringCustomerCache.increment(ticket.getVehicleRegNumber());
+            indexOpenTicket(ticket);
+            return true;
         } catch (Exception ex) {
-            logger.error("Error fetching next available slot", ex);
+            logger.error("Error saving ticket", ex);
+            return false;
         } finally {
             dataBaseConfig.closeConnection(con);
-            return false;
         }
     }
 
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
         Connection con = null;
         Ticket ticket = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1, vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET)) {
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                ps.setString(1, vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        ticket = readTicket(rs, vehicleRegNumber);
+                    }
+                }
+            }
+            if (ticket == null) {
+                //all the tickets of the vehicle may have been archived
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVED_TICKET)) {
+                    ps.setString(1, vehicleRegNumber);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            ticket = readTicket(rs, vehicleRegNumber);
+                        }
+                    }
+                }
+            }
         } catch (Exception ex) {
             logger.error("Error fetching next available slot", ex);
         } finally {
@@ -69,15 +631,18 @@ public class TicketDAO {
         }
     }
 
+    @Override
     public boolean updateTicket(Ticket ticket) {
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
-            ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-            ps.setInt(3, ticket.getId());
-            ps.execute();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+                ps.setBigDecimal(1, Money.toBigDecimal(ticket.getPriceInMinorUnits()));
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setInt(3, ticket.getId());
+                ps.execute();
+            }
+            unindexClosedTicket(ticket);
             return true;
         } catch (Exception ex) {
             logger.error("Error saving ticket info", ex);
@@ -88,25 +653,33 @@ public class TicketDAO {
     }
 
     /**
-     * Get sum of previous tickets for specific vehicle from database
+     * Get sum of previous tickets for specific vehicle, from the recurring customer cache or from database
      *
      * @param vehicleRegNumber
      * @return the sum as integer
      */
+    @Override
     public int getCountOfPreviousTickets(String vehicleRegNumber) {
+        Integer cachedCount = recurringCustomerCache.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            return cachedCount;
+        }
         Connection con = null;
         int sumOfPreviousTickets = 0;
+        long loadToken = recurringCustomerCache.beginLoad(vehicleRegNumber);
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_COUNT_OF_PREVIOUS_TICKETS);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1, vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                sumOfPreviousTickets = rs.getInt(1);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_COUNT_OF_PREVIOUS_TICKETS)) {
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                ps.setString(1, vehicleRegNumber);
+                ps.setString(2, vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        sumOfPreviousTickets = rs.getInt(1);
+                    }
+                }
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            recurringCustomerCache.put(vehicleRegNumber, sumOfPreviousTickets, loadToken);
         } catch (Exception ex) {
             logger.error("Error fetching next available slot", ex);
         } finally {
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+
+/**
+ * Closed tickets of a CSV export of the ticket table, so reports can run without touching the database.
+ * Each line is {@code IN_TIME,OUT_TIME,PRICE,TYPE} ordered by IN_TIME, times being epoch millis or
+ * {@code yyyy-MM-dd HH:mm:ss[.fraction]} in the zone of the reader. A header line and lines with no out time are skipped.
+ */
+public class TicketExportReader implements ClosedTicketSource {
+
+    private static final DateTimeFormatter DATE_TIME = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+
+    private final Path exportFile;
+    private final ZoneId zone;
+
+    public TicketExportReader(Path exportFile, ZoneId zone) {
+        this.exportFile = exportFile;
+        this.zone = zone;
+    }
+
+    @Override
+    public long forEachClosedTicket(long fromInTime, long toInTime, ClosedTicketVisitor visitor) throws IOException {
+        long count = 0;
+        long previousInTime = Long.MIN_VALUE;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(exportFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split(",");
+                if (line.isEmpty() || fields[0].trim().equalsIgnoreCase("IN_TIME")) {
+                    continue;
+                }
+                try {
+                    String outTime = fields[1].trim();
+                    if (outTime.isEmpty() || outTime.equalsIgnoreCase("NULL") || outTime.equals("\\N")) {
+                        continue;
+                    }
+                    long inTime = parseTime(fields[0]);
+                    if (inTime < previousInTime) {
+                        throw new IOException("Export not ordered by IN_TIME at line " + lineNumber + " of " + exportFile);
+                    }
+                    previousInTime = inTime;
+                    if (inTime >= toInTime) {
+                        break;
+                    }
+                    if (inTime >= fromInTime) {
+                        visitor.visit(ParkingType.valueOf(fields[3].trim()), inTime, parseTime(outTime),
+                                Money.fromBigDecimal(new BigDecimal(fields[2].trim())));
+                        count++;
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid ticket at line " + lineNumber + " of " + exportFile + ": " + line, e);
+                }
+            }
+        }
+        return count;
+    }
+
+    private long parseTime(String time) {
+        time = time.trim();
+        if (time.indexOf('-') < 0) {
+            return Long.parseLong(time);
+        }
+        return LocalDateTime.parse(time, DATE_TIME).atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,391 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the spot and ticket changes, written to a memory mapped file.
+ * Each record is the whole new state of one spot or one ticket, so replaying a record twice changes nothing.
+ * At startup the snapshot file then the journal are replayed into the in memory repositories.
+ * When the journal is full, or when {@link #compact()} is scheduled, the current state is written to a new snapshot
+ * file and the journal starts over, so the journal replayed at startup only holds the changes since then.
+ * <p>
+ * A record is in the page cache as soon as it is appended, so it survives a crash of the process.
+ * It survives a crash of the machine once {@link #sync()} returns: the repositories call it after each change,
+ * before acknowledging it, and the threads waiting at the same time share one force of the journal.
+ * A journal opened without sync acknowledges the changes from the page cache, those made since the last
+ * compaction may then be lost with the machine.
+ * <p>
+ * Record layout, {@value #RECORD_SIZE} bytes:
+ * <pre>
+ * 0  kind, 0 for the end of the journal         1  parking type ordinal
+ * 2  spot available, 1 or 0                     3  vehicle reg number length in bytes
+ * 4  parking number                             8  ticket id
+ * 12 price, minor units                        20 in time, epoch millis
+ * 28 out time, epoch millis or NO_TIME          36 vehicle reg number, UTF-8
+ * 60 CRC32 of bytes 0 to 59
+ * </pre>
+ */
+public class TicketJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketJournal");
+
+    public static final String JOURNAL_FILE = "tickets.journal";
+    public static final String SNAPSHOT_FILE = "tickets.snapshot";
+    //a million records, 64 MB of journal
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    static final int RECORD_SIZE = 64;
+    static final int MAXIMUM_VEHICLE_REG_NUMBER_LENGTH = 24;
+
+    private static final byte END = 0;
+    private static final byte SPOT = 1;
+    //tickets written before prices were minor units, their price is a double
+    private static final byte DOUBLE_PRICE_TICKET = 2;
+    private static final byte TICKET = 3;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int CHECKSUM_OFFSET = RECORD_SIZE - 4;
+
+    private final Path snapshotFile;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer journal;
+    private final InMemoryParkingSpotRepository parkingSpotRepository;
+    private final InMemoryTicketRepository ticketRepository;
+
+    private final boolean syncOnWrite;
+
+    //records in the journal since the last compaction, guarded by this
+    private int recordCount;
+    //records appended since the journal was opened, guarded by this
+    private long appendedRecords;
+    //records on disk, only forced by one thread at a time
+    private final AtomicLong forcedRecords = new AtomicLong();
+    private final Object forceLock = new Object();
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Open the journal of a directory and rebuild the given repositories from it
+     *
+     * @param directory             created if missing
+     * @param capacity              number of records the journal holds before it is compacted
+     * @param parkingSpotRepository empty repository, the spots of the snapshot and journal are replayed into it
+     * @param ticketRepository      empty repository, the tickets of the snapshot and journal are replayed into it
+     * @throws IOException if the files cannot be opened or the snapshot is corrupt
+     */
+    public TicketJournal(Path directory, int capacity, InMemoryParkingSpotRepository parkingSpotRepository,
+                         InMemoryTicketRepository ticketRepository) throws IOException {
+        this(directory, capacity, parkingSpotRepository, ticketRepository, true);
+    }
+
+    /**
+     * Open the journal of a directory and rebuild the given repositories from it
+     *
+     * @param directory             created if missing
+     * @param capacity              number of records the journal holds before it is compacted
+     * @param parkingSpotRepository empty repository, the spots of the snapshot and journal are replayed into it
+     * @param ticketRepository      empty repository, the tickets of the snapshot and journal are replayed into it
+     * @param syncOnWrite           false for {@link #sync()} to return at once, without forcing the journal to disk
+     * @throws IOException if the files cannot be opened or the snapshot is corrupt
+     */
+    public TicketJournal(Path directory, int capacity, InMemoryParkingSpotRepository parkingSpotRepository,
+                         InMemoryTicketRepository ticketRepository, boolean syncOnWrite) throws IOException {
+        this.syncOnWrite = syncOnWrite;
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.ticketRepository = ticketRepository;
+        Files.createDirectories(directory);
+        snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        replay();
+    }
+
+    private synchronized void replay() throws IOException {
+        int snapshotRecords = 0;
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                while (readRecord(in)) {
+                    if (!apply()) {
+                        throw new IOException("Corrupt record " + snapshotRecords + " in " + snapshotFile);
+                    }
+                    snapshotRecords++;
+                }
+            }
+        }
+        recordCount = 0;
+        while (recordCount < capacity) {
+            readRecord(recordCount);
+            //the end of the journal, or a record torn by a crash and everything after it
+            if (record[0] == END || !apply()) {
+                break;
+            }
+            recordCount++;
+        }
+        logger.info("Replayed " + snapshotRecords + " snapshot records and " + recordCount + " journal records");
+    }
+
+    /**
+     * Record the new state of a spot
+     *
+     * @param parkingSpot
+     * @throws IOException if the journal is full and cannot be compacted
+     */
+    public synchronized void append(ParkingSpot parkingSpot) throws IOException {
+        encode(parkingSpot);
+        appendRecord();
+    }
+
+    /**
+     * Record the new state of a ticket
+     *
+     * @param ticket
+     * @throws IOException if the journal is full and cannot be compacted
+     */
+    public synchronized void append(Ticket ticket) throws IOException {
+        encode(ticket);
+        appendRecord();
+    }
+
+    /**
+     * Check a vehicle reg number fits in a record before anything is changed for it
+     *
+     * @param vehicleRegNumber
+     * @throws IllegalArgumentException if it is too long
+     */
+    public static void checkVehicleRegNumber(String vehicleRegNumber) {
+        if (vehicleRegNumber.getBytes(StandardCharsets.UTF_8).length > MAXIMUM_VEHICLE_REG_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Vehicle reg number longer than " + MAXIMUM_VEHICLE_REG_NUMBER_LENGTH
+                    + " bytes: " + vehicleRegNumber);
+        }
+    }
+
+    private void appendRecord() throws IOException {
+        appendedRecords++;
+        if (recordCount == capacity) {
+            //the repositories already hold the change being recorded, so the snapshot includes it
+            compact();
+            return;
+        }
+        int offset = recordCount * RECORD_SIZE;
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            journal.putLong(offset + i, recordBuffer.getLong(i));
+        }
+        recordCount++;
+    }
+
+    /**
+     * Wait until the records appended so far are on disk. A thread finding another one forcing the journal waits
+     * for it then forces the records appended meanwhile in one go, for all the threads that appended them
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        if (!syncOnWrite) {
+            return;
+        }
+        long appended;
+        synchronized (this) {
+            appended = appendedRecords;
+        }
+        if (forcedRecords.get() >= appended) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (forcedRecords.get() >= appended) {
+                //forced by the thread holding the lock before
+                return;
+            }
+            long forcing;
+            synchronized (this) {
+                forcing = appendedRecords;
+            }
+            journal.force();
+            forcedRecords.accumulateAndGet(forcing, Math::max);
+        }
+    }
+
+    /**
+     * @return the number of records appended and not yet forced to disk
+     */
+    public synchronized long getUnsyncedRecordCount() {
+        return Math.max(0, appendedRecords - forcedRecords.get());
+    }
+
+    /**
+     * Write the current state of every spot and ticket to a new snapshot file and start an empty journal.
+     * The snapshot replaces the previous one with an atomic rename, so a crash at any point leaves either
+     * the old snapshot with the whole journal or the new snapshot, both replaying to the same state
+     *
+     * @throws IOException
+     */
+    public synchronized void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        Path temporaryFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        int snapshotRecords = 0;
+        try (FileOutputStream file = new FileOutputStream(temporaryFile.toFile());
+             OutputStream out = new BufferedOutputStream(file)) {
+            for (ParkingSpot parkingSpot : parkingSpotRepository.getParkingSpots()) {
+                encode(parkingSpot);
+                out.write(record);
+                snapshotRecords++;
+            }
+            for (Ticket ticket : ticketRepository.getTickets()) {
+                encode(ticket);
+                out.write(record);
+                snapshotRecords++;
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        //cleared from the first record on, so a crash while clearing ends the journal at its first record
+        for (int offset = 0; offset < recordCount * RECORD_SIZE; offset += 8) {
+            journal.putLong(offset, 0L);
+        }
+        journal.force();
+        //the snapshot holds every record appended so far
+        forcedRecords.accumulateAndGet(appendedRecords, Math::max);
+        logger.info("Compacted " + recordCount + " journal records into a snapshot of " + snapshotRecords
+                + " records in " + (System.currentTimeMillis() - start) + " ms");
+        recordCount = 0;
+    }
+
+    /**
+     * @return the number of records appended since the last compaction
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.force();
+        channel.close();
+    }
+
+    private void encode(ParkingSpot parkingSpot) {
+        clearRecord();
+        record[0] = SPOT;
+        record[1] = (byte) parkingSpot.getParkingType().ordinal();
+        record[2] = (byte) (parkingSpot.isAvailable() ? 1 : 0);
+        recordBuffer.putInt(4, parkingSpot.getId());
+        seal();
+    }
+
+    private void encode(Ticket ticket) {
+        clearRecord();
+        byte[] vehicleRegNumber = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (vehicleRegNumber.length > MAXIMUM_VEHICLE_REG_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Vehicle reg number too long: " + ticket.getVehicleRegNumber());
+        }
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        record[0] = TICKET;
+        record[1] = (byte) parkingSpot.getParkingType().ordinal();
+        record[2] = (byte) (parkingSpot.isAvailable() ? 1 : 0);
+        record[3] = (byte) vehicleRegNumber.length;
+        recordBuffer.putInt(4, parkingSpot.getId());
+        recordBuffer.putInt(8, ticket.getId());
+        recordBuffer.putLong(12, ticket.getPriceInMinorUnits());
+        recordBuffer.putLong(20, ticket.getInTime().getTime());
+        recordBuffer.putLong(28, (ticket.getOutTime() == null) ? NO_TIME : ticket.getOutTime().getTime());
+        System.arraycopy(vehicleRegNumber, 0, record, 36, vehicleRegNumber.length);
+        seal();
+    }
+
+    private void clearRecord() {
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            recordBuffer.putLong(i, 0L);
+        }
+    }
+
+    private void seal() {
+        checksum.reset();
+        checksum.update(record, 0, CHECKSUM_OFFSET);
+        recordBuffer.putInt(CHECKSUM_OFFSET, (int) checksum.getValue());
+    }
+
+    private void readRecord(int index) {
+        int offset = index * RECORD_SIZE;
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            recordBuffer.putLong(i, journal.getLong(offset + i));
+        }
+    }
+
+    private boolean readRecord(DataInputStream in) throws IOException {
+        try {
+            in.readFully(record);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Apply the record read into the repositories
+     *
+     * @return false if the record is not valid, nothing is applied then
+     */
+    private boolean apply() {
+        checksum.reset();
+        checksum.update(record, 0, CHECKSUM_OFFSET);
+        if (recordBuffer.getInt(CHECKSUM_OFFSET) != (int) checksum.getValue()
+                || record[1] < 0 || record[1] >= ParkingType.values().length) {
+            return false;
+        }
+        ParkingSpot parkingSpot = new ParkingSpot(recordBuffer.getInt(4), ParkingType.values()[record[1]], record[2] == 1);
+        switch (record[0]) {
+            case SPOT:
+                parkingSpotRepository.updateParking(parkingSpot);
+                return true;
+            case DOUBLE_PRICE_TICKET:
+            case TICKET: {
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(parkingSpot);
+                ticket.setId(recordBuffer.getInt(8));
+                if (record[0] == TICKET) {
+                    ticket.setPriceInMinorUnits(recordBuffer.getLong(12));
+                } else {
+                    ticket.setPrice(recordBuffer.getDouble(12));
+                }
+                ticket.setInTime(new Date(recordBuffer.getLong(20)));
+                long outTime = recordBuffer.getLong(28);
+                ticket.setOutTime((outTime == NO_TIME) ? null : new Date(outTime));
+                ticket.setVehicleRegNumber(new String(record, 36, record[3], StandardCharsets.UTF_8));
+                ticketRepository.putTicket(ticket);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+}
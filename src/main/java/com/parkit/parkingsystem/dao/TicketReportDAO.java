@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ReportDataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Closed tickets of the ticket and ticket_archive tables, read with read only, forward only cursors of {@link #fetchSize} rows.
+ * The rows are read in index order and never held, so the whole history can be streamed into a report.
+ */
+public class TicketReportDAO implements ClosedTicketSource {
+
+    private static final Logger logger = LogManager.getLogger("TicketReportDAO");
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    public DataBaseConfig dataBaseConfig = new ReportDataBaseConfig();
+
+    //rows transferred per round trip to the database
+    public int fetchSize = DEFAULT_FETCH_SIZE;
+
+    @Override
+    public long forEachClosedTicket(long fromInTime, long toInTime, ClosedTicketVisitor visitor) throws IOException {
+        Connection con = null;
+        long count = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setReadOnly(true);
+            //both cursors read the same snapshot, a ticket archived meanwhile is streamed once
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = prepare(con, DBConstants.GET_CLOSED_TICKETS_BY_IN_TIME, fromInTime, toInTime);
+                 PreparedStatement archivedPs = prepare(con, DBConstants.GET_ARCHIVED_CLOSED_TICKETS_BY_IN_TIME, fromInTime, toInTime);
+                 ResultSet rs = ps.executeQuery();
+                 ResultSet archivedRs = archivedPs.executeQuery()) {
+                //both cursors are in in time order, merged by visiting the earliest of their current rows
+                boolean hasNext = rs.next();
+                boolean hasNextArchived = archivedRs.next();
+                while (hasNext || hasNextArchived) {
+                    if (hasNextArchived && (!hasNext || archivedRs.getTimestamp(1).before(rs.getTimestamp(1)))) {
+                        visit(archivedRs, visitor);
+                        hasNextArchived = archivedRs.next();
+                    } else {
+                        visit(rs, visitor);
+                        hasNext = rs.next();
+                    }
+                    count++;
+                }
+            }
+            con.commit();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Streamed " + count + " closed tickets");
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new IOException("Error streaming closed tickets after " + count + " rows", e);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private PreparedStatement prepare(Connection con, String sql, long fromInTime, long toInTime) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        ps.setTimestamp(1, new Timestamp(fromInTime));
+        ps.setTimestamp(2, new Timestamp(toInTime));
+        return ps;
+    }
+
+    //IN_TIME, OUT_TIME, PRICE, TYPE columns, in that order
+    private static void visit(ResultSet rs, ClosedTicketVisitor visitor) throws SQLException {
+        visitor.visit(ParkingType.valueOf(rs.getString(4)), rs.getTimestamp(1).getTime(),
+                rs.getTimestamp(2).getTime(), Money.fromBigDecimal(rs.getBigDecimal(3)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the tickets, including the entry and exit workflows that also change the availability of a spot
+ */
+public interface TicketRepository {
+
+    /**
+     * Claim the next available spot of a parking type and save the incoming ticket on it, as one atomic step
+     *
+     * @param ticket      the incoming ticket, its id and parking spot are set to the saved ones
+     * @param parkingType
+     * @return true if a spot has been claimed and the ticket saved, false if no spot of this type is available
+     * @throws RuntimeException if the ticket could not be saved, the spot is then left available
+     */
+    boolean saveIncomingTicket(Ticket ticket, ParkingType parkingType);
+
+    /**
+     * Write the fare and out time of an open ticket and release its parking spot, as one atomic step
+     *
+     * @param ticket the priced ticket, with its out time
+     * @return true if the ticket was still open and has been closed
+     */
+    boolean closeTicket(Ticket ticket);
+
+    /**
+     * Close many priced tickets and release their parking spots
+     *
+     * @param tickets the priced tickets, with their out time
+     * @return for each ticket in order, true if it was still open and has been closed
+     */
+    boolean[] closeTickets(List<Ticket> tickets);
+
+    /**
+     * Get the open ticket of a vehicle
+     *
+     * @param vehicleRegNumber
+     * @return a copy of the open ticket, or null if the vehicle has no open ticket
+     */
+    Ticket getOpenTicket(String vehicleRegNumber);
+
+    /**
+     * Get the open tickets of many vehicles at once
+     *
+     * @param vehicleRegNumbers
+     * @return a copy of the open ticket of each vehicle by registration number, vehicles without open ticket are left out
+     */
+    Map<String, Ticket> getOpenTickets(List<String> vehicleRegNumbers);
+
+    /**
+     * Get sum of previous tickets for specific vehicle
+     *
+     * @param vehicleRegNumber
+     * @return the sum as integer
+     */
+    int getCountOfPreviousTickets(String vehicleRegNumber);
+
+    /**
+     * Get sum of previous tickets for many vehicles at once
+     *
+     * @param vehicleRegNumbers
+     * @return the sum of tickets by vehicle registration number
+     */
+    Map<String, Integer> getCountsOfPreviousTickets(List<String> vehicleRegNumbers);
+
+    /**
+     * Save a ticket on a spot already taken by the caller
+     *
+     * @param ticket
+     * @return true if the ticket has been saved
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * Get the latest ticket of a vehicle, open or closed
+     *
+     * @param vehicleRegNumber
+     * @return the ticket, or null if the vehicle has no ticket
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * Write the fare and out time of a ticket, the parking spot is left unchanged
+     *
+     * @param ticket
+     * @return true if the ticket has been updated
+     */
+    boolean updateTicket(Ticket ticket);
+}
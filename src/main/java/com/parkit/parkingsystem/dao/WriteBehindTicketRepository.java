@@ -0,0 +1,434 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind entries on top of {@link TicketDAO}. The spot of an incoming vehicle is taken from the in memory
+ * availability index and the ticket is put in a bounded queue, so the driver gets a spot without waiting for MySQL.
+ * A background writer drains the queue and saves the tickets with one multi-row insert per batch, retrying a failed
+ * batch a bounded number of times. A batch still failing is saved one ticket at a time, and a ticket that cannot be
+ * saved is dropped with an error: its spot goes back to the availability index and the readers waiting for it are told.
+ * <p>
+ * Backpressure: when the queue is full an entry waits up to the offer timeout, then is saved synchronously.
+ * Every read or change of a vehicle with queued tickets first waits for them to be saved, so the exit of a vehicle
+ * always finds its ticket. Only safe when this process is the only one allocating spots of the database.
+ * <p>
+ * Durability: the queue is only in memory, it is not journaled. An entry is acknowledged before its ticket is in
+ * MySQL, so the tickets queued when the process crashes or is killed are lost, up to the queue capacity: those
+ * vehicles leave without paying and their spots stay available in database. {@link #close()} saves them at a normal
+ * shutdown. This is why it is off unless {@code parkingsystem.writeBehind} is set, for a gate that trades this loss
+ * window for entries that do not wait for the database.
+ */
+public class WriteBehindTicketRepository implements TicketRepository, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("WriteBehindTicketRepository");
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 500;
+    public static final long DEFAULT_OFFER_TIMEOUT_MS = 100;
+    //about 6 seconds of retries with the retry delays
+    public static final int DEFAULT_MAXIMUM_BATCH_ATTEMPTS = 8;
+    //longest wait of a read for the queued tickets of a vehicle, and of close for the queue to be drained
+    private static final long PERSIST_TIMEOUT_MS = 30 * 1000;
+    private static final long MINIMUM_RETRY_DELAY_MS = 50;
+    private static final long MAXIMUM_RETRY_DELAY_MS = 5 * 1000;
+
+    private final TicketDAO ticketDAO;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final BlockingQueue<PendingTicket> queue;
+    private final int maximumBatchSize;
+    private final long offerTimeoutMs;
+    private final int maximumBatchAttempts;
+    //latest queued ticket of each vehicle, the writer saves the queue in order so earlier ones are saved before it
+    //keyed by packed registration number, like the open tickets of TicketDAO
+    private final LongKeyMap<PendingTicket> latestPendingTickets = new LongKeyMap<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder queuedTickets = new LongAdder();
+    private final LongAdder flushedTickets = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder droppedTickets = new LongAdder();
+    private final LongAdder synchronousSaves = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maximumFlushNanos = new AtomicLong();
+
+    public WriteBehindTicketRepository(TicketDAO ticketDAO) {
+        this(ticketDAO, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAXIMUM_BATCH_SIZE, DEFAULT_OFFER_TIMEOUT_MS);
+    }
+
+    public WriteBehindTicketRepository(TicketDAO ticketDAO, int queueCapacity, int maximumBatchSize, long offerTimeoutMs) {
+        this(ticketDAO, queueCapacity, maximumBatchSize, offerTimeoutMs, DEFAULT_MAXIMUM_BATCH_ATTEMPTS);
+    }
+
+    /**
+     * @param ticketDAO            with its availability index and open tickets loaded
+     * @param queueCapacity        number of tickets waiting to be saved before entries are slowed down
+     * @param maximumBatchSize     number of tickets saved by one insert
+     * @param offerTimeoutMs       wait of an entry for room in a full queue before it is saved synchronously
+     * @param maximumBatchAttempts number of inserts of a batch before its tickets are saved one by one
+     */
+    public WriteBehindTicketRepository(TicketDAO ticketDAO, int queueCapacity, int maximumBatchSize, long offerTimeoutMs,
+                                       int maximumBatchAttempts) {
+        this.ticketDAO = ticketDAO;
+        this.parkingSpotDAO = ticketDAO.parkingSpotDAO;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maximumBatchSize = maximumBatchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maximumBatchAttempts = maximumBatchAttempts;
+        writer = new Thread(this::writeTickets, "ticket-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Take a spot from the availability index and queue the ticket, falling back to a synchronous save
+     * when the index is not loaded or the queue stays full
+     */
+    @Override
+    public boolean saveIncomingTicket(Ticket ticket, ParkingType parkingType) {
+        if (closed) {
+            return ticketDAO.saveIncomingTicket(ticket, parkingType);
+        }
+        //packed before the spot is taken, so nothing can throw between taking it and queueing or giving it back
+        long vehicle = VehicleRegNumber.pack(ticket.getVehicleRegNumber());
+        int parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(ticketDAO.facilityId, parkingType);
+        if (parkingNumber <= 0) {
+            //no index, or no spot left in it, let the database decide
+            synchronousSaves.increment();
+            return ticketDAO.saveIncomingTicket(ticket, parkingType);
+        }
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        //the writer sets the id of its own copy, not the one of the caller
+        PendingTicket pendingTicket = new PendingTicket(TicketDAO.copyOf(ticket), vehicle);
+        PendingTicket previous = latestPendingTickets.put(pendingTicket.vehicle, pendingTicket);
+        boolean queued = false;
+        try {
+            queued = queue.offer(pendingTicket, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (queued) {
+            queuedTickets.increment();
+            return true;
+        }
+        //backpressure, the database is behind: give the spot back and wait for the database like without write-behind
+        latestPendingTickets.compute(pendingTicket.vehicle, current -> {
+            if (current != pendingTicket) {
+                return current;
+            }
+            return (previous != null && !previous.saved.isDone()) ? previous : null;
+        });
+        parkingSpotDAO.updateAvailabilityIndex(new ParkingSpot(parkingNumber, parkingType, true));
+        synchronousSaves.increment();
+        return ticketDAO.saveIncomingTicket(ticket, parkingType);
+    }
+
+    private void writeTickets() {
+        List<PendingTicket> batch = new ArrayList<>(maximumBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            PendingTicket first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                //close wakes the writer up, the loop drains what is left
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            //everything queued while the previous batch was written goes in the same insert
+            queue.drainTo(batch, maximumBatchSize - 1);
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingTicket> batch) {
+        List<Ticket> tickets = new ArrayList<>(batch.size());
+        for (PendingTicket pendingTicket : batch) {
+            tickets.add(pendingTicket.ticket);
+        }
+        long retryDelayMs = MINIMUM_RETRY_DELAY_MS;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            boolean saved = ticketDAO.saveIncomingTickets(tickets);
+            long elapsed = System.nanoTime() - start;
+            if (saved) {
+                recordFlush(batch.size(), elapsed);
+                for (PendingTicket pendingTicket : batch) {
+                    saved(pendingTicket);
+                }
+                return;
+            }
+            if (attempt >= maximumBatchAttempts) {
+                break;
+            }
+            retries.increment();
+            logger.warn("Unable to save " + batch.size() + " queued tickets, retrying in " + retryDelayMs + " ms");
+            try {
+                Thread.sleep(retryDelayMs);
+            } catch (InterruptedException e) {
+                //closing does not give up on the batch, it only cuts the current wait short
+            }
+            retryDelayMs = Math.min(retryDelayMs * 2, MAXIMUM_RETRY_DELAY_MS);
+        }
+        //one ticket of the batch may be the one that cannot be saved, keep the others
+        for (PendingTicket pendingTicket : batch) {
+            long start = System.nanoTime();
+            if (ticketDAO.saveIncomingTickets(Collections.singletonList(pendingTicket.ticket))) {
+                recordFlush(1, System.nanoTime() - start);
+                saved(pendingTicket);
+            } else {
+                dropped(pendingTicket);
+            }
+        }
+    }
+
+    private void saved(PendingTicket pendingTicket) {
+        pendingTicket.saved.complete(null);
+        latestPendingTickets.remove(pendingTicket.vehicle, pendingTicket);
+    }
+
+    private void dropped(PendingTicket pendingTicket) {
+        Ticket ticket = pendingTicket.ticket;
+        logger.error("Queued ticket of " + ticket.getVehicleRegNumber() + " on spot " + ticket.getParkingSpot().getId()
+                + " dropped, it could not be saved");
+        droppedTickets.increment();
+        parkingSpotDAO.updateAvailabilityIndex(new ParkingSpot(ticket.getParkingSpot().getId(), ticket.getParkingSpot().getParkingType(), true));
+        pendingTicket.saved.completeExceptionally(new IllegalStateException("Ticket of " + ticket.getVehicleRegNumber() + " not saved"));
+        latestPendingTickets.remove(pendingTicket.vehicle, pendingTicket);
+    }
+
+    private void recordFlush(int size, long elapsedNanos) {
+        flushes.increment();
+        flushedTickets.add(size);
+        totalFlushNanos.add(elapsedNanos);
+        lastFlushNanos.set(elapsedNanos);
+        maximumFlushNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    /**
+     * Wait for the queued tickets of a vehicle to be saved
+     *
+     * @param vehicleRegNumber
+     */
+    private void awaitSaved(String vehicleRegNumber) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        PendingTicket pendingTicket = latestPendingTickets.get(vehicle);
+        if (pendingTicket == null
+                || !VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, pendingTicket.ticket.getVehicleRegNumber())) {
+            return;
+        }
+        try {
+            pendingTicket.saved.get(PERSIST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            //dropped by the writer, the reader sees the database without it
+            logger.error("Queued ticket of " + vehicleRegNumber + " not saved", e.getCause());
+        } catch (TimeoutException e) {
+            logger.error("Queued ticket of " + vehicleRegNumber + " not saved in time", e);
+        }
+    }
+
+    private void awaitSaved(List<String> vehicleRegNumbers) {
+        for (String vehicleRegNumber : vehicleRegNumbers) {
+            awaitSaved(vehicleRegNumber);
+        }
+    }
+
+    @Override
+    public boolean closeTicket(Ticket ticket) {
+        awaitSaved(ticket.getVehicleRegNumber());
+        if (ticket.getId() == 0) {
+            //read from the queue before it was saved, take the id given by the database
+            Ticket openTicket = ticketDAO.getOpenTicket(ticket.getVehicleRegNumber());
+            if (openTicket == null) {
+                return false;
+            }
+            ticket.setId(openTicket.getId());
+        }
+        return ticketDAO.closeTicket(ticket);
+    }
+
+    @Override
+    public boolean[] closeTickets(List<Ticket> tickets) {
+        boolean[] closed = new boolean[tickets.size()];
+        List<Ticket> saved = new ArrayList<>(tickets.size());
+        List<Integer> positions = new ArrayList<>(tickets.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket ticket = tickets.get(i);
+            if (ticket.getId() == 0) {
+                closed[i] = closeTicket(ticket);
+            } else {
+                awaitSaved(ticket.getVehicleRegNumber());
+                saved.add(ticket);
+                positions.add(i);
+            }
+        }
+        boolean[] savedClosed = ticketDAO.closeTickets(saved);
+        for (int i = 0; i < savedClosed.length; i++) {
+            closed[positions.get(i)] = savedClosed[i];
+        }
+        return closed;
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        awaitSaved(vehicleRegNumber);
+        return ticketDAO.getOpenTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public Map<String, Ticket> getOpenTickets(List<String> vehicleRegNumbers) {
+        awaitSaved(vehicleRegNumbers);
+        return ticketDAO.getOpenTickets(vehicleRegNumbers);
+    }
+
+    @Override
+    public int getCountOfPreviousTickets(String vehicleRegNumber) {
+        awaitSaved(vehicleRegNumber);
+        return ticketDAO.getCountOfPreviousTickets(vehicleRegNumber);
+    }
+
+    @Override
+    public Map<String, Integer> getCountsOfPreviousTickets(List<String> vehicleRegNumbers) {
+        awaitSaved(vehicleRegNumbers);
+        return ticketDAO.getCountsOfPreviousTickets(vehicleRegNumbers);
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        awaitSaved(ticket.getVehicleRegNumber());
+        return ticketDAO.saveTicket(ticket);
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        awaitSaved(vehicleRegNumber);
+        return ticketDAO.getTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        awaitSaved(ticket.getVehicleRegNumber());
+        return ticketDAO.updateTicket(ticket);
+    }
+
+    /**
+     * Stop queueing entries and wait for the writer to save every queued ticket
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(PERSIST_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.error(queue.size() + " queued tickets not saved at shutdown");
+        } else if (!queue.isEmpty()) {
+            //queued by an entry that passed the closed check just before the writer stopped
+            List<PendingTicket> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            flush(remaining);
+        }
+        logger.info(this);
+    }
+
+    /**
+     * @return the number of tickets waiting to be saved
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getQueuedTicketCount() {
+        return queuedTickets.sum();
+    }
+
+    public long getFlushedTicketCount() {
+        return flushedTickets.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return the number of queued tickets given up after their batch and then the ticket alone failed to be saved
+     */
+    public long getDroppedTicketCount() {
+        return droppedTickets.sum();
+    }
+
+    /**
+     * @return the number of entries saved without the queue, because it was full or no spot was left in the index
+     */
+    public long getSynchronousSaveCount() {
+        return synchronousSaves.sum();
+    }
+
+    public long getLastFlushLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastFlushNanos.get());
+    }
+
+    public long getMaximumFlushLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maximumFlushNanos.get());
+    }
+
+    public long getAverageFlushLatencyMicros() {
+        long flushCount = flushes.sum();
+        return (flushCount == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalFlushNanos.sum() / flushCount);
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindTicketRepository{queueDepth=" + getQueueDepth() + ", queued=" + getQueuedTicketCount()
+                + ", flushed=" + getFlushedTicketCount() + ", flushes=" + getFlushCount() + ", retries=" + getRetryCount()
+                + ", dropped=" + getDroppedTicketCount()
+                + ", synchronousSaves=" + getSynchronousSaveCount() + ", lastFlushUs=" + getLastFlushLatencyMicros()
+                + ", averageFlushUs=" + getAverageFlushLatencyMicros() + ", maximumFlushUs=" + getMaximumFlushLatencyMicros() + "}";
+    }
+
+    private static class PendingTicket {
+        private final Ticket ticket;
+        private final long vehicle;
+        private final CompletableFuture<Void> saved = new CompletableFuture<>();
+
+        private PendingTicket(Ticket ticket, long vehicle) {
+            this.ticket = ticket;
+            this.vehicle = vehicle;
+        }
+    }
+}
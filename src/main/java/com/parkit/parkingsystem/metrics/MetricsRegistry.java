@@ -0,0 +1,150 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Operation timers of the application, by name. The timers of the default registry are also registered
+ * as MBeans under {@value #JMX_DOMAIN}, and every registry can be written in the Prometheus text format
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LogManager.getLogger("MetricsRegistry");
+
+    public static final String JMX_DOMAIN = "com.parkit.parkingsystem";
+
+    private static final MetricsRegistry defaultRegistry = new MetricsRegistry(true);
+
+    private final boolean registerMBeans;
+    //ordered by name, so the exported metrics are always in the same order
+    private final Map<String, OperationTimer> timers = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param registerMBeans true to register each timer in the platform MBean server
+     */
+    public MetricsRegistry(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+
+    /**
+     * @return the registry of the application, with its timers registered in JMX
+     */
+    public static MetricsRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Get the timer of an operation, created on first use
+     *
+     * @param name the operation, as Class.method
+     * @return the timer
+     */
+    public OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, this::createTimer);
+    }
+
+    private OperationTimer createTimer(String name) {
+        OperationTimer timer = new OperationTimer(name);
+        if (registerMBeans) {
+            try {
+                MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=OperationTimer,name=" + ObjectName.quote(name));
+                if (!mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.registerMBean(timer, objectName);
+                }
+            } catch (JMException e) {
+                logger.error("Unable to register timer " + name + " in JMX", e);
+            }
+        }
+        return timer;
+    }
+
+    public Map<String, OperationTimer> getTimers() {
+        return timers;
+    }
+
+    /**
+     * Time every call made through an interface, each method gets the timer "SimpleName.method".
+     * A call that throws is counted as an error
+     *
+     * @param type   the interface
+     * @param target the implementation to time
+     * @return a proxy of the interface calling the target
+     */
+    public <T> T timed(Class<T> type, T target) {
+        Map<Method, OperationTimer> methodTimers = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            methodTimers.put(method, timer(type.getSimpleName() + "." + method.getName()));
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            OperationTimer timer = methodTimers.get(method);
+            if (timer == null) {
+                //equals, hashCode and toString of Object
+                return method.invoke(target, args);
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(target, args);
+                timer.record(start);
+                return result;
+            } catch (InvocationTargetException e) {
+                timer.recordError(start);
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Write every timer in the Prometheus text exposition format, as a summary in seconds with
+     * the p50, p99 and p999 quantiles, and a counter of errors
+     *
+     * @return the metrics text
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP parkingsystem_operation_seconds Latency of the parking system operations\n");
+        text.append("# TYPE parkingsystem_operation_seconds summary\n");
+        for (OperationTimer timer : timers.values()) {
+            Histogram histogram = timer.getHistogram();
+            String operation = "operation=\"" + timer.getName() + "\"";
+            appendQuantile(text, operation, "0.5", histogram.getValueAtPercentile(50));
+            appendQuantile(text, operation, "0.99", histogram.getValueAtPercentile(99));
+            appendQuantile(text, operation, "0.999", histogram.getValueAtPercentile(99.9));
+            text.append("parkingsystem_operation_seconds_sum{").append(operation).append("} ")
+                    .append(seconds(timer.getTotalNanos())).append('\n');
+            text.append("parkingsystem_operation_seconds_count{").append(operation).append("} ")
+                    .append(histogram.getTotalCount()).append('\n');
+        }
+        text.append("# HELP parkingsystem_operation_errors_total Operations that threw an exception\n");
+        text.append("# TYPE parkingsystem_operation_errors_total counter\n");
+        for (OperationTimer timer : timers.values()) {
+            text.append("parkingsystem_operation_errors_total{operation=\"").append(timer.getName()).append("\"} ")
+                    .append(timer.getErrorCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void appendQuantile(StringBuilder text, String operation, String quantile, long nanos) {
+        text.append("parkingsystem_operation_seconds{").append(operation).append(",quantile=\"").append(quantile)
+                .append("\"} ").append(seconds(nanos)).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
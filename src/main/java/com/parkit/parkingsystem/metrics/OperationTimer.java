@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and counters of one operation. Recording is wait-free, each thread writes to the
+ * {@link Recorder} without a lock, and the recorded values are moved to the cumulative histogram when read
+ */
+public class OperationTimer implements OperationTimerMBean {
+
+    //3 significant digits, so a percentile is within 0.1% of the recorded latency
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    //guarded by this
+    private final Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram intervalHistogram;
+
+    OperationTimer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record an operation started at the given time
+     *
+     * @param startNanos the {@link System#nanoTime()} at the start of the operation
+     */
+    public void record(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record the latency of an operation
+     *
+     * @param elapsedNanos
+     */
+    public void recordNanos(long elapsedNanos) {
+        long latency = Math.max(elapsedNanos, 0);
+        recorder.recordValue(latency);
+        totalNanos.add(latency);
+    }
+
+    /**
+     * Record an operation started at the given time that failed
+     *
+     * @param startNanos the {@link System#nanoTime()} at the start of the operation
+     */
+    public void recordError(long startNanos) {
+        errors.increment();
+        record(startNanos);
+    }
+
+    /**
+     * @return a copy of the latencies recorded since the application started, in nanoseconds
+     */
+    public synchronized Histogram getHistogram() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        histogram.add(intervalHistogram);
+        return histogram.copy();
+    }
+
+    /**
+     * @return the sum of the recorded latencies, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getCount() {
+        return getHistogram().getTotalCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return getHistogram().getMean() / 1000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return toMicros(getHistogram().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return toMicros(getHistogram().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return toMicros(getHistogram().getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return toMicros(getHistogram().getMaxValue());
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        Histogram snapshot = getHistogram();
+        return name + "{count=" + snapshot.getTotalCount() + ", errors=" + getErrorCount()
+                + ", p50Us=" + toMicros(snapshot.getValueAtPercentile(50))
+                + ", p99Us=" + toMicros(snapshot.getValueAtPercentile(99))
+                + ", p999Us=" + toMicros(snapshot.getValueAtPercentile(99.9))
+                + ", maxUs=" + toMicros(snapshot.getMaxValue()) + "}";
+    }
+}
@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of an {@link OperationTimer}, latencies in microseconds since the application started
+ */
+public interface OperationTimerMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Revenue and usage of the spots of one parking type on one day
+ */
+public class DailyUsage {
+
+    private final LocalDate day;
+    private final ParkingType parkingType;
+    private final long exits;
+    private final long revenue;
+    private final long totalStayMs;
+    private final int peakOccupancy;
+
+    public DailyUsage(LocalDate day, ParkingType parkingType, long exits, long revenue, long totalStayMs, int peakOccupancy) {
+        this.day = day;
+        this.parkingType = parkingType;
+        this.exits = exits;
+        this.revenue = revenue;
+        this.totalStayMs = totalStayMs;
+        this.peakOccupancy = peakOccupancy;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    /**
+     * @return the number of tickets closed on this day
+     */
+    public long getExits() {
+        return exits;
+    }
+
+    /**
+     * @return the sum of the prices of the tickets closed on this day, in minor units
+     */
+    public long getRevenue() {
+        return revenue;
+    }
+
+    /**
+     * @return the average stay of the tickets closed on this day, 0 if there is none
+     */
+    public double getAverageStayMinutes() {
+        return (exits == 0) ? 0 : (double) totalStayMs / exits / 60000;
+    }
+
+    /**
+     * @return the highest number of vehicles parked at the same time on this day
+     */
+    public int getPeakOccupancy() {
+        return peakOccupancy;
+    }
+
+    @Override
+    public String toString() {
+        return day + " " + parkingType + ": " + exits + " exits, revenue " + Money.toBigDecimal(revenue).toPlainString()
+                + ", average stay " + String.format("%.1f", getAverageStayMinutes()) + " min, peak occupancy " + peakOccupancy;
+    }
+}
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Outcome of parking one incoming vehicle
+ */
+public class EntryResult {
+
+    public enum Status {
+        //a spot has been claimed and the ticket saved on it
+        PARKED,
+        //no spot of the parking type is available
+        NO_SPOT_AVAILABLE,
+        //the ticket could not be saved
+        FAILED
+    }
+
+    private final String vehicleRegNumber;
+    private final Status status;
+    private final Ticket ticket;
+
+    public EntryResult(String vehicleRegNumber, Status status, Ticket ticket) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.status = status;
+        this.ticket = ticket;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the saved ticket with its parking spot, or null if the vehicle was not parked
+     */
+    public Ticket getTicket() {
+        return ticket;
+    }
+}
@@ -0,0 +1,43 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Outcome of settling one vehicle exit
+ */
+public class ExitResult {
+
+    public enum Status {
+        //the fare has been written and the parking spot released
+        SETTLED,
+        //no open ticket found for this vehicle
+        NO_OPEN_TICKET,
+        //the out time is before the in time of the ticket
+        INVALID_OUT_TIME,
+        //the ticket could not be priced, for lack of a tariff of its parking type, or could not be written
+        FAILED
+    }
+
+    private final String vehicleRegNumber;
+    private final Status status;
+    private final Ticket ticket;
+
+    public ExitResult(String vehicleRegNumber, Status status, Ticket ticket) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.status = status;
+        this.ticket = ticket;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the priced ticket, or null if no open ticket was found
+     */
+    public Ticket getTicket() {
+        return ticket;
+    }
+}
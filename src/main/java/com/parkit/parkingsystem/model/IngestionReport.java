@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Counters of one headless ingestion run
+ */
+public class IngestionReport {
+
+    private final long entries;
+    private final long exits;
+    private final long rejectedEntries;
+    private final long unmatchedExits;
+    private final long failures;
+    private final long parseErrors;
+    private final long elapsedMs;
+
+    public IngestionReport(long entries, long exits, long rejectedEntries, long unmatchedExits, long failures,
+                           long parseErrors, long elapsedMs) {
+        this.entries = entries;
+        this.exits = exits;
+        this.rejectedEntries = rejectedEntries;
+        this.unmatchedExits = unmatchedExits;
+        this.failures = failures;
+        this.parseErrors = parseErrors;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * @return the number of vehicles parked
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the number of vehicles settled and released
+     */
+    public long getExits() {
+        return exits;
+    }
+
+    /**
+     * @return the number of entries refused because no spot of their type was available
+     */
+    public long getRejectedEntries() {
+        return rejectedEntries;
+    }
+
+    /**
+     * @return the number of exits without an open ticket
+     */
+    public long getUnmatchedExits() {
+        return unmatchedExits;
+    }
+
+    /**
+     * @return the number of events that could not be written to database
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of lines that are not a valid event
+     */
+    public long getParseErrors() {
+        return parseErrors;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * @return the number of events processed per second, parse errors excluded
+     */
+    public double getEventsPerSecond() {
+        long events = entries + exits + rejectedEntries + unmatchedExits + failures;
+        return (elapsedMs == 0) ? events * 1000.0 : events * 1000.0 / elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionReport{entries=" + entries + ", exits=" + exits + ", rejectedEntries=" + rejectedEntries
+                + ", unmatchedExits=" + unmatchedExits + ", failures=" + failures + ", parseErrors=" + parseErrors
+                + ", elapsedMs=" + elapsedMs + ", eventsPerSecond=" + String.format("%.1f", getEventsPerSecond()) + "}";
+    }
+}
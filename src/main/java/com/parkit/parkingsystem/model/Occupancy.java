@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Number of available spots of a parking type in a facility at a given time, as shown on signage
+ */
+public class Occupancy {
+    private final int facilityId;
+    private final ParkingType parkingType;
+    private final int availableSpots;
+    private final int totalSpots;
+
+    public Occupancy(int facilityId, ParkingType parkingType, int availableSpots, int totalSpots) {
+        this.facilityId = facilityId;
+        this.parkingType = parkingType;
+        this.availableSpots = availableSpots;
+        this.totalSpots = totalSpots;
+    }
+
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public int getAvailableSpots() {
+        return availableSpots;
+    }
+
+    public int getTotalSpots() {
+        return totalSpots;
+    }
+
+    public int getOccupiedSpots() {
+        return totalSpots - availableSpots;
+    }
+
+    @Override
+    public String toString() {
+        return "Occupancy{facility=" + facilityId + ", type=" + parkingType + ", available=" + availableSpots
+                + "/" + totalSpots + "}";
+    }
+}
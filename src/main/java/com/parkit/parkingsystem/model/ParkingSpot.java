@@ -3,14 +3,28 @@ package com.parkit.parkingsystem.model;
 import com.parkit.parkingsystem.constants.ParkingType;
 
 public class ParkingSpot {
+    //the single garage of a parking without facilities, its spots are on the ground level
+    public static final int DEFAULT_FACILITY = 1;
+    public static final int DEFAULT_LEVEL = 0;
+    //facility id of an allocation that may take a spot in any facility
+    public static final int ANY_FACILITY = 0;
+
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    private int facilityId;
+    private int level;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+        this(number, parkingType, isAvailable, DEFAULT_FACILITY, DEFAULT_LEVEL);
+    }
+
+    public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable, int facilityId, int level) {
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
+        this.facilityId = facilityId;
+        this.level = level;
     }
 
     public int getId() {
@@ -37,6 +51,23 @@ public class ParkingSpot {
         isAvailable = available;
     }
 
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    public void setFacilityId(int facilityId) {
+        this.facilityId = facilityId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    //parking numbers are unique across facilities
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,62 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+/**
+ * Booking of a parking spot by a vehicle for a time window, the spot is held from its start time to its end time
+ */
+public class Reservation {
+
+    private int id;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final String vehicleRegNumber;
+    private final Date startTime;
+    private final Date endTime;
+
+    public Reservation(int parkingNumber, ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the end of the window, excluded
+     */
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation " + id + " of spot " + parkingNumber + " for " + vehicleRegNumber + " from " + startTime + " to " + endTime;
+    }
+}
@@ -0,0 +1,116 @@
+package com.parkit.parkingsystem.model;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one traffic simulation run, with the response times of the entries and exits
+ */
+public class SimulationReport {
+
+    private final long scheduledEvents;
+    private final long entries;
+    private final long exits;
+    private final long rejectedEntries;
+    private final long failures;
+    private final long doubleAssignments;
+    private final Histogram entryLatencies;
+    private final Histogram exitLatencies;
+    private final long elapsedMs;
+
+    public SimulationReport(long scheduledEvents, long entries, long exits, long rejectedEntries, long failures,
+                            long doubleAssignments, Histogram entryLatencies, Histogram exitLatencies, long elapsedMs) {
+        this.scheduledEvents = scheduledEvents;
+        this.entries = entries;
+        this.exits = exits;
+        this.rejectedEntries = rejectedEntries;
+        this.failures = failures;
+        this.doubleAssignments = doubleAssignments;
+        this.entryLatencies = entryLatencies;
+        this.exitLatencies = exitLatencies;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * @return the number of generated events, the same for every run of a seed
+     */
+    public long getScheduledEvents() {
+        return scheduledEvents;
+    }
+
+    /**
+     * @return the number of vehicles parked
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the number of vehicles settled and released
+     */
+    public long getExits() {
+        return exits;
+    }
+
+    /**
+     * @return the number of entries refused because no spot of their type was available, or not saved
+     */
+    public long getRejectedEntries() {
+        return rejectedEntries;
+    }
+
+    /**
+     * @return the number of exits not settled and of events that threw
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of entries given a spot on which another simulated vehicle was parked
+     */
+    public long getDoubleAssignments() {
+        return doubleAssignments;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the entry response time at this percentile, from the release of the event to the ticket when paced
+     */
+    public long getEntryLatencyMicros(double percentile) {
+        return TimeUnit.NANOSECONDS.toMicros(entryLatencies.getValueAtPercentile(percentile));
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the exit response time at this percentile, from the release of the event to the settlement when paced
+     */
+    public long getExitLatencyMicros(double percentile) {
+        return TimeUnit.NANOSECONDS.toMicros(exitLatencies.getValueAtPercentile(percentile));
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * @return the number of events processed per second
+     */
+    public double getEventsPerSecond() {
+        long events = entryLatencies.getTotalCount() + exitLatencies.getTotalCount();
+        return (elapsedMs == 0) ? events * 1000.0 : events * 1000.0 / elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationReport{scheduledEvents=" + scheduledEvents + ", entries=" + entries + ", exits=" + exits
+                + ", rejectedEntries=" + rejectedEntries + ", failures=" + failures
+                + ", doubleAssignments=" + doubleAssignments + ", elapsedMs=" + elapsedMs
+                + ", eventsPerSecond=" + String.format("%.1f", getEventsPerSecond())
+                + ", entryUs={p50=" + getEntryLatencyMicros(50) + ", p99=" + getEntryLatencyMicros(99)
+                + ", p999=" + getEntryLatencyMicros(99.9) + ", max=" + getEntryLatencyMicros(100) + "}"
+                + ", exitUs={p50=" + getExitLatencyMicros(50) + ", p99=" + getExitLatencyMicros(99)
+                + ", p999=" + getExitLatencyMicros(99.9) + ", max=" + getExitLatencyMicros(100) + "}}";
+    }
+}
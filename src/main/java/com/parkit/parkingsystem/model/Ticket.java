@@ -1,5 +1,7 @@
 package com.parkit.parkingsystem.model;
 
+import com.parkit.parkingsystem.util.Money;
+
 import java.util.Calendar;
 import java.util.Date;
 
@@ -7,7 +9,8 @@ public class Ticket {
     private int id;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
-    private double price;
+    //in minor units, see Money
+    private long price;
     private Date inTime;
     private Date outTime;
 
@@ -36,10 +39,21 @@ public class Ticket {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toUnits(price);
     }
 
+    /**
+     * @param price in currency units, rounded half up to a minor unit
+     */
     public void setPrice(double price) {
+        this.price = Money.toMinorUnits(price);
+    }
+
+    public long getPriceInMinorUnits() {
+        return price;
+    }
+
+    public void setPriceInMinorUnits(long price) {
         this.price = price;
     }
 
@@ -0,0 +1,206 @@
+package com.parkit.parkingsystem.model;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Traffic generated by the simulator: vehicles arrive as a Poisson process whose rate rises around each peak
+ * of the day, stay for an exponentially distributed time, and some of them come back later.
+ * With no peak, arrivals are a plain Poisson process of {@link #getArrivalsPerHour()}.
+ */
+public class TrafficProfile {
+
+    private long seed = 1;
+    private int hours = 24;
+    private double arrivalsPerHour = 60;
+    //times of day, UTC, around which the arrival rate is multiplied
+    private List<LocalTime> peaks = new ArrayList<>();
+    private double peakMultiplier = 4;
+    private int peakWidthMinutes = 45;
+    private double bikeRatio = 0.2;
+    private double repeatRatio = 0.3;
+    private int meanStayMinutes = 120;
+    //simulated time run per real time, 0 replays the events as fast as they are processed
+    private double speedup = 0;
+
+    public TrafficProfile() {
+        peaks.add(LocalTime.of(8, 0));
+        peaks.add(LocalTime.of(17, 30));
+    }
+
+    /**
+     * Read a profile from properties named after its fields, such as
+     * <pre>
+     * seed=42
+     * hours=24
+     * arrivalsPerHour=120
+     * peaks=08:00,17:30
+     * </pre>
+     * A missing property keeps its default value, and an empty peaks property gives a plain Poisson profile
+     *
+     * @param properties
+     * @return the profile
+     * @throws IllegalArgumentException if a property is not valid
+     */
+    public static TrafficProfile fromProperties(Properties properties) {
+        TrafficProfile profile = new TrafficProfile();
+        //NumberFormatException and DateTimeParseException are IllegalArgumentExceptions
+        profile.setSeed(Long.parseLong(properties.getProperty("seed", String.valueOf(profile.seed)).trim()));
+        profile.setHours(Integer.parseInt(properties.getProperty("hours", String.valueOf(profile.hours)).trim()));
+        profile.setArrivalsPerHour(Double.parseDouble(properties.getProperty("arrivalsPerHour", String.valueOf(profile.arrivalsPerHour))));
+        String peaks = properties.getProperty("peaks");
+        if (peaks != null) {
+            List<LocalTime> peakTimes = new ArrayList<>();
+            for (String peak : peaks.split(",")) {
+                if (!peak.trim().isEmpty()) {
+                    peakTimes.add(LocalTime.parse(peak.trim()));
+                }
+            }
+            profile.setPeaks(peakTimes);
+        }
+        profile.setPeakMultiplier(Double.parseDouble(properties.getProperty("peakMultiplier", String.valueOf(profile.peakMultiplier))));
+        profile.setPeakWidthMinutes(Integer.parseInt(properties.getProperty("peakWidthMinutes", String.valueOf(profile.peakWidthMinutes)).trim()));
+        profile.setBikeRatio(Double.parseDouble(properties.getProperty("bikeRatio", String.valueOf(profile.bikeRatio))));
+        profile.setRepeatRatio(Double.parseDouble(properties.getProperty("repeatRatio", String.valueOf(profile.repeatRatio))));
+        profile.setMeanStayMinutes(Integer.parseInt(properties.getProperty("meanStayMinutes", String.valueOf(profile.meanStayMinutes)).trim()));
+        profile.setSpeedup(Double.parseDouble(properties.getProperty("speedup", String.valueOf(profile.speedup))));
+        return profile;
+    }
+
+    /**
+     * @return the seed of the random generator, the same seed always gives the same events
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the simulated hours during which vehicles arrive, the last ones leave after
+     */
+    public int getHours() {
+        return hours;
+    }
+
+    public void setHours(int hours) {
+        if (hours < 1) {
+            throw new IllegalArgumentException("Hours must be positive: " + hours);
+        }
+        this.hours = hours;
+    }
+
+    /**
+     * @return the mean number of arrivals per hour away from the peaks
+     */
+    public double getArrivalsPerHour() {
+        return arrivalsPerHour;
+    }
+
+    public void setArrivalsPerHour(double arrivalsPerHour) {
+        if (!(arrivalsPerHour > 0)) {
+            throw new IllegalArgumentException("Arrivals per hour must be positive: " + arrivalsPerHour);
+        }
+        this.arrivalsPerHour = arrivalsPerHour;
+    }
+
+    public List<LocalTime> getPeaks() {
+        return Collections.unmodifiableList(peaks);
+    }
+
+    public void setPeaks(List<LocalTime> peaks) {
+        this.peaks = new ArrayList<>(peaks);
+    }
+
+    /**
+     * @return the factor of the arrival rate at the time of a peak
+     */
+    public double getPeakMultiplier() {
+        return peakMultiplier;
+    }
+
+    public void setPeakMultiplier(double peakMultiplier) {
+        if (!(peakMultiplier >= 1)) {
+            throw new IllegalArgumentException("Peak multiplier must be at least 1: " + peakMultiplier);
+        }
+        this.peakMultiplier = peakMultiplier;
+    }
+
+    /**
+     * @return the standard deviation of the bell shaped rise of the rate around a peak
+     */
+    public int getPeakWidthMinutes() {
+        return peakWidthMinutes;
+    }
+
+    public void setPeakWidthMinutes(int peakWidthMinutes) {
+        if (peakWidthMinutes < 1) {
+            throw new IllegalArgumentException("Peak width must be positive: " + peakWidthMinutes);
+        }
+        this.peakWidthMinutes = peakWidthMinutes;
+    }
+
+    /**
+     * @return the share of the new vehicles that are bikes
+     */
+    public double getBikeRatio() {
+        return bikeRatio;
+    }
+
+    public void setBikeRatio(double bikeRatio) {
+        this.bikeRatio = ratio("Bike ratio", bikeRatio);
+    }
+
+    /**
+     * @return the share of the arrivals made by a vehicle that already left, when there is one
+     */
+    public double getRepeatRatio() {
+        return repeatRatio;
+    }
+
+    public void setRepeatRatio(double repeatRatio) {
+        this.repeatRatio = ratio("Repeat ratio", repeatRatio);
+    }
+
+    public int getMeanStayMinutes() {
+        return meanStayMinutes;
+    }
+
+    public void setMeanStayMinutes(int meanStayMinutes) {
+        if (meanStayMinutes < 1) {
+            throw new IllegalArgumentException("Mean stay must be positive: " + meanStayMinutes);
+        }
+        this.meanStayMinutes = meanStayMinutes;
+    }
+
+    public double getSpeedup() {
+        return speedup;
+    }
+
+    public void setSpeedup(double speedup) {
+        if (!(speedup >= 0)) {
+            throw new IllegalArgumentException("Speedup must not be negative: " + speedup);
+        }
+        this.speedup = speedup;
+    }
+
+    private static double ratio(String name, double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficProfile{seed=" + seed + ", hours=" + hours + ", arrivalsPerHour=" + arrivalsPerHour
+                + ", peaks=" + peaks + ", peakMultiplier=" + peakMultiplier + ", peakWidthMinutes=" + peakWidthMinutes
+                + ", bikeRatio=" + bikeRatio + ", repeatRatio=" + repeatRatio + ", meanStayMinutes=" + meanStayMinutes
+                + ", speedup=" + speedup + "}";
+    }
+}
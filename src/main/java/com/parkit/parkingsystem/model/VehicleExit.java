@@ -0,0 +1,24 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+/**
+ * A vehicle leaving the parking lot at a given time, as replayed by a gate controller
+ */
+public class VehicleExit {
+    private final String vehicleRegNumber;
+    private final Date outTime;
+
+    public VehicleExit(String vehicleRegNumber, Date outTime) {
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.outTime = outTime;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Date getOutTime() {
+        return outTime;
+    }
+}
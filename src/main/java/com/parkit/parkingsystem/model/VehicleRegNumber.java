@@ -0,0 +1,192 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Locale;
+
+/**
+ * Vehicle registration number packed into a long, to key the in memory per vehicle indexes without a String.
+ * <p>
+ * A number is normalized first: surrounding blanks are trimmed and letters upper cased, as the case insensitive
+ * VEHICLE_REG_NUMBER column compares them. A normalized number of at most 10 digits, letters, dashes and spaces
+ * is packed 6 bits per character, into a code of 0 or more. Any other number is given a negative code, a 63 bit hash
+ * of its normalized form, so no table of them is kept and any number has a code. Two such numbers may share a code,
+ * so an index finding an entry under a negative code checks its number with {@link #sameVehicle(long, String, String)}.
+ * Codes are never stored, the database keeps the registration number as typed.
+ * <p>
+ * The gates reject numbers longer than the VEHICLE_REG_NUMBER column with {@link #validate(String)}.
+ */
+public final class VehicleRegNumber {
+
+    public static final int MAX_PACKED_LENGTH = 10;
+    private static final int BITS_PER_CHARACTER = 6;
+    //character of each 6 bit value, 0 ends the number
+    private static final String ALPHABET = "\u00000123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ- ";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long code;
+    //normalized number when it cannot be packed, null otherwise
+    private final String unpacked;
+
+    private VehicleRegNumber(long code, String unpacked) {
+        this.code = code;
+        this.unpacked = unpacked;
+    }
+
+    public static VehicleRegNumber of(String vehicleRegNumber) {
+        long code = pack(vehicleRegNumber);
+        return new VehicleRegNumber(code, (code < 0) ? normalize(vehicleRegNumber) : null);
+    }
+
+    /**
+     * @param code returned by {@link #pack(String)} or {@link #getCode()} for a packed number
+     * @return the registration number of the code
+     * @throws IllegalArgumentException if the code is a hash, its number cannot be read back
+     */
+    public static VehicleRegNumber fromCode(long code) {
+        if (code < 0) {
+            throw new IllegalArgumentException("Not the code of a packed vehicle reg number: " + code);
+        }
+        return new VehicleRegNumber(code, null);
+    }
+
+    /**
+     * Get the code of a registration number, with no allocation when it can be packed
+     *
+     * @param vehicleRegNumber
+     * @return the same code for every registration number with the same normalized form,
+     * negative and possibly shared with other numbers when it cannot be packed
+     */
+    public static long pack(String vehicleRegNumber) {
+        int start = 0;
+        int end = vehicleRegNumber.length();
+        while (start < end && vehicleRegNumber.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && vehicleRegNumber.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start <= MAX_PACKED_LENGTH) {
+            long code = 0;
+            int i = start;
+            for (; i < end; i++) {
+                int value = valueOf(vehicleRegNumber.charAt(i));
+                if (value < 0) {
+                    break;
+                }
+                code = (code << BITS_PER_CHARACTER) | value;
+            }
+            if (i == end) {
+                //left aligned, so that codes sort like the numbers
+                return code << (BITS_PER_CHARACTER * (MAX_PACKED_LENGTH - (end - start)));
+            }
+        }
+        return hash(normalize(vehicleRegNumber));
+    }
+
+    /**
+     * Check that an entry found under the code of a registration number is the one of that number
+     *
+     * @param code                  the code looked up, {@link #pack(String)} of the registration number
+     * @param vehicleRegNumber      the registration number looked up
+     * @param foundVehicleRegNumber the registration number of the entry found
+     * @return true if they are the same number, always for a packed code since it is only the code of one number
+     */
+    public static boolean sameVehicle(long code, String vehicleRegNumber, String foundVehicleRegNumber) {
+        return code >= 0 || normalize(vehicleRegNumber).equals(normalize(foundVehicleRegNumber));
+    }
+
+    /**
+     * Check a registration number typed at a gate, it must fit the VEHICLE_REG_NUMBER column
+     *
+     * @param vehicleRegNumber
+     * @return the registration number, as typed
+     * @throws IllegalArgumentException if it is blank or longer than {@link #MAX_PACKED_LENGTH} characters
+     */
+    public static String validate(String vehicleRegNumber) {
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing vehicle reg number");
+        }
+        if (vehicleRegNumber.trim().length() > MAX_PACKED_LENGTH) {
+            throw new IllegalArgumentException("Vehicle reg number longer than " + MAX_PACKED_LENGTH + " characters");
+        }
+        return vehicleRegNumber;
+    }
+
+    /**
+     * @param vehicleRegNumber
+     * @return the registration number trimmed and upper cased
+     */
+    public static String normalize(String vehicleRegNumber) {
+        return vehicleRegNumber.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static int valueOf(char character) {
+        if (character >= '0' && character <= '9') {
+            return character - '0' + 1;
+        }
+        if (character >= 'A' && character <= 'Z') {
+            return character - 'A' + 11;
+        }
+        if (character >= 'a' && character <= 'z') {
+            return character - 'a' + 11;
+        }
+        if (character == '-') {
+            return 37;
+        }
+        if (character == ' ') {
+            return 38;
+        }
+        return -1;
+    }
+
+    //FNV-1a of the characters, with the sign bit set so it never is the code of a packed number
+    private static long hash(String normalized) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash = (hash ^ normalized.charAt(i)) * FNV_PRIME;
+        }
+        return hash | Long.MIN_VALUE;
+    }
+
+    public long getCode() {
+        return code;
+    }
+
+    /**
+     * @return true if the code is only the code of this registration number
+     */
+    public boolean isPacked() {
+        return code >= 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof VehicleRegNumber && ((VehicleRegNumber) other).code == code
+                && (code >= 0 || unpacked.equals(((VehicleRegNumber) other).unpacked));
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(code);
+    }
+
+    /**
+     * @return the normalized registration number
+     */
+    @Override
+    public String toString() {
+        if (code < 0) {
+            return unpacked;
+        }
+        StringBuilder normalized = new StringBuilder(MAX_PACKED_LENGTH);
+        for (int shift = BITS_PER_CHARACTER * (MAX_PACKED_LENGTH - 1); shift >= 0; shift -= BITS_PER_CHARACTER) {
+            int value = (int) (code >>> shift) & ((1 << BITS_PER_CHARACTER) - 1);
+            if (value == 0) {
+                break;
+            }
+            normalized.append(ALPHABET.charAt(value));
+        }
+        return normalized.toString();
+    }
+}
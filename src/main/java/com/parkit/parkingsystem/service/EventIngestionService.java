@@ -0,0 +1,232 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.IngestionReport;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless processing of a stream of gate events, one event per line:
+ * <pre>
+ * IN,&lt;CAR|BIKE&gt;,&lt;vehicle reg number&gt;[,&lt;epoch millis&gt;]
+ * OUT,&lt;vehicle reg number&gt;[,&lt;epoch millis&gt;]
+ * </pre>
+ * Blank lines and lines starting with # are skipped, events without a time are stamped when read.
+ * Events are dispatched to a fixed number of lanes by vehicle reg number, so the events of a vehicle are
+ * processed in input order while different vehicles are processed in parallel. Each lane has a bounded queue
+ * and the reader waits when it is full, so the memory used does not depend on the size of the input.
+ */
+public class EventIngestionService {
+
+    private static final Logger logger = LogManager.getLogger("EventIngestionService");
+
+    public static final int DEFAULT_LANES = 8;
+    public static final int DEFAULT_LANE_CAPACITY = 1024;
+
+    private final ParkingService parkingService;
+    private final int lanes;
+    private final int laneCapacity;
+
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder exits = new LongAdder();
+    private final LongAdder rejectedEntries = new LongAdder();
+    private final LongAdder unmatchedExits = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+
+    public EventIngestionService(ParkingService parkingService) {
+        this(parkingService, DEFAULT_LANES, DEFAULT_LANE_CAPACITY);
+    }
+
+    public EventIngestionService(ParkingService parkingService, int lanes, int laneCapacity) {
+        if (lanes < 1 || laneCapacity < 1) {
+            throw new IllegalArgumentException("Lanes and lane capacity must be positive");
+        }
+        this.parkingService = parkingService;
+        this.lanes = lanes;
+        this.laneCapacity = laneCapacity;
+    }
+
+    /**
+     * Process every event of the input and wait until all of them are done
+     *
+     * @param reader
+     * @return the counters of this run
+     * @throws IOException if the input cannot be read
+     * @throws InterruptedException if interrupted while waiting for a lane
+     */
+    public IngestionReport ingest(BufferedReader reader) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long[] before = snapshot();
+        ThreadPoolExecutor[] executors = new ThreadPoolExecutor[lanes];
+        for (int i = 0; i < lanes; i++) {
+            executors[i] = createLane(i);
+        }
+        try {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                VehicleEvent event;
+                try {
+                    event = parse(line);
+                } catch (IllegalArgumentException e) {
+                    logger.error("Skipping line " + lineNumber + ": " + e.getMessage());
+                    parseErrors.increment();
+                    continue;
+                }
+                if (event == null) {
+                    continue;
+                }
+                executors[laneOf(event.vehicleRegNumber)].execute(() -> process(event));
+            }
+        } finally {
+            for (ThreadPoolExecutor executor : executors) {
+                executor.shutdown();
+            }
+            for (ThreadPoolExecutor executor : executors) {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+        long[] after = snapshot();
+        IngestionReport report = new IngestionReport(after[0] - before[0], after[1] - before[1], after[2] - before[2],
+                after[3] - before[3], after[4] - before[4], after[5] - before[5], System.currentTimeMillis() - start);
+        logger.info(report);
+        return report;
+    }
+
+    private ThreadPoolExecutor createLane(int lane) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(laneCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-lane-" + lane);
+            thread.setDaemon(true);
+            return thread;
+        });
+        //a full lane makes the reader wait for room instead of dropping the event
+        executor.setRejectedExecutionHandler((runnable, pool) -> {
+            if (pool.isShutdown()) {
+                throw new IllegalStateException("Ingestion lane " + lane + " is shut down");
+            }
+            try {
+                pool.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for ingestion lane " + lane, e);
+            }
+        });
+        return executor;
+    }
+
+    private int laneOf(String vehicleRegNumber) {
+        //by packed code, so every spelling of a registration number goes to the same lane
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        return (Long.hashCode(vehicle) & Integer.MAX_VALUE) % lanes;
+    }
+
+    private void process(VehicleEvent event) {
+        try {
+            if (event.parkingType != null) {
+                EntryResult entryResult = parkingService.processIncomingVehicle(event.parkingType, event.vehicleRegNumber, event.time);
+                switch (entryResult.getStatus()) {
+                    case PARKED:
+                        entries.increment();
+                        break;
+                    case NO_SPOT_AVAILABLE:
+                        rejectedEntries.increment();
+                        break;
+                    default:
+                        failures.increment();
+                }
+            } else {
+                ExitResult exitResult = parkingService.processExitingVehicle(event.vehicleRegNumber, event.time);
+                switch (exitResult.getStatus()) {
+                    case SETTLED:
+                        exits.increment();
+                        break;
+                    case NO_OPEN_TICKET:
+                        unmatchedExits.increment();
+                        break;
+                    default:
+                        failures.increment();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unable to process event of vehicle " + event.vehicleRegNumber, e);
+            failures.increment();
+        }
+    }
+
+    private long[] snapshot() {
+        return new long[]{entries.sum(), exits.sum(), rejectedEntries.sum(), unmatchedExits.sum(), failures.sum(),
+                parseErrors.sum()};
+    }
+
+    /**
+     * Parse one line of input
+     *
+     * @param line
+     * @return the event, or null for a blank or comment line
+     * @throws IllegalArgumentException if the line is not a valid event
+     */
+    static VehicleEvent parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split(",");
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        switch (fields[0].toUpperCase(Locale.ROOT)) {
+            case "IN": {
+                if (fields.length < 3 || fields.length > 4) {
+                    throw new IllegalArgumentException("Expected IN,<type>,<vehicle reg number>[,<epoch millis>]");
+                }
+                ParkingType parkingType = ParkingType.valueOf(fields[1].toUpperCase(Locale.ROOT));
+                return new VehicleEvent(parkingType, vehicleRegNumber(fields[2]), time(fields, 3));
+            }
+            case "OUT": {
+                if (fields.length < 2 || fields.length > 3) {
+                    throw new IllegalArgumentException("Expected OUT,<vehicle reg number>[,<epoch millis>]");
+                }
+                return new VehicleEvent(null, vehicleRegNumber(fields[1]), time(fields, 2));
+            }
+            default:
+                throw new IllegalArgumentException("Unknown event " + fields[0]);
+        }
+    }
+
+    private static String vehicleRegNumber(String field) {
+        return VehicleRegNumber.validate(field);
+    }
+
+    private static Date time(String[] fields, int index) {
+        //NumberFormatException is an IllegalArgumentException
+        return (fields.length > index) ? new Date(Long.parseLong(fields[index])) : new Date();
+    }
+
+    static class VehicleEvent {
+        //null for an exit
+        final ParkingType parkingType;
+        final String vehicleRegNumber;
+        final Date time;
+
+        VehicleEvent(ParkingType parkingType, String vehicleRegNumber, Date time) {
+            this.parkingType = parkingType;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.time = time;
+        }
+    }
+}
@@ -1,47 +1,54 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Money;
 
 public class FareCalculatorService {
 
+    //the discount as an exact fraction, rounded once per fare
+    private static final long DISCOUNT_BASIS_POINTS = Math.round(Fare.DISCOUNT_FOR_MORE_THAN_ONE_PREVIOUSLY_PARKING * 10000);
+
+    //replaced as a whole when the tariffs change, a fare is computed with a single table
+    private volatile TariffTable tariffTable;
+
+    public FareCalculatorService() {
+        this(TariffTable.fromFare());
+    }
+
+    public FareCalculatorService(TariffTable tariffTable) {
+        this.tariffTable = tariffTable;
+    }
+
+    public TariffTable getTariffTable() {
+        return tariffTable;
+    }
+
+    /**
+     * Use other tariffs for the next fares, without stopping the fares being computed
+     *
+     * @param tariffTable
+     */
+    public void setTariffTable(TariffTable tariffTable) {
+        this.tariffTable = tariffTable;
+    }
+
     public void calculateFare(Ticket ticket) {
         if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
             throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime().toString());
         }
         //getTime will return Time in milliseconds
-        long inHour = ticket.getInTime().getTime();
-        long outHour = ticket.getOutTime().getTime();
-
-        //TODO: Some tests are failing here. Need to check if this logic is correct
-        //Convert milliseconds to hours , using double ,to have hour fractions if exist
-        double duration = ((double) outHour - (double) inHour) / 3600000;
-
-        //If Duration mor than 30 for car and bike Minutes then will calculate price
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR: {
-                if (duration > Fare.CAR_FREE_DURATION_PAR_HOUR) {
-                        ticket.setPrice(duration * Fare.CAR_RATE_PER_HOUR);
-                } else {
-                    ticket.setPrice(0);
-                }
-                break;
-            }
-            case BIKE: {
-                if (duration > Fare.BIKE_FREE_DURATION_PAR_HOUR) {
-                        ticket.setPrice(duration * Fare.BIKE_RATE_PER_HOUR);
-                } else {
-                    ticket.setPrice(0);
-                }
-                break;
-            }
-            default:
-                throw new IllegalArgumentException("Unknown Parking Type");
-        }
+        long inTime = ticket.getInTime().getTime();
+        long outTime = ticket.getOutTime().getTime();
+
+        //free duration and rates by time of day, parking type and facility are looked up in the compiled tariffs
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        ticket.setPriceInMinorUnits(tariffTable.priceInMinorUnits(parkingSpot.getFacilityId(), parkingSpot.getParkingType(), inTime, outTime));
     }
 
     public void calculateDiscount(Ticket ticket) {
-        double discount = ticket.getPrice() * Fare.DISCOUNT_FOR_MORE_THAN_ONE_PREVIOUSLY_PARKING;
-        ticket.setPrice(ticket.getPrice() - discount);
+        long price = ticket.getPriceInMinorUnits();
+        ticket.setPriceInMinorUnits(price - Money.multiply(price, DISCOUNT_BASIS_POINTS, 10000));
     }
-}
\ No newline at end of file
+}
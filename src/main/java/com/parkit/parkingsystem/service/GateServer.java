@@ -0,0 +1,229 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP front end of the gate controllers, each request parks or settles one vehicle with the parking service:
+ * <pre>
+ * POST /entry?type=&lt;CAR|BIKE&gt;&amp;vehicle=&lt;vehicle reg number&gt;[&amp;time=&lt;epoch millis&gt;]
+ * POST /exit?vehicle=&lt;vehicle reg number&gt;[&amp;time=&lt;epoch millis&gt;]
+ * </pre>
+ * The response is a few key=value lines of text. Requests are processed on virtual threads when the JDK has them,
+ * so a lane waiting for the database holds no platform thread, and on a bounded pool of threads otherwise,
+ * whose requests beyond its bounded queue are answered 503 at once.
+ * It only listens on the loopback address, like the metrics endpoint.
+ */
+public class GateServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    public static final String ENTRY_PATH = "/entry";
+    public static final String EXIT_PATH = "/exit";
+    public static final int DEFAULT_MAX_LANES = 64;
+    //requests waiting for a thread of the pool, per thread
+    public static final int QUEUED_REQUESTS_PER_LANE = 4;
+    //TCP_NODELAY on the sockets of every JDK HTTP server, to be set before the first one starts
+    public static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+    //set while a request rejected by the pool is answered on the thread of the server
+    private static final ThreadLocal<Boolean> overloaded = new ThreadLocal<>();
+
+    private final ParkingService parkingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Start serving the gates
+     *
+     * @param parkingService
+     * @param port           0 to pick a free port
+     * @param executor       runs the requests, shut down with the server, see {@link #newLaneExecutor(int)}
+     * @throws IOException if the port cannot be bound
+     */
+    public GateServer(ParkingService parkingService, int port, ExecutorService executor) throws IOException {
+        this.parkingService = parkingService;
+        this.executor = executor;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(ENTRY_PATH, exchange -> respond(exchange, true));
+        server.createContext(EXIT_PATH, exchange -> respond(exchange, false));
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Serving gates on http://localhost:" + getPort());
+    }
+
+    /**
+     * Create the executor of the requests: a virtual thread per request on a JDK with virtual threads,
+     * a pool of daemon threads otherwise, whose excess requests wait in a queue of {@link #QUEUED_REQUESTS_PER_LANE}
+     * per thread. A request that does not fit is answered 503 by the thread of the server, which stops accepting
+     * new requests meanwhile
+     *
+     * @param maxLanes number of threads of the pool, unused with virtual threads
+     * @return the executor
+     */
+    public static ExecutorService newLaneExecutor(int maxLanes) {
+        try {
+            //Java 21, looked up by reflection since the application is built for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            //missing, or a preview feature that is not enabled
+            logger.info("No virtual threads, serving gates with " + maxLanes + " threads");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return new ThreadPoolExecutor(maxLanes, maxLanes, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(maxLanes * QUEUED_REQUESTS_PER_LANE), runnable -> {
+            Thread thread = new Thread(runnable, "gate-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Gate server closed");
+            }
+            //the server would close the connection without a response
+            overloaded.set(Boolean.TRUE);
+            try {
+                runnable.run();
+            } finally {
+                overloaded.remove();
+            }
+        });
+    }
+
+    private void respond(HttpExchange exchange, boolean entry) throws IOException {
+        try {
+            if (overloaded.get() != null) {
+                send(exchange, 503, "error=too many requests\n");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, String> parameters;
+            ParkingType parkingType = null;
+            Date time;
+            try {
+                parameters = parse(exchange.getRequestURI().getRawQuery());
+                if (entry) {
+                    parkingType = ParkingType.valueOf(required(parameters, "type").toUpperCase(Locale.ROOT));
+                }
+                VehicleRegNumber.validate(required(parameters, "vehicle"));
+                //NumberFormatException is an IllegalArgumentException
+                time = parameters.containsKey("time") ? new Date(Long.parseLong(parameters.get("time"))) : new Date();
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, "error=" + e.getMessage() + "\n");
+                return;
+            }
+            String vehicleRegNumber = parameters.get("vehicle");
+            if (entry) {
+                EntryResult entryResult = parkingService.processIncomingVehicle(parkingType, vehicleRegNumber, time);
+                switch (entryResult.getStatus()) {
+                    case PARKED:
+                        Ticket ticket = entryResult.getTicket();
+                        send(exchange, 200, "spot=" + ticket.getParkingSpot().getId() + "\ninTime=" + ticket.getInTime().getTime() + "\n");
+                        break;
+                    case NO_SPOT_AVAILABLE:
+                        send(exchange, 503, "error=no spot available\n");
+                        break;
+                    default:
+                        send(exchange, 500, "error=unable to save ticket\n");
+                }
+            } else {
+                ExitResult exitResult = parkingService.processExitingVehicle(vehicleRegNumber, time);
+                switch (exitResult.getStatus()) {
+                    case SETTLED:
+                        send(exchange, 200, "price=" + exitResult.getTicket().getPrice()
+                                + "\noutTime=" + exitResult.getTicket().getOutTime().getTime() + "\n");
+                        break;
+                    case NO_OPEN_TICKET:
+                        send(exchange, 404, "error=no parked vehicle\n");
+                        break;
+                    case INVALID_OUT_TIME:
+                        send(exchange, 400, "error=out time before in time\n");
+                        break;
+                    default:
+                        send(exchange, 500, "error=unable to settle ticket\n");
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Unable to process gate request " + exchange.getRequestURI(), e);
+            send(exchange, 500, "error=internal error\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parse(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        try {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return parameters;
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
@@ -1,7 +1,7 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.config.ParkingSystemConfig;
+import com.parkit.parkingsystem.config.StorageType;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,14 +11,21 @@ public class InteractiveShell {
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
     public static void loadInterface(){
+        InputReaderUtil inputReaderUtil = new InputReaderUtil();
+        loadInterface(inputReaderUtil, new ParkingSystemConfig(inputReaderUtil));
+    }
+
+    public static void loadInterface(StorageType storageType){
+        InputReaderUtil inputReaderUtil = new InputReaderUtil();
+        loadInterface(inputReaderUtil, new ParkingSystemConfig(inputReaderUtil, storageType));
+    }
+
+    private static void loadInterface(InputReaderUtil inputReaderUtil, ParkingSystemConfig parkingSystemConfig){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
-        InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = parkingSystemConfig.parkingService;
 
         while(continueApp){
             loadMenu();
@@ -34,6 +41,7 @@ public class InteractiveShell {
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    parkingSystemConfig.shutdown();
                     continueApp = false;
                     break;
                 }
@@ -0,0 +1,12 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.model.Occupancy;
+
+/**
+ * Subscriber of {@link OccupancyService}, notified on the publisher thread when the number of available spots
+ * of a parking type in a facility has changed
+ */
+public interface OccupancyListener {
+
+    void occupancyChanged(Occupancy occupancy);
+}
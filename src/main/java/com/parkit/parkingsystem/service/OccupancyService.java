@@ -0,0 +1,159 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.Occupancy;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Free spot counts per facility and parking type for signage and dashboards, read from the striped counters
+ * of the availability index. The index is kept current by every claim and spot update, so a read never queries
+ * the parking table and costs a few additions.
+ * <p>
+ * Subscribers are pushed the counts that changed at most once per publish interval, from a single publisher thread,
+ * so the gates never wait for a sign to refresh.
+ */
+public class OccupancyService implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyService");
+
+    public static final long DEFAULT_PUBLISH_INTERVAL_MS = 250;
+
+    private final Supplier<ParkingSpotIndex> availabilityIndex;
+    private final long publishIntervalMs;
+    private final List<OccupancyListener> listeners = new CopyOnWriteArrayList<>();
+    //available spots last pushed to the subscribers, only used by the publisher thread
+    private final Map<Integer, Map<ParkingType, Integer>> publishedSpots = new HashMap<>();
+    //started with the first subscription
+    private ScheduledExecutorService publisher;
+
+    public OccupancyService(Supplier<ParkingSpotIndex> availabilityIndex) {
+        this(availabilityIndex, DEFAULT_PUBLISH_INTERVAL_MS);
+    }
+
+    /**
+     * @param availabilityIndex the current availability index of the parking spots, null when it is not loaded
+     * @param publishIntervalMs delay between two pushes to the subscribers
+     */
+    public OccupancyService(Supplier<ParkingSpotIndex> availabilityIndex, long publishIntervalMs) {
+        this.availabilityIndex = availabilityIndex;
+        this.publishIntervalMs = publishIntervalMs;
+    }
+
+    /**
+     * Get the number of available spots of a parking type in every facility
+     *
+     * @param parkingType
+     * @return the count of available spots, or -1 if the availability index is not loaded
+     */
+    public int getAvailableSpots(ParkingType parkingType) {
+        return getAvailableSpots(ParkingSpot.ANY_FACILITY, parkingType);
+    }
+
+    /**
+     * Get the number of available spots of a parking type in a facility
+     *
+     * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @return the count of available spots, or -1 if the availability index is not loaded
+     */
+    public int getAvailableSpots(int facilityId, ParkingType parkingType) {
+        ParkingSpotIndex index = availabilityIndex.get();
+        return (index == null) ? -1 : index.countAvailable(facilityId, parkingType);
+    }
+
+    /**
+     * @return the occupancy of each parking type of each facility, empty if the availability index is not loaded
+     */
+    public List<Occupancy> getOccupancies() {
+        List<Occupancy> occupancies = new ArrayList<>();
+        ParkingSpotIndex index = availabilityIndex.get();
+        if (index == null) {
+            return occupancies;
+        }
+        for (int facilityId : index.getFacilityIds()) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                int totalSpots = index.countSpots(facilityId, parkingType);
+                if (totalSpots > 0) {
+                    occupancies.add(new Occupancy(facilityId, parkingType, index.countAvailable(facilityId, parkingType), totalSpots));
+                }
+            }
+        }
+        return occupancies;
+    }
+
+    /**
+     * Push the occupancies to a listener now, then each one that changes
+     *
+     * @param listener
+     */
+    public synchronized void subscribe(OccupancyListener listener) {
+        if (publisher == null) {
+            publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "occupancy-publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            publisher.scheduleWithFixedDelay(() -> publishChanges(), publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        //on the publisher thread, so the listener gets its first counts before any change
+        publisher.execute(() -> {
+            //the other listeners get the pending changes first, so every listener starts from the published counts
+            List<Occupancy> occupancies = publishChanges();
+            listeners.add(listener);
+            for (Occupancy occupancy : occupancies) {
+                notify(listener, occupancy);
+            }
+        });
+    }
+
+    public void unsubscribe(OccupancyListener listener) {
+        listeners.remove(listener);
+    }
+
+    private List<Occupancy> publishChanges() {
+        List<Occupancy> occupancies = getOccupancies();
+        for (Occupancy occupancy : occupancies) {
+            Integer published = publishedSpots.computeIfAbsent(occupancy.getFacilityId(), id -> new EnumMap<>(ParkingType.class))
+                    .put(occupancy.getParkingType(), occupancy.getAvailableSpots());
+            if (published == null || published != occupancy.getAvailableSpots()) {
+                for (OccupancyListener listener : listeners) {
+                    notify(listener, occupancy);
+                }
+            }
+        }
+        return occupancies;
+    }
+
+    private static void notify(OccupancyListener listener, Occupancy occupancy) {
+        try {
+            listener.occupancyChanged(occupancy);
+        } catch (RuntimeException e) {
+            //a failing sign must not stop the others from being updated
+            logger.error("Error pushing " + occupancy, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+            publisher = null;
+        }
+        listeners.clear();
+    }
+}
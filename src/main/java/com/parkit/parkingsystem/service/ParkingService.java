@@ -2,15 +2,25 @@ package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.OperationTimer;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleExit;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 public class ParkingService {
 
@@ -18,45 +28,118 @@ public class ParkingService {
 
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
+    private static final OperationTimer incomingVehicleTimer = MetricsRegistry.getDefault().timer("ParkingService.processIncomingVehicle");
+    private static final OperationTimer exitingVehicleTimer = MetricsRegistry.getDefault().timer("ParkingService.processExitingVehicle");
+
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private TicketRepository ticketDAO;
+    //null when reservations are not taken
+    private ReservationService reservationService;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO) {
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
     }
 
+    /**
+     * @return the fare calculator shared by every parking service, whose tariffs can be swapped while running
+     */
+    public static FareCalculatorService getFareCalculatorService() {
+        return fareCalculatorService;
+    }
+
+    /**
+     * @param reservationService releases the reservation of an incoming vehicle before its spot is allocated
+     */
+    public void setReservationService(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
     public void processIncomingVehicle() {
         try {
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if (parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehichleRegNumber();
-                // display Welcome message and 5% discount if the vehicle found in database
-                displayWelcomeMassageWithDiscount(vehicleRegNumber);
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark it's availability as false
-
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:" + parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + inTime);
+            //all input is read before the transaction starts, so no transaction waits for the driver
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            // display Welcome message and 5% discount if the vehicle found in database
+            displayWelcomeMassageWithDiscount(vehicleRegNumber);
+
+            EntryResult entryResult = processIncomingVehicle(parkingType, vehicleRegNumber, new Date());
+            switch (entryResult.getStatus()) {
+                case PARKED:
+                    Ticket ticket = entryResult.getTicket();
+                    System.out.println("Generated Ticket and saved in DB");
+                    System.out.println("Please park your vehicle in spot number:" + ticket.getParkingSpot().getId());
+                    System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + ticket.getInTime());
+                    break;
+                case NO_SPOT_AVAILABLE:
+                    System.out.println("Unable to allocate a parking spot. Parking slots might be full");
+                    break;
+                default:
+                    System.out.println("Unable to save the ticket. Please try again");
             }
+        } catch (IllegalArgumentException ie) {
+            logger.error("Error parsing user input for type of vehicle", ie);
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
         }
     }
 
+    /**
+     * Park an incoming vehicle without any console interaction
+     *
+     * @param parkingType
+     * @param vehicleRegNumber
+     * @param inTime
+     * @return the saved ticket with its parking spot, or why the vehicle was not parked
+     */
+    public EntryResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        long start = System.nanoTime();
+        try {
+            EntryResult entryResult = saveIncomingTicket(parkingType, vehicleRegNumber, inTime);
+            if (entryResult.getStatus() == EntryResult.Status.FAILED) {
+                incomingVehicleTimer.recordError(start);
+            } else {
+                incomingVehicleTimer.record(start);
+            }
+            return entryResult;
+        } catch (RuntimeException e) {
+            incomingVehicleTimer.recordError(start);
+            throw e;
+        }
+    }
+
+    private EntryResult saveIncomingTicket(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        Ticket ticket = new Ticket();
+        //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+        //ticket.setId(ticketID);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(inTime);
+        ticket.setOutTime(null);
+        //a vehicle with a reservation for now no longer holds a spot, and is given the lowest free one
+        Reservation reservation = (reservationService == null) ? null : reservationService.checkIn(vehicleRegNumber, inTime);
+        //claim the next available spot and save the ticket on it in one transaction
+        EntryResult.Status status;
+        try {
+            status = ticketDAO.saveIncomingTicket(ticket, parkingType) ? EntryResult.Status.PARKED : EntryResult.Status.NO_SPOT_AVAILABLE;
+        } catch (RuntimeException e) {
+            logger.error("Unable to save incoming ticket of " + vehicleRegNumber, e);
+            status = EntryResult.Status.FAILED;
+        }
+        if (status != EntryResult.Status.PARKED) {
+            if (reservation != null) {
+                reservationService.restore(reservation);
+            }
+            return new EntryResult(vehicleRegNumber, status, null);
+        }
+        if (reservation != null) {
+            reservationService.cancel(reservation);
+        }
+        return new EntryResult(vehicleRegNumber, status, ticket);
+    }
+
     private String getVehichleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
@@ -103,26 +186,81 @@ public class ParkingService {
     public void processExitingVehicle() {
         try {
             String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-            fareCalculatorService.calculateFare(ticket);
-            if (ticketDAO.updateTicket(ticket)) {
-                //apply 5% discount if vehicle have previous entering
-                applyDiscount(ticket);
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-            } else {
-                System.out.println("Unable to update ticket information. Error occurred");
+            ExitResult exitResult = processExitingVehicle(vehicleRegNumber, new Date());
+            switch (exitResult.getStatus()) {
+                case SETTLED: {
+                    Ticket ticket = exitResult.getTicket();
+                    System.out.println("Please pay the parking fare:" + ticket.getPrice());
+                    System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + ticket.getOutTime());
+                    break;
+                }
+                case NO_OPEN_TICKET: {
+                    System.out.println("No parked vehicle found with registration number:" + vehicleRegNumber);
+                    break;
+                }
+                default:
+                    System.out.println("Unable to update ticket information. Error occurred");
             }
         } catch (Exception e) {
             logger.error("Unable to process exiting vehicle", e);
         }
     }
 
+    /**
+     * Price the open ticket of an exiting vehicle and release its spot, without any console interaction
+     *
+     * @param vehicleRegNumber
+     * @param outTime
+     * @return the result of the exit, with the priced ticket when one was found
+     */
+    public ExitResult processExitingVehicle(String vehicleRegNumber, Date outTime) {
+        long start = System.nanoTime();
+        try {
+            ExitResult exitResult = settleExit(vehicleRegNumber, outTime);
+            exitingVehicleTimer.record(start);
+            return exitResult;
+        } catch (RuntimeException e) {
+            exitingVehicleTimer.recordError(start);
+            throw e;
+        }
+    }
+
+    private ExitResult settleExit(String vehicleRegNumber, Date outTime) {
+        Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+        if (ticket == null) {
+            return new ExitResult(vehicleRegNumber, ExitResult.Status.NO_OPEN_TICKET, null);
+        }
+        ticket.setOutTime(outTime);
+        ExitResult.Status notPriced = price(ticket);
+        if (notPriced != null) {
+            return new ExitResult(vehicleRegNumber, notPriced, ticket);
+        }
+        //apply 5% discount if vehicle have previous entering, before the single fare write
+        applyDiscount(ticket);
+        //write the fare and release the parking spot in one transaction
+        ExitResult.Status status = ticketDAO.closeTicket(ticket) ? ExitResult.Status.SETTLED : ExitResult.Status.FAILED;
+        return new ExitResult(vehicleRegNumber, status, ticket);
+    }
+
+    /**
+     * Price a ticket whose out time is set
+     *
+     * @return null once it is priced, or the status of the exit when it cannot be priced
+     */
+    private ExitResult.Status price(Ticket ticket) {
+        if (ticket.getOutTime() == null || ticket.getOutTime().before(ticket.getInTime())) {
+            return ExitResult.Status.INVALID_OUT_TIME;
+        }
+        try {
+            fareCalculatorService.calculateFare(ticket);
+            return null;
+        } catch (IllegalArgumentException e) {
+            //no tariff for the parking type of the ticket, a configuration error and not a bad out time
+            logger.error("Unable to price ticket of vehicle " + ticket.getVehicleRegNumber(), e);
+            return ExitResult.Status.FAILED;
+        }
+    }
+
     /**
      * Display welcome message if there is at last one previous entering
      */
@@ -136,10 +274,66 @@ public class ParkingService {
      * Applying 5% discount if there is at last one previous entering
      */
     public void applyDiscount(Ticket ticket) {
-        if (ticketDAO.getCountOfPreviousTickets(ticket.getVehicleRegNumber()) > 1) {
-            //Call discount function
+        applyDiscount(ticket, ticketDAO.getCountOfPreviousTickets(ticket.getVehicleRegNumber()));
+    }
+
+    private void applyDiscount(Ticket ticket, int countOfPreviousTickets) {
+        //the current ticket is counted too, so more than one ticket means a previous entering
+        if (countOfPreviousTickets > 1) {
+            //Call discount function, the discounted fare is written when the ticket is closed
             fareCalculatorService.calculateDiscount(ticket);
-            ticketDAO.updateTicket(ticket);
         }
     }
+
+    /**
+     * Settle many vehicle exits at once, as replayed by a gate controller after an outage or at end of day.
+     * Fares are computed as for a single exit, then every ticket is closed and its spot released with JDBC batches.
+     * Nothing is printed to the console
+     *
+     * @param vehicleExits the vehicles to settle, with their out time
+     * @return the result of each exit, in the same order
+     */
+    public List<ExitResult> settleExits(List<VehicleExit> vehicleExits) {
+        List<String> vehicleRegNumbers = new ArrayList<>(vehicleExits.size());
+        for (VehicleExit vehicleExit : vehicleExits) {
+            vehicleRegNumbers.add(vehicleExit.getVehicleRegNumber());
+        }
+        Map<String, Ticket> openTickets = ticketDAO.getOpenTickets(vehicleRegNumbers);
+        Map<String, Integer> countsOfPreviousTickets = ticketDAO.getCountsOfPreviousTickets(vehicleRegNumbers);
+
+        ExitResult[] results = new ExitResult[vehicleExits.size()];
+        List<Ticket> pricedTickets = new ArrayList<>();
+        List<Integer> pricedIndexes = new ArrayList<>();
+        for (int i = 0; i < vehicleExits.size(); i++) {
+            VehicleExit vehicleExit = vehicleExits.get(i);
+            //removed once used, so a vehicle replayed twice is only settled once
+            Ticket ticket = openTickets.remove(vehicleExit.getVehicleRegNumber());
+            if (ticket == null) {
+                results[i] = new ExitResult(vehicleExit.getVehicleRegNumber(), ExitResult.Status.NO_OPEN_TICKET, null);
+                continue;
+            }
+            ticket.setOutTime(vehicleExit.getOutTime());
+            ExitResult.Status notPriced = price(ticket);
+            if (notPriced != null) {
+                results[i] = new ExitResult(vehicleExit.getVehicleRegNumber(), notPriced, ticket);
+                continue;
+            }
+            applyDiscount(ticket, countsOfPreviousTickets.getOrDefault(vehicleExit.getVehicleRegNumber(), 0));
+            pricedTickets.add(ticket);
+            pricedIndexes.add(i);
+        }
+
+        boolean[] closed = ticketDAO.closeTickets(pricedTickets);
+        int settled = 0;
+        for (int i = 0; i < pricedTickets.size(); i++) {
+            Ticket ticket = pricedTickets.get(i);
+            ExitResult.Status status = closed[i] ? ExitResult.Status.SETTLED : ExitResult.Status.FAILED;
+            results[pricedIndexes.get(i)] = new ExitResult(ticket.getVehicleRegNumber(), status, ticket);
+            if (closed[i]) {
+                settled++;
+            }
+        }
+        logger.info("Settled " + settled + " of " + vehicleExits.size() + " vehicle exits");
+        return Arrays.asList(results);
+    }
 }
@@ -0,0 +1,334 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.dao.ReservationRepository;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Advance reservations of parking spots. Each reservation holds one spot for its window, and from the guard window
+ * before its start to its end its spot is held in the availability index, out of the spots allocations take from,
+ * so a walk-in vehicle is not parked on a spot that its holder needs soon. The times holds start and end are kept
+ * in order, and the index runs {@link #updateHolds()} before each allocation to apply the ones due.
+ * <p>
+ * A vehicle checking in from the guard window before its reservation to its end releases it and is given
+ * the lowest spot free of reservations, as any other vehicle. Allocations through the parking table,
+ * when the availability index is not loaded, ignore reservations.
+ */
+public class ReservationService {
+
+    private static final Logger logger = LogManager.getLogger("ReservationService");
+
+    public static final long DEFAULT_GUARD_MS = 2 * 60 * 60 * 1000L;
+
+    private final Supplier<ParkingSpotIndex> availabilityIndex;
+    private final ReservationRepository reservationRepository;
+    private final long guardMs;
+    private final ReservationIndex reservationIndex = new ReservationIndex();
+    //reservations not ended yet of each packed vehicle registration number, guarded by the list
+    private final LongKeyMap<List<Reservation>> reservationsOfVehicle = new LongKeyMap<>();
+
+    //reservations by the time they start and stop holding their spot, and holds of each spot, guarded by holds
+    private final Object holds = new Object();
+    private final NavigableMap<Long, List<Reservation>> holdStarts = new TreeMap<>();
+    private final NavigableMap<Long, List<Reservation>> holdEnds = new TreeMap<>();
+    private final Map<Integer, Integer> holdsOfSpot = new HashMap<>();
+    //index the spots are held in, replaced when the index is reloaded
+    private volatile ParkingSpotIndex heldIndex;
+    private volatile long nextHoldChangeAt = Long.MAX_VALUE;
+
+    public ReservationService(Supplier<ParkingSpotIndex> availabilityIndex, ReservationRepository reservationRepository) {
+        this(availabilityIndex, reservationRepository, DEFAULT_GUARD_MS);
+    }
+
+    /**
+     * @param availabilityIndex     the current availability index of the parking spots, null when it is not loaded
+     * @param reservationRepository
+     * @param guardMs               how long before its start a reservation holds its spot
+     */
+    public ReservationService(Supplier<ParkingSpotIndex> availabilityIndex, ReservationRepository reservationRepository, long guardMs) {
+        this.availabilityIndex = availabilityIndex;
+        this.reservationRepository = reservationRepository;
+        this.guardMs = guardMs;
+        ParkingSpotIndex index = availabilityIndex.get();
+        if (index == null) {
+            logger.warn("No availability index, reservations are not taken into account by allocations");
+        } else {
+            heldIndex = index;
+            index.setHoldUpdater(this::updateHolds);
+        }
+    }
+
+    /**
+     * Index the reservations not ended yet from the repository
+     */
+    public void load() {
+        int loaded = 0;
+        for (Reservation reservation : reservationRepository.getReservationsEndingAfter(System.currentTimeMillis())) {
+            if (index(reservation)) {
+                loaded++;
+            } else {
+                logger.error("Ignoring overlapping " + reservation);
+            }
+        }
+        logger.info("Loaded " + loaded + " reservations");
+    }
+
+    /**
+     * Book the lowest spot of a parking type free for a window. A window starting within the guard window
+     * can only be booked on a spot available now
+     *
+     * @param facilityId       the facility, or {@link com.parkit.parkingsystem.model.ParkingSpot#ANY_FACILITY}
+     * @param parkingType
+     * @param vehicleRegNumber
+     * @param startTime
+     * @param endTime          excluded
+     * @return the saved reservation, or null if no spot is free for the window or it could not be saved
+     * @throws IllegalArgumentException if the window ends before it starts
+     */
+    public Reservation book(int facilityId, ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        if (!endTime.after(startTime)) {
+            throw new IllegalArgumentException("End time provided is not after start time: " + endTime);
+        }
+        ParkingSpotIndex index = availabilityIndex.get();
+        if (index == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        removeEndedBefore(now);
+        boolean startsSoon = startTime.getTime() < now + guardMs;
+        for (int spot : index.getSpots(facilityId, parkingType)) {
+            if (startsSoon && !index.isAvailable(spot)) {
+                continue;
+            }
+            Reservation reservation = new Reservation(spot, parkingType, vehicleRegNumber, startTime, endTime);
+            if (reservationIndex.add(reservation)) {
+                if (!reservationRepository.saveReservation(reservation)) {
+                    reservationIndex.remove(reservation);
+                    return null;
+                }
+                addToVehicle(reservation);
+                scheduleHold(reservation);
+                return reservation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param reservation
+     * @return true if the reservation has been deleted
+     */
+    public boolean cancel(Reservation reservation) {
+        if (reservationIndex.remove(reservation)) {
+            unscheduleHold(reservation);
+        }
+        removeFromVehicle(reservation);
+        return reservationRepository.deleteReservation(reservation);
+    }
+
+    /**
+     * Release the reservation of a vehicle arriving in its window or in the guard window before it,
+     * so that its spot can be allocated
+     *
+     * @param vehicleRegNumber
+     * @param arrivalTime
+     * @return the released reservation, or null if the vehicle has none for this time
+     */
+    public Reservation checkIn(String vehicleRegNumber, Date arrivalTime) {
+        long vehicle = VehicleRegNumber.pack(vehicleRegNumber);
+        List<Reservation> reservations = reservationsOfVehicle.get(vehicle);
+        if (reservations == null) {
+            return null;
+        }
+        long arrival = arrivalTime.getTime();
+        Reservation checkedIn = null;
+        synchronized (reservations) {
+            for (Reservation reservation : reservations) {
+                if (reservation.getStartTime().getTime() - guardMs <= arrival && arrival < reservation.getEndTime().getTime()
+                        && VehicleRegNumber.sameVehicle(vehicle, vehicleRegNumber, reservation.getVehicleRegNumber())) {
+                    checkedIn = reservation;
+                    break;
+                }
+            }
+        }
+        if (checkedIn == null || !reservationIndex.remove(checkedIn)) {
+            return null;
+        }
+        unscheduleHold(checkedIn);
+        removeFromVehicle(checkedIn);
+        return checkedIn;
+    }
+
+    /**
+     * Hold again the spot of a reservation checked in by a vehicle that could not be parked
+     *
+     * @param reservation
+     */
+    public void restore(Reservation reservation) {
+        if (!index(reservation)) {
+            logger.error("Unable to restore " + reservation + ", its spot has been booked meanwhile");
+        }
+    }
+
+    public int getReservationCount() {
+        return reservationIndex.size();
+    }
+
+    private boolean index(Reservation reservation) {
+        if (!reservationIndex.add(reservation)) {
+            return false;
+        }
+        addToVehicle(reservation);
+        scheduleHold(reservation);
+        return true;
+    }
+
+    private void addToVehicle(Reservation reservation) {
+        reservationsOfVehicle.compute(VehicleRegNumber.pack(reservation.getVehicleRegNumber()), reservations -> {
+            List<Reservation> vehicleReservations = (reservations == null) ? new ArrayList<>() : reservations;
+            synchronized (vehicleReservations) {
+                vehicleReservations.add(reservation);
+            }
+            return vehicleReservations;
+        });
+    }
+
+    private void removeFromVehicle(Reservation reservation) {
+        reservationsOfVehicle.compute(VehicleRegNumber.pack(reservation.getVehicleRegNumber()), reservations -> {
+            if (reservations == null) {
+                return null;
+            }
+            synchronized (reservations) {
+                reservations.remove(reservation);
+                return reservations.isEmpty() ? null : reservations;
+            }
+        });
+    }
+
+    private void removeEndedBefore(long time) {
+        reservationIndex.removeEndedBefore(time, reservation -> {
+            unscheduleHold(reservation);
+            removeFromVehicle(reservation);
+        });
+    }
+
+    /**
+     * Hold the spots of the reservations entering the guard window and release the ones of the reservations ended,
+     * run by the availability index before each allocation. Returns at once when none is due
+     */
+    public void updateHolds() {
+        ParkingSpotIndex index = availabilityIndex.get();
+        long now = System.currentTimeMillis();
+        if (now < nextHoldChangeAt && index == heldIndex) {
+            return;
+        }
+        synchronized (holds) {
+            if (index != heldIndex && index != null) {
+                //a reloaded index, the spots held so far are held in it too
+                for (int spot : holdsOfSpot.keySet()) {
+                    index.hold(spot);
+                }
+                heldIndex = index;
+            }
+            while (!holdStarts.isEmpty() && holdStarts.firstKey() <= now) {
+                for (Reservation reservation : holdStarts.pollFirstEntry().getValue()) {
+                    if (reservation.getEndTime().getTime() > now) {
+                        startHold(reservation);
+                    }
+                }
+            }
+            while (!holdEnds.isEmpty() && holdEnds.firstKey() <= now) {
+                for (Reservation reservation : holdEnds.pollFirstEntry().getValue()) {
+                    endHold(reservation);
+                }
+            }
+            updateNextHoldChange();
+        }
+    }
+
+    /**
+     * Hold the spot of a new reservation at once if it starts within the guard window, or when it enters it
+     */
+    private void scheduleHold(Reservation reservation) {
+        long now = System.currentTimeMillis();
+        synchronized (holds) {
+            if (reservation.getEndTime().getTime() <= now) {
+                return;
+            }
+            long holdStart = reservation.getStartTime().getTime() - guardMs;
+            if (holdStart <= now) {
+                startHold(reservation);
+            } else {
+                holdStarts.computeIfAbsent(holdStart, time -> new ArrayList<>()).add(reservation);
+            }
+            updateNextHoldChange();
+        }
+    }
+
+    /**
+     * Forget the hold of a reservation removed, releasing its spot if it holds it
+     */
+    private void unscheduleHold(Reservation reservation) {
+        synchronized (holds) {
+            if (!removeFrom(holdStarts, reservation.getStartTime().getTime() - guardMs, reservation)
+                    && removeFrom(holdEnds, reservation.getEndTime().getTime(), reservation)) {
+                endHold(reservation);
+            }
+            updateNextHoldChange();
+        }
+    }
+
+    //guarded by holds
+    private void startHold(Reservation reservation) {
+        holdEnds.computeIfAbsent(reservation.getEndTime().getTime(), time -> new ArrayList<>()).add(reservation);
+        int spot = reservation.getParkingNumber();
+        //a spot may be held by back to back reservations
+        if (holdsOfSpot.merge(spot, 1, Integer::sum) == 1 && heldIndex != null) {
+            heldIndex.hold(spot);
+        }
+    }
+
+    //guarded by holds, the reservation is no longer in holdEnds
+    private void endHold(Reservation reservation) {
+        int spot = reservation.getParkingNumber();
+        if (holdsOfSpot.merge(spot, -1, Integer::sum) == 0) {
+            holdsOfSpot.remove(spot);
+            if (heldIndex != null) {
+                heldIndex.unhold(spot);
+            }
+        }
+    }
+
+    //guarded by holds
+    private void updateNextHoldChange() {
+        long nextStart = holdStarts.isEmpty() ? Long.MAX_VALUE : holdStarts.firstKey();
+        long nextEnd = holdEnds.isEmpty() ? Long.MAX_VALUE : holdEnds.firstKey();
+        nextHoldChangeAt = Math.min(nextStart, nextEnd);
+    }
+
+    private static boolean removeFrom(NavigableMap<Long, List<Reservation>> reservationsByTime, long time, Reservation reservation) {
+        List<Reservation> reservations = reservationsByTime.get(time);
+        if (reservations == null || !reservations.remove(reservation)) {
+            return false;
+        }
+        if (reservations.isEmpty()) {
+            reservationsByTime.remove(time);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,318 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable tariffs compiled from rate rules, by facility and parking type. The week is cut in
+ * {@value #BUCKET_MINUTES} minute buckets, each with its hourly rate, and the cost of the week up to each bucket
+ * is precomputed, so the price of a stay of any length is two lookups and a subtraction.
+ * Rates and costs are integers in {@link Money} minor units, a price is exact until its single final rounding.
+ * <p>
+ * Times of day are read at a fixed UTC offset, a new table is compiled when the offset changes.
+ * A later rule overrides an earlier one on the buckets they share.
+ */
+public class TariffTable {
+
+    public static final int BUCKET_MINUTES = 15;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long BUCKET_MS = TimeUnit.MINUTES.toMillis(BUCKET_MINUTES);
+    private static final long WEEK_MS = TimeUnit.DAYS.toMillis(7);
+    private static final int BUCKETS_PER_DAY = (int) (TimeUnit.DAYS.toMillis(1) / BUCKET_MS);
+    private static final int BUCKETS_PER_WEEK = 7 * BUCKETS_PER_DAY;
+    //the epoch is a Thursday, weeks of the table start on Monday
+    private static final long FIRST_MONDAY_MS = TimeUnit.DAYS.toMillis(4);
+
+    private final long offsetMs;
+    //tariff of each parking type by ordinal, for each facility, and for the facilities without their own tariffs
+    private final Map<Integer, TypeTariff[]> facilityTariffs;
+    private final TypeTariff[] defaultTariffs;
+
+    private TariffTable(ZoneOffset offset, Map<Integer, TypeTariff[]> facilityTariffs, TypeTariff[] defaultTariffs) {
+        this.offsetMs = TimeUnit.SECONDS.toMillis(offset.getTotalSeconds());
+        this.facilityTariffs = facilityTariffs;
+        this.defaultTariffs = defaultTariffs;
+    }
+
+    /**
+     * @return the tariffs of the {@link Fare} constants, a flat hourly rate and free duration per type
+     */
+    public static TariffTable fromFare() {
+        return new Builder(ZoneOffset.UTC)
+                .freeDuration(ParkingType.CAR, Fare.CAR_FREE_DURATION_PAR_HOUR)
+                .rate(ParkingType.CAR, Fare.CAR_RATE_PER_HOUR)
+                .freeDuration(ParkingType.BIKE, Fare.BIKE_FREE_DURATION_PAR_HOUR)
+                .rate(ParkingType.BIKE, Fare.BIKE_RATE_PER_HOUR)
+                .build();
+    }
+
+    /**
+     * Price a stay
+     *
+     * @param facilityId  the facility of the spot
+     * @param parkingType
+     * @param inTime      epoch millis
+     * @param outTime     epoch millis, not before the in time
+     * @return the price in minor units rounded half up, 0 when the stay is not longer than the free duration of the type
+     */
+    public long priceInMinorUnits(int facilityId, ParkingType parkingType, long inTime, long outTime) {
+        TypeTariff[] tariffs = facilityTariffs.isEmpty() ? defaultTariffs
+                : facilityTariffs.getOrDefault(facilityId, defaultTariffs);
+        TypeTariff tariff = tariffs[parkingType.ordinal()];
+        if (tariff == null) {
+            throw new IllegalArgumentException("No tariff for parking type " + parkingType);
+        }
+        long duration = outTime - inTime;
+        if (duration <= tariff.freeDuration) {
+            return 0;
+        }
+        if (tariff.flatRate >= 0) {
+            return Money.multiply(duration, tariff.flatRate, HOUR_MS);
+        }
+        long inPosition = inTime + offsetMs - FIRST_MONDAY_MS;
+        long outPosition = outTime + offsetMs - FIRST_MONDAY_MS;
+        long weeks = Math.floorDiv(outPosition, WEEK_MS) - Math.floorDiv(inPosition, WEEK_MS);
+        return Money.divide(weeks * tariff.weekCost + tariff.costInWeek(Math.floorMod(outPosition, WEEK_MS))
+                - tariff.costInWeek(Math.floorMod(inPosition, WEEK_MS)), HOUR_MS);
+    }
+
+    /**
+     * Read rules, one per line, blank lines and lines starting with # are ignored:
+     * <pre>
+     * offset,&lt;UTC offset like +01:00&gt;
+     * free,&lt;TYPE&gt;,&lt;hours&gt;[,&lt;facility&gt;]
+     * rate,&lt;TYPE&gt;,&lt;rate per hour&gt;[,&lt;facility&gt;[,&lt;days like MON-FRI or SAT|SUN&gt;,&lt;from HH:mm&gt;,&lt;to HH:mm&gt;]]
+     * </pre>
+     * A facility of 0 applies to every facility without its own rules.
+     *
+     * @param reader
+     * @return the compiled table
+     * @throws IOException
+     * @throws IllegalArgumentException if a line is not valid
+     */
+    public static TariffTable parse(BufferedReader reader) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        ZoneOffset offset = ZoneOffset.UTC;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].trim();
+            }
+            if ("offset".equals(fields[0]) && fields.length == 2) {
+                offset = ZoneOffset.of(fields[1]);
+            } else if (("free".equals(fields[0]) && (fields.length == 3 || fields.length == 4))
+                    || ("rate".equals(fields[0]) && (fields.length == 3 || fields.length == 4 || fields.length == 7))) {
+                lines.add(fields);
+            } else {
+                throw new IllegalArgumentException("Invalid tariff line " + lineNumber + ": " + line);
+            }
+        }
+        Builder builder = new Builder(offset);
+        for (String[] fields : lines) {
+            ParkingType parkingType = ParkingType.valueOf(fields[1]);
+            double value = Double.parseDouble(fields[2]);
+            int facilityId = (fields.length > 3) ? Integer.parseInt(fields[3]) : ParkingSpot.ANY_FACILITY;
+            if ("free".equals(fields[0])) {
+                builder.freeDuration(facilityId, parkingType, value);
+            } else if (fields.length == 7) {
+                builder.rate(facilityId, parkingType, value, parseDays(fields[4]), LocalTime.parse(fields[5]), LocalTime.parse(fields[6]));
+            } else {
+                builder.rate(facilityId, parkingType, value, EnumSet.allOf(DayOfWeek.class), LocalTime.MIDNIGHT, LocalTime.MIDNIGHT);
+            }
+        }
+        return builder.build();
+    }
+
+    private static Set<DayOfWeek> parseDays(String days) {
+        Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+        if ("ALL".equals(days)) {
+            return EnumSet.allOf(DayOfWeek.class);
+        }
+        for (String range : days.split("\\|")) {
+            String[] bounds = range.split("-");
+            DayOfWeek first = parseDay(bounds[0]);
+            DayOfWeek last = parseDay(bounds[bounds.length - 1]);
+            for (DayOfWeek day = first; ; day = day.plus(1)) {
+                daysOfWeek.add(day);
+                if (day == last) {
+                    break;
+                }
+            }
+        }
+        return daysOfWeek;
+    }
+
+    private static DayOfWeek parseDay(String day) {
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            if (dayOfWeek.name().startsWith(day) && day.length() >= 3) {
+                return dayOfWeek;
+            }
+        }
+        throw new IllegalArgumentException("Invalid day " + day);
+    }
+
+    /**
+     * Compiled tariff of one parking type
+     */
+    private static class TypeTariff {
+        //in millis
+        private final long freeDuration;
+        //the rate of every bucket, or -1 when it changes during the week
+        private final long flatRate;
+        //minor units per hour of each bucket, and cost of the week before each bucket in minor units per hour times millis
+        private final long[] rates;
+        private final long[] costBefore;
+        private final long weekCost;
+
+        private TypeTariff(long freeDuration, long[] rates) {
+            this.freeDuration = freeDuration;
+            this.rates = rates;
+            this.costBefore = new long[BUCKETS_PER_WEEK];
+            long cost = 0;
+            boolean flat = true;
+            for (int bucket = 0; bucket < BUCKETS_PER_WEEK; bucket++) {
+                costBefore[bucket] = cost;
+                cost += rates[bucket] * BUCKET_MS;
+                flat &= (rates[bucket] == rates[0]);
+            }
+            this.weekCost = cost;
+            this.flatRate = flat ? rates[0] : -1;
+        }
+
+        private long costInWeek(long position) {
+            int bucket = (int) (position / BUCKET_MS);
+            return costBefore[bucket] + rates[bucket] * (position - bucket * BUCKET_MS);
+        }
+    }
+
+    /**
+     * Rules of a tariff table, to be compiled with {@link #build()}
+     */
+    public static class Builder {
+        private final ZoneOffset offset;
+        private final Map<Integer, Map<ParkingType, Double>> freeDurations = new HashMap<>();
+        private final Map<Integer, Map<ParkingType, long[]>> rates = new HashMap<>();
+
+        public Builder(ZoneOffset offset) {
+            this.offset = offset;
+        }
+
+        public Builder freeDuration(ParkingType parkingType, double hours) {
+            return freeDuration(ParkingSpot.ANY_FACILITY, parkingType, hours);
+        }
+
+        public Builder freeDuration(int facilityId, ParkingType parkingType, double hours) {
+            freeDurations.computeIfAbsent(facilityId, id -> new EnumMap<>(ParkingType.class)).put(parkingType, hours);
+            return this;
+        }
+
+        /**
+         * Set the rate of a type all week, in every facility without its own rules
+         */
+        public Builder rate(ParkingType parkingType, double ratePerHour) {
+            return rate(ParkingSpot.ANY_FACILITY, parkingType, ratePerHour, EnumSet.allOf(DayOfWeek.class),
+                    LocalTime.MIDNIGHT, LocalTime.MIDNIGHT);
+        }
+
+        /**
+         * Set the rate of a type from a time of day to another on some days of the week. A rule ending at or before
+         * its start time ends the next day, so MIDNIGHT to MIDNIGHT is the whole day
+         *
+         * @param facilityId  the facility, or {@link ParkingSpot#ANY_FACILITY} for every facility without its own rules
+         * @param parkingType
+         * @param ratePerHour
+         * @param days        the days the rule starts on
+         * @param from        a multiple of {@value #BUCKET_MINUTES} minutes
+         * @param to          a multiple of {@value #BUCKET_MINUTES} minutes
+         * @return this builder
+         */
+        public Builder rate(int facilityId, ParkingType parkingType, double ratePerHour, Set<DayOfWeek> days,
+                            LocalTime from, LocalTime to) {
+            if (ratePerHour < 0) {
+                throw new IllegalArgumentException("Negative rate " + ratePerHour);
+            }
+            int firstBucket = toBucket(from);
+            int lastBucket = toBucket(to);
+            int length = (lastBucket > firstBucket) ? lastBucket - firstBucket : BUCKETS_PER_DAY - firstBucket + lastBucket;
+            long rate = Money.toMinorUnits(ratePerHour);
+            long[] typeRates = rates.computeIfAbsent(facilityId, id -> new EnumMap<>(ParkingType.class))
+                    .computeIfAbsent(parkingType, type -> new long[BUCKETS_PER_WEEK]);
+            for (DayOfWeek day : days) {
+                int start = (day.getValue() - 1) * BUCKETS_PER_DAY + firstBucket;
+                for (int i = 0; i < length; i++) {
+                    typeRates[(start + i) % BUCKETS_PER_WEEK] = rate;
+                }
+            }
+            return this;
+        }
+
+        private static int toBucket(LocalTime time) {
+            int minutes = time.getHour() * 60 + time.getMinute();
+            if (minutes % BUCKET_MINUTES != 0 || time.getSecond() != 0 || time.getNano() != 0) {
+                throw new IllegalArgumentException("Tariff times must be multiples of " + BUCKET_MINUTES + " minutes: " + time);
+            }
+            return minutes / BUCKET_MINUTES;
+        }
+
+        /**
+         * @return the compiled table, later changes to this builder do not change it
+         */
+        public TariffTable build() {
+            Map<Integer, TypeTariff[]> facilityTariffs = new HashMap<>();
+            Set<Integer> facilityIds = new TreeSet<>(rates.keySet());
+            facilityIds.addAll(freeDurations.keySet());
+            for (int facilityId : facilityIds) {
+                TypeTariff[] tariffs = new TypeTariff[ParkingType.values().length];
+                for (ParkingType parkingType : ParkingType.values()) {
+                    long[] typeRates = find(rates, facilityId, parkingType);
+                    Double freeDuration = find(freeDurations, facilityId, parkingType);
+                    if (typeRates != null) {
+                        tariffs[parkingType.ordinal()] = new TypeTariff((freeDuration == null) ? 0 : Math.round(freeDuration * HOUR_MS),
+                                typeRates.clone());
+                    }
+                }
+                facilityTariffs.put(facilityId, tariffs);
+            }
+            TypeTariff[] defaultTariffs = facilityTariffs.remove(ParkingSpot.ANY_FACILITY);
+            if (defaultTariffs == null) {
+                defaultTariffs = new TypeTariff[ParkingType.values().length];
+            }
+            return new TariffTable(offset, facilityTariffs, defaultTariffs);
+        }
+
+        //the rule of the facility, or the one of every facility
+        private static <V> V find(Map<Integer, Map<ParkingType, V>> values, int facilityId, ParkingType parkingType) {
+            Map<ParkingType, V> ofFacility = values.get(facilityId);
+            V value = (ofFacility == null) ? null : ofFacility.get(parkingType);
+            if (value == null && facilityId != ParkingSpot.ANY_FACILITY) {
+                Map<ParkingType, V> ofAnyFacility = values.get(ParkingSpot.ANY_FACILITY);
+                value = (ofAnyFacility == null) ? null : ofAnyFacility.get(parkingType);
+            }
+            return value;
+        }
+    }
+}
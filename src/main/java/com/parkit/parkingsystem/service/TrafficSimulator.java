@@ -0,0 +1,290 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.SimulationReport;
+import com.parkit.parkingsystem.model.TrafficProfile;
+import com.parkit.parkingsystem.service.EventIngestionService.VehicleEvent;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the parking service with generated traffic. The arrivals and departures of a {@link TrafficProfile}
+ * are generated up front from its seed, so a seed always replays the same events, then released in time order
+ * to a number of lanes, each one processing the events of its vehicles in order like the headless ingestion.
+ * <p>
+ * Every entry is checked against the spots of the simulated vehicles still parked, a spot given to a second vehicle
+ * is counted as a double assignment. When the events are paced by the speedup of the profile, response times are
+ * measured from the release of an event, so the time it waits behind the other events of its lane is included.
+ * Unpaced events are all released at once, their service time is measured from the start of their processing.
+ */
+public class TrafficSimulator {
+
+    private static final Logger logger = LogManager.getLogger("TrafficSimulator");
+
+    //simulated days start at midnight UTC on a fixed date, so a seed gives the same tickets everywhere
+    public static final long START_TIME = LocalDate.of(2024, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final String VEHICLE_PREFIX = "SIM";
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long DAY_MINUTES = 24 * 60;
+    //3 significant digits, like the operation timers
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final ParkingService parkingService;
+    private final TrafficProfile profile;
+    private final int lanes;
+
+    public TrafficSimulator(ParkingService parkingService, TrafficProfile profile, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Lanes must be positive");
+        }
+        this.parkingService = parkingService;
+        this.profile = profile;
+        this.lanes = lanes;
+    }
+
+    /**
+     * Write the events of the profile in the input format of the headless ingestion, with their simulated time
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void writeEvents(Writer writer) throws IOException {
+        for (VehicleEvent event : generate()) {
+            if (event.parkingType != null) {
+                writer.write("IN," + event.parkingType + "," + event.vehicleRegNumber + "," + event.time.getTime() + "\n");
+            } else {
+                writer.write("OUT," + event.vehicleRegNumber + "," + event.time.getTime() + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Generate the events of the profile and process them, until every vehicle has left
+     *
+     * @return the outcome of this run
+     * @throws InterruptedException if interrupted while waiting for the lanes
+     */
+    public SimulationReport run() throws InterruptedException {
+        logger.info("Simulating " + profile + " on " + lanes + " lanes");
+        List<VehicleEvent> events = generate();
+        Run run = new Run();
+        ThreadPoolExecutor[] executors = new ThreadPoolExecutor[lanes];
+        for (int i = 0; i < lanes; i++) {
+            executors[i] = createLane(i);
+        }
+        long start = System.nanoTime();
+        try {
+            for (VehicleEvent event : events) {
+                if (profile.getSpeedup() > 0) {
+                    long due = start + (long) ((event.time.getTime() - START_TIME) * 1_000_000.0 / profile.getSpeedup());
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                long released = System.nanoTime();
+                executors[laneOf(event.vehicleRegNumber)].execute(() -> run.process(event, released));
+            }
+        } finally {
+            for (ThreadPoolExecutor executor : executors) {
+                executor.shutdown();
+            }
+            for (ThreadPoolExecutor executor : executors) {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+        SimulationReport report = new SimulationReport(events.size(), run.entries.sum(), run.exits.sum(),
+                run.rejectedEntries.sum(), run.failures.sum(), run.doubleAssignments.sum(),
+                run.entryLatencies.getIntervalHistogram(), run.exitLatencies.getIntervalHistogram(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info(report);
+        return report;
+    }
+
+    /**
+     * Arrivals of a non homogeneous Poisson process, drawn at the highest rate of the profile and each one kept
+     * with the ratio of the rate at its time to that highest rate. A returning vehicle is drawn among the ones
+     * that left before its arrival, and keeps its parking type
+     */
+    List<VehicleEvent> generate() {
+        Random random = new Random(profile.getSeed());
+        //the rate of a minute adds the rise of every peak, each one at most the peak multiplier
+        double maxRate = profile.getArrivalsPerHour() / 60 * (1 + (profile.getPeakMultiplier() - 1) * profile.getPeaks().size());
+        double horizonMinutes = profile.getHours() * 60.0;
+        List<VehicleEvent> events = new ArrayList<>();
+        List<ParkingType> typeOfVehicle = new ArrayList<>();
+        List<Integer> awayVehicles = new ArrayList<>();
+        PriorityQueue<Departure> departures = new PriorityQueue<>();
+        double minutes = 0;
+        while (true) {
+            minutes += -Math.log(1 - random.nextDouble()) / maxRate;
+            if (minutes >= horizonMinutes) {
+                break;
+            }
+            if (random.nextDouble() * maxRate > rateAt(minutes)) {
+                continue;
+            }
+            long arrival = START_TIME + (long) (minutes * MINUTE_MS);
+            while (!departures.isEmpty() && departures.peek().time <= arrival) {
+                awayVehicles.add(departures.poll().vehicle);
+            }
+            int vehicle;
+            if (!awayVehicles.isEmpty() && random.nextDouble() < profile.getRepeatRatio()) {
+                int index = random.nextInt(awayVehicles.size());
+                vehicle = awayVehicles.get(index);
+                awayVehicles.set(index, awayVehicles.get(awayVehicles.size() - 1));
+                awayVehicles.remove(awayVehicles.size() - 1);
+            } else {
+                vehicle = typeOfVehicle.size();
+                typeOfVehicle.add((random.nextDouble() < profile.getBikeRatio()) ? ParkingType.BIKE : ParkingType.CAR);
+            }
+            long stay = Math.max(MINUTE_MS, (long) (-Math.log(1 - random.nextDouble()) * profile.getMeanStayMinutes() * MINUTE_MS));
+            departures.add(new Departure(arrival + stay, vehicle));
+            String vehicleRegNumber = VEHICLE_PREFIX + (vehicle + 1);
+            events.add(new VehicleEvent(typeOfVehicle.get(vehicle), vehicleRegNumber, new Date(arrival)));
+            events.add(new VehicleEvent(null, vehicleRegNumber, new Date(arrival + stay)));
+        }
+        //stable sort, a vehicle leaving when another one or itself arrives leaves first
+        events.sort(Comparator.<VehicleEvent>comparingLong(event -> event.time.getTime())
+                .thenComparing(event -> event.parkingType != null));
+        return events;
+    }
+
+    /**
+     * @param minutes since the start of the simulation
+     * @return the arrival rate per minute at this time
+     */
+    private double rateAt(double minutes) {
+        double minuteOfDay = minutes % DAY_MINUTES;
+        double factor = 1;
+        for (LocalTime peak : profile.getPeaks()) {
+            double distance = Math.abs(minuteOfDay - peak.toSecondOfDay() / 60.0);
+            //a peak near midnight also rises the rate on the other side of it
+            distance = Math.min(distance, DAY_MINUTES - distance) / profile.getPeakWidthMinutes();
+            factor += (profile.getPeakMultiplier() - 1) * Math.exp(-0.5 * distance * distance);
+        }
+        return profile.getArrivalsPerHour() / 60 * factor;
+    }
+
+    private ThreadPoolExecutor createLane(int lane) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "simulator-lane-" + lane);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int laneOf(String vehicleRegNumber) {
+        return (vehicleRegNumber.hashCode() & Integer.MAX_VALUE) % lanes;
+    }
+
+    private static class Departure implements Comparable<Departure> {
+        private final long time;
+        private final int vehicle;
+
+        private Departure(long time, int vehicle) {
+            this.time = time;
+            this.vehicle = vehicle;
+        }
+
+        @Override
+        public int compareTo(Departure other) {
+            int byTime = Long.compare(time, other.time);
+            return (byTime != 0) ? byTime : Integer.compare(vehicle, other.vehicle);
+        }
+    }
+
+    /**
+     * Counters and parked vehicles of one run
+     */
+    private class Run {
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder exits = new LongAdder();
+        private final LongAdder rejectedEntries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder doubleAssignments = new LongAdder();
+        private final Recorder entryLatencies = new Recorder(SIGNIFICANT_DIGITS);
+        private final Recorder exitLatencies = new Recorder(SIGNIFICANT_DIGITS);
+        //spot of each parked vehicle, written by the lane of the vehicle only
+        private final Map<String, Integer> spotOfVehicle = new ConcurrentHashMap<>();
+        //vehicle parked on each spot, written by every lane
+        private final Map<Integer, String> vehicleOfSpot = new ConcurrentHashMap<>();
+
+        private void process(VehicleEvent event, long releasedNanos) {
+            long startNanos = (profile.getSpeedup() > 0) ? releasedNanos : System.nanoTime();
+            try {
+                if (event.parkingType != null) {
+                    enter(event, startNanos);
+                } else {
+                    leave(event, startNanos);
+                }
+            } catch (Exception e) {
+                logger.error("Unable to process event of vehicle " + event.vehicleRegNumber, e);
+                failures.increment();
+            }
+        }
+
+        private void enter(VehicleEvent event, long startNanos) {
+            EntryResult entryResult = parkingService.processIncomingVehicle(event.parkingType, event.vehicleRegNumber, event.time);
+            entryLatencies.recordValue(Math.max(System.nanoTime() - startNanos, 0));
+            if (entryResult.getStatus() == EntryResult.Status.NO_SPOT_AVAILABLE) {
+                rejectedEntries.increment();
+                return;
+            }
+            if (entryResult.getStatus() != EntryResult.Status.PARKED) {
+                logger.error("Entry of vehicle " + event.vehicleRegNumber + " not saved: " + entryResult.getStatus());
+                failures.increment();
+                return;
+            }
+            entries.increment();
+            int spot = entryResult.getTicket().getParkingSpot().getId();
+            String parkedVehicle = vehicleOfSpot.putIfAbsent(spot, event.vehicleRegNumber);
+            if (parkedVehicle != null) {
+                logger.error("Spot " + spot + " given to " + event.vehicleRegNumber + " while " + parkedVehicle + " is parked on it");
+                doubleAssignments.increment();
+            }
+            spotOfVehicle.put(event.vehicleRegNumber, spot);
+        }
+
+        private void leave(VehicleEvent event, long startNanos) {
+            Integer spot = spotOfVehicle.remove(event.vehicleRegNumber);
+            if (spot == null) {
+                //its entry was rejected
+                return;
+            }
+            //freed before the exit, whose spot may be given to another lane as soon as the repository releases it.
+            //An entry racing with the exit of its spot is not checked
+            vehicleOfSpot.remove(spot, event.vehicleRegNumber);
+            ExitResult exitResult = parkingService.processExitingVehicle(event.vehicleRegNumber, event.time);
+            exitLatencies.recordValue(Math.max(System.nanoTime() - startNanos, 0));
+            if (exitResult.getStatus() == ExitResult.Status.SETTLED) {
+                exits.increment();
+            } else {
+                logger.error("Exit of vehicle " + event.vehicleRegNumber + " not settled: " + exitResult.getStatus());
+                failures.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ClosedTicketSource;
+import com.parkit.parkingsystem.dao.ClosedTicketVisitor;
+import com.parkit.parkingsystem.model.DailyUsage;
+import com.parkit.parkingsystem.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Revenue, average stay and peak occupancy per day and parking type, aggregated from a stream of closed tickets
+ * in in time order. Revenue and stays count on the day of the exit, occupancy on the days the vehicle was parked.
+ * <p>
+ * A day is complete once a ticket entered after it, it is then passed on and forgotten, so memory holds the days
+ * of the longest stay and the out times of the vehicles parked at a time, whatever the number of tickets.
+ * Tickets entered more than the lookback days before the first day of a report are not read, their exits and
+ * occupancy are missing from it.
+ */
+public class UsageReportService {
+
+    private static final Logger logger = LogManager.getLogger("UsageReportService");
+
+    public static final String CSV_HEADER = "day,type,exits,revenue,average_stay_minutes,peak_occupancy";
+    public static final int DEFAULT_LOOKBACK_DAYS = 7;
+
+    private final ClosedTicketSource closedTicketSource;
+    private final ZoneId zone;
+    private final int lookbackDays;
+
+    public UsageReportService(ClosedTicketSource closedTicketSource, ZoneId zone) {
+        this(closedTicketSource, zone, DEFAULT_LOOKBACK_DAYS);
+    }
+
+    /**
+     * @param closedTicketSource
+     * @param zone               the zone of the days
+     * @param lookbackDays       days read before the first day of a report, the longest stay to account for
+     */
+    public UsageReportService(ClosedTicketSource closedTicketSource, ZoneId zone, int lookbackDays) {
+        this.closedTicketSource = closedTicketSource;
+        this.zone = zone;
+        this.lookbackDays = lookbackDays;
+    }
+
+    /**
+     * Aggregate the tickets of some days, each day is passed on as soon as it is complete
+     *
+     * @param from     first day of the report
+     * @param to       day after the last day of the report
+     * @param consumer receives the usage of each parking type with tickets or parked vehicles, by day then type
+     * @return the number of tickets read
+     * @throws IOException if the tickets cannot be read, the consumer may have been given some days
+     */
+    public long aggregate(LocalDate from, LocalDate to, Consumer<DailyUsage> consumer) throws IOException {
+        long start = System.currentTimeMillis();
+        Aggregator aggregator = new Aggregator(zone, from.toEpochDay(), to.toEpochDay(), consumer);
+        long count = closedTicketSource.forEachClosedTicket(startOf(from.minusDays(lookbackDays), zone), startOf(to, zone), aggregator);
+        aggregator.finish();
+        logger.info("Aggregated " + count + " tickets from " + from + " to " + to + " in " + (System.currentTimeMillis() - start) + " ms");
+        return count;
+    }
+
+    /**
+     * Aggregate the tickets of some days as CSV, with a {@link #CSV_HEADER} line
+     *
+     * @param from   first day of the report
+     * @param to     day after the last day of the report
+     * @param writer receives each line as soon as its day is complete, it is not closed
+     * @return the number of tickets read
+     * @throws IOException
+     */
+    public long writeCsv(LocalDate from, LocalDate to, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        StringBuilder line = new StringBuilder();
+        try {
+            long count = aggregate(from, to, dailyUsage -> {
+                line.setLength(0);
+                line.append(dailyUsage.getDay()).append(',')
+                        .append(dailyUsage.getParkingType()).append(',')
+                        .append(dailyUsage.getExits()).append(',')
+                        .append(Money.toBigDecimal(dailyUsage.getRevenue()).toPlainString()).append(',')
+                        .append(String.format(Locale.ROOT, "%.1f", dailyUsage.getAverageStayMinutes())).append(',')
+                        .append(dailyUsage.getPeakOccupancy()).append('\n');
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long startOf(LocalDate day, ZoneId zone) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Running totals of the days not complete yet
+     */
+    private static class Aggregator implements ClosedTicketVisitor {
+        private final ZoneId zone;
+        private final long fromDay;
+        private final long toDay;
+        private final Consumer<DailyUsage> consumer;
+        //totals of each parking type by epoch day, from the day of the last entry to the day of the latest exit
+        private final TreeMap<Long, Totals[]> days = new TreeMap<>();
+        //out times of the vehicles parked at the time of the last entry, by parking type
+        private final LongHeap[] parked = new LongHeap[ParkingType.values().length];
+        private final DayCache inDays;
+        private final DayCache outDays;
+        private long currentDay = Long.MIN_VALUE;
+
+        private Aggregator(ZoneId zone, long fromDay, long toDay, Consumer<DailyUsage> consumer) {
+            this.zone = zone;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.consumer = consumer;
+            for (int i = 0; i < parked.length; i++) {
+                parked[i] = new LongHeap();
+            }
+            inDays = new DayCache(zone);
+            outDays = new DayCache(zone);
+        }
+
+        @Override
+        public void visit(ParkingType parkingType, long inTime, long outTime, long price) {
+            long inDay = inDays.epochDay(inTime);
+            if (inDay < currentDay) {
+                throw new IllegalArgumentException("Tickets are not in in time order: " + Instant.ofEpochMilli(inTime));
+            }
+            if (inDay > currentDay) {
+                advanceTo(inDay);
+            }
+            //a vehicle leaving when another one enters frees its spot first
+            LongHeap vehicles = parked[parkingType.ordinal()];
+            while (!vehicles.isEmpty() && vehicles.peek() <= inTime) {
+                vehicles.poll();
+            }
+            vehicles.add(outTime);
+            Totals entryTotals = totals(inDay, parkingType);
+            entryTotals.peakOccupancy = Math.max(entryTotals.peakOccupancy, vehicles.size());
+
+            Totals exitTotals = totals(outDays.epochDay(outTime), parkingType);
+            exitTotals.exits++;
+            exitTotals.revenue += price;
+            exitTotals.totalStayMs += outTime - inTime;
+        }
+
+        /**
+         * Count the vehicles still parked at the start of each day up to a day, and pass on the days before it
+         */
+        private void advanceTo(long day) {
+            if (currentDay != Long.MIN_VALUE) {
+                for (long nextDay = currentDay + 1; nextDay <= day && !isEmpty(); nextDay++) {
+                    long dayStart = startOf(LocalDate.ofEpochDay(nextDay), zone);
+                    for (ParkingType parkingType : ParkingType.values()) {
+                        LongHeap vehicles = parked[parkingType.ordinal()];
+                        while (!vehicles.isEmpty() && vehicles.peek() <= dayStart) {
+                            vehicles.poll();
+                        }
+                        if (!vehicles.isEmpty()) {
+                            Totals dayTotals = totals(nextDay, parkingType);
+                            dayTotals.peakOccupancy = Math.max(dayTotals.peakOccupancy, vehicles.size());
+                        }
+                    }
+                }
+            }
+            Map.Entry<Long, Totals[]> completeDay;
+            while ((completeDay = days.firstEntry()) != null && completeDay.getKey() < day) {
+                days.pollFirstEntry();
+                if (completeDay.getKey() >= fromDay && completeDay.getKey() < toDay) {
+                    for (ParkingType parkingType : ParkingType.values()) {
+                        Totals dayTotals = completeDay.getValue()[parkingType.ordinal()];
+                        if (dayTotals != null) {
+                            consumer.accept(new DailyUsage(LocalDate.ofEpochDay(completeDay.getKey()), parkingType,
+                                    dayTotals.exits, dayTotals.revenue, dayTotals.totalStayMs, dayTotals.peakOccupancy));
+                        }
+                    }
+                }
+            }
+            currentDay = day;
+        }
+
+        private boolean isEmpty() {
+            for (LongHeap vehicles : parked) {
+                if (!vehicles.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void finish() {
+            if (currentDay != Long.MIN_VALUE) {
+                advanceTo(toDay);
+            }
+        }
+
+        private Totals totals(long day, ParkingType parkingType) {
+            Totals[] dayTotals = days.computeIfAbsent(day, key -> new Totals[ParkingType.values().length]);
+            Totals totals = dayTotals[parkingType.ordinal()];
+            if (totals == null) {
+                totals = new Totals();
+                dayTotals[parkingType.ordinal()] = totals;
+            }
+            return totals;
+        }
+    }
+
+    private static class Totals {
+        private long exits;
+        private long revenue;
+        private long totalStayMs;
+        private int peakOccupancy;
+    }
+
+    /**
+     * Epoch day of the last day looked up, most tickets enter and leave on the day of the previous one
+     */
+    private static class DayCache {
+        private final ZoneId zone;
+        private long day;
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+
+        private DayCache(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        private long epochDay(long time) {
+            if (time < dayStart || time >= dayEnd) {
+                LocalDate date = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+                day = date.toEpochDay();
+                dayStart = startOf(date, zone);
+                dayEnd = startOf(date.plusDays(1), zone);
+            }
+            return day;
+        }
+    }
+
+    /**
+     * Binary min heap of longs, with no boxing
+     */
+    private static class LongHeap {
+        private long[] values = new long[16];
+        private int size;
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private long peek() {
+            return values[0];
+        }
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int child = size++;
+            while (child > 0) {
+                int parent = (child - 1) / 2;
+                if (values[parent] <= value) {
+                    break;
+                }
+                values[child] = values[parent];
+                child = parent;
+            }
+            values[child] = value;
+        }
+
+        private long poll() {
+            long first = values[0];
+            long last = values[--size];
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && values[child + 1] < values[child]) {
+                    child++;
+                }
+                if (last <= values[child]) {
+                    break;
+                }
+                values[parent] = values[child];
+                parent = child;
+            }
+            values[parent] = last;
+            return first;
+        }
+    }
+}
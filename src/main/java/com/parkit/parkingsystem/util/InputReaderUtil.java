@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.util;
 
+import com.parkit.parkingsystem.model.VehicleRegNumber;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -27,7 +28,7 @@ public class InputReaderUtil {
             if(vehicleRegNumber == null || vehicleRegNumber.trim().length()==0) {
                 throw new IllegalArgumentException("Invalid input provided");
             }
-            return vehicleRegNumber;
+            return VehicleRegNumber.validate(vehicleRegNumber);
         }catch(Exception e){
             logger.error("Error while reading user input from Shell", e);
             System.out.println("Error reading input. Please enter a valid string for vehicle registration number");
@@ -0,0 +1,311 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread safe map with primitive long keys, such as packed vehicle registration numbers.
+ * Each of a fixed number of segments is an open addressing table of a long array and a value array,
+ * written under its own lock and read optimistically, so an entry costs two array slots instead of a node
+ * and a boxed key, and a lookup neither allocates nor writes to shared memory. Null values are not supported.
+ */
+public class LongKeyMap<V> {
+
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+
+    public LongKeyMap() {
+        @SuppressWarnings("unchecked")
+        Segment<V>[] newSegments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        segments = newSegments;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * @param key
+     * @return the value of the key, or null if there is none
+     */
+    public V get(long key) {
+        long hash = hash(key);
+        Segment<V> segment = segmentOf(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            V value = segment.get(key, hash);
+            if (segment.lock.validate(stamp)) {
+                return value;
+            }
+        }
+        //written meanwhile, read again under the read lock
+        stamp = segment.lock.readLock();
+        try {
+            return segment.get(key, hash);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param key
+     * @param value not null
+     * @return the previous value of the key, or null if there was none
+     */
+    public V put(long key, V value) {
+        long hash = hash(key);
+        Segment<V> segment = segmentOf(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.put(key, hash, value);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param key
+     * @return the removed value, or null if there was none
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        Segment<V> segment = segmentOf(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(key, hash, null);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the value of a key only if it is the given one, compared by identity
+     *
+     * @param key
+     * @param value
+     * @return true if it has been removed
+     */
+    public boolean remove(long key, V value) {
+        long hash = hash(key);
+        Segment<V> segment = segmentOf(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(key, hash, value) != null;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace the value of a key atomically, the function runs under the lock of the segment and must be short
+     *
+     * @param key
+     * @param remapping given the current value or null, returns the new value or null to remove the key
+     * @return the new value
+     */
+    public V compute(long key, UnaryOperator<V> remapping) {
+        long hash = hash(key);
+        Segment<V> segment = segmentOf(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            V value = remapping.apply(segment.get(key, hash));
+            if (value == null) {
+                segment.remove(key, hash, null);
+            } else {
+                segment.put(key, hash, value);
+            }
+            return value;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the entries whose value matches, one segment at a time, the filter runs under the lock of the segment
+     *
+     * @param filter
+     * @return the number of removed entries
+     */
+    public int removeIf(Predicate<V> filter) {
+        int removed = 0;
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                removed += segment.removeIf(filter);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.clear();
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Segment<V> segmentOf(long hash) {
+        //the high bits pick the segment, the low bits the slot
+        return segments[(int) (hash >>> 60)];
+    }
+
+    //finalizer of MurmurHash3, packed registration numbers differ in few bits
+    private static long hash(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Linear probing table, deletions shift the next entries back so no tombstone is left
+     */
+    private static class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private Object[] values = new Object[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        /**
+         * Probe the table, it may be written at the same time by an optimistic reader, whose result is then
+         * discarded, so the probe never fails on a table being resized and stops after a full turn
+         */
+        @SuppressWarnings("unchecked")
+        private V get(long key, long hash) {
+            long[] currentKeys = keys;
+            Object[] currentValues = values;
+            if (currentKeys.length != currentValues.length) {
+                return null;
+            }
+            int mask = currentKeys.length - 1;
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes < currentKeys.length; probes++) {
+                Object value = currentValues[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (currentKeys[slot] == key) {
+                    return (V) value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V put(long key, long hash, V value) {
+            if (value == null) {
+                throw new NullPointerException("Null values are not supported");
+            }
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    V previous = (V) values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            //kept at most three quarters full, so probe sequences stay short
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V remove(long key, long hash, V expected) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    break;
+                }
+            }
+            V removed = (V) values[slot];
+            if (removed == null || (expected != null && removed != expected)) {
+                return null;
+            }
+            //move back the entries of the same probe sequence over the freed slot
+            int free = slot;
+            for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = (int) hash(keys[next]) & mask;
+                //the entry can move if its home slot is not between the free slot and its slot, cyclically
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    keys[free] = keys[next];
+                    values[free] = values[next];
+                    free = next;
+                }
+            }
+            values[free] = null;
+            size--;
+            return removed;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int removeIf(Predicate<V> filter) {
+            //removals move entries back, so the keys are collected first
+            long[] matching = new long[size];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null && filter.test((V) values[i])) {
+                    matching[count++] = keys[i];
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                remove(matching[i], hash(matching[i]), null);
+            }
+            return count;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) hash(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void clear() {
+            keys = new long[INITIAL_SEGMENT_CAPACITY];
+            values = new Object[INITIAL_SEGMENT_CAPACITY];
+            size = 0;
+        }
+    }
+}
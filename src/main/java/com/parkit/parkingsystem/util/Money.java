@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money as a long count of minor units, thousandths of the currency unit, so that fares are exact
+ * and any number of them add up without drift. Every division rounds half up, away from zero.
+ */
+public final class Money {
+
+    public static final int SCALE = 3;
+    public static final long MINOR_UNITS = 1000;
+
+    private Money() {
+    }
+
+    /**
+     * @param amount in currency units
+     * @return the amount in minor units, rounded half up
+     */
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * MINOR_UNITS);
+    }
+
+    /**
+     * @param minorUnits
+     * @return the amount in currency units, the nearest double to the exact amount
+     */
+    public static double toUnits(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS;
+    }
+
+    /**
+     * Compute amount * numerator / denominator without an intermediate rounding
+     *
+     * @param amount      in minor units
+     * @param numerator
+     * @param denominator positive
+     * @return the result in minor units, rounded half away from zero
+     */
+    public static long multiply(long amount, long numerator, long denominator) {
+        return divide(Math.multiplyExact(amount, numerator), denominator);
+    }
+
+    /**
+     * @param dividend
+     * @param divisor  positive
+     * @return dividend / divisor rounded half away from zero
+     */
+    public static long divide(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * @param amount in currency units, may be null
+     * @return the amount in minor units rounded half up, 0 for null
+     */
+    public static long fromBigDecimal(BigDecimal amount) {
+        return (amount == null) ? 0 : amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
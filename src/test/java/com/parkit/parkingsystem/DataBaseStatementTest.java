@@ -0,0 +1,182 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Statements and result sets of the DAOs are closed on every path, including failures
+ */
+@ExtendWith(MockitoExtension.class)
+public class DataBaseStatementTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement preparedStatement;
+    @Mock
+    private ResultSet resultSet;
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws SQLException {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.parkingSpotDAO = parkingSpotDAO;
+    }
+
+    private Ticket pricedTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setId(1);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setPrice(1.5);
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setOutTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    public void closeTicketShouldCloseStatementWhenUpdateFailsTest() throws SQLException {
+        when(connection.prepareStatement(DBConstants.CLOSE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("lock wait timeout"));
+
+        assertFalse(ticketDAO.closeTicket(pricedTicket()));
+
+        verify(preparedStatement).close();
+        verify(dataBaseConfig).rollback(connection);
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void saveIncomingTicketShouldSucceedWhenCacheFailsAfterCommitTest() throws SQLException {
+        ParkingSpotDAO claimingParkingSpotDAO = mock(ParkingSpotDAO.class);
+        ticketDAO.parkingSpotDAO = claimingParkingSpotDAO;
+        ticketDAO.recurringCustomerCache = mock(RecurringCustomerCache.class);
+        when(claimingParkingSpotDAO.claimNextAvailableSlot(connection, ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        doThrow(new IllegalStateException("cache failure")).when(ticketDAO.recurringCustomerCache).increment("ABCDEF");
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+
+        assertTrue(ticketDAO.saveIncomingTicket(ticket, ParkingType.CAR));
+
+        verify(connection).commit();
+        verify(dataBaseConfig, never()).rollback(connection);
+        verify(claimingParkingSpotDAO, never()).updateAvailabilityIndex(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void saveIncomingTicketsShouldSucceedWhenCacheFailsAfterCommitTest() throws SQLException {
+        ParkingSpotDAO claimingParkingSpotDAO = mock(ParkingSpotDAO.class);
+        ticketDAO.parkingSpotDAO = claimingParkingSpotDAO;
+        ticketDAO.recurringCustomerCache = mock(RecurringCustomerCache.class);
+        when(claimingParkingSpotDAO.claimParkings(eq(connection), anyList())).thenReturn(new int[]{1});
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+        doThrow(new IllegalStateException("cache failure")).when(ticketDAO.recurringCustomerCache).increment("ABCDEF");
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+
+        assertTrue(ticketDAO.saveIncomingTickets(Collections.singletonList(ticket)));
+
+        verify(connection).commit();
+        verify(dataBaseConfig, never()).rollback(connection);
+        verify(claimingParkingSpotDAO, never()).updateAvailabilityIndex(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void closeTicketShouldEvictIndexedTicketWhenAlreadyClosedTest() throws SQLException {
+        PreparedStatement loadStatement = mock(PreparedStatement.class);
+        ResultSet openTickets = mock(ResultSet.class);
+        doReturn(loadStatement).when(connection).prepareStatement(DBConstants.GET_OPEN_TICKETS);
+        when(loadStatement.executeQuery()).thenReturn(openTickets);
+        when(openTickets.next()).thenReturn(true, false);
+        doReturn("ABCDEF").when(openTickets).getString(7);
+        doReturn(1).when(openTickets).getInt(1);
+        doReturn("CAR").when(openTickets).getString(6);
+        doReturn(42).when(openTickets).getInt(2);
+        assertTrue(ticketDAO.loadOpenTickets());
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.CLOSE_TICKET);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.GET_OPEN_TICKET);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        Ticket ticket = pricedTicket();
+        ticket.setId(42);
+        ticket.setVehicleRegNumber("ABCDEF");
+
+        assertFalse(ticketDAO.closeTicket(ticket));
+
+        //closed by another exit, so read again from database instead of the stale index entry
+        assertNull(ticketDAO.getOpenTicket("ABCDEF"));
+        verify(preparedStatement).executeQuery();
+    }
+
+    @Test
+    public void getOpenTicketShouldCloseResultSetAndStatementWhenReadFailsTest() throws SQLException {
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenThrow(new SQLException("connection reset"));
+
+        assertEquals(null, ticketDAO.getOpenTicket("ABCDEF"));
+
+        verify(resultSet).close();
+        verify(preparedStatement).close();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void claimNextAvailableSlotShouldReuseOneStatementForEveryCandidateTest() throws SQLException {
+        PreparedStatement selectStatement = mock(PreparedStatement.class);
+        lenient().when(connection.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT)).thenReturn(selectStatement);
+        when(selectStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        lenient().when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(preparedStatement);
+        //spot 1 is taken by another gate between the select and the claim
+        when(preparedStatement.executeUpdate()).thenReturn(0, 1);
+
+        assertEquals(2, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+
+        verify(connection, times(1)).prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+        verify(preparedStatement, times(2)).executeUpdate();
+        verify(preparedStatement).close();
+        verify(selectStatement, times(2)).close();
+        verify(resultSet, times(2)).close();
+    }
+}
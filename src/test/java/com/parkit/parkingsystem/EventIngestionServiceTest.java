@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.IngestionReport;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.EventIngestionService;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EventIngestionServiceTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private IngestionReport ingest(String events, int lanes, int laneCapacity) throws Exception {
+        EventIngestionService eventIngestionService = new EventIngestionService(parkingService, lanes, laneCapacity);
+        return eventIngestionService.ingest(new BufferedReader(new StringReader(events)));
+    }
+
+    @Test
+    public void ingestShouldCountEveryOutcomeTest() throws Exception {
+        //no bike spot left
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class)))
+                .thenAnswer(invocation -> new EntryResult(invocation.getArgument(1), invocation.getArgument(0) == ParkingType.CAR
+                        ? EntryResult.Status.PARKED : EntryResult.Status.NO_SPOT_AVAILABLE, null));
+        when(parkingService.processExitingVehicle(anyString(), any(Date.class)))
+                .thenAnswer(invocation -> "CAR-1".equals(invocation.getArgument(0))
+                        ? new ExitResult("CAR-1", ExitResult.Status.SETTLED, new Ticket())
+                        : new ExitResult(invocation.getArgument(0), ExitResult.Status.NO_OPEN_TICKET, null));
+
+        IngestionReport report = ingest("# gate 1\n"
+                + "IN,CAR,CAR-1,1000\n"
+                + "\n"
+                + "in, bike ,BIKE-1\n"
+                + "OUT,CAR-1,3601000\n"
+                + "OUT,UNKNOWN\n"
+                + "IN,TRUCK,TRUCK-1\n"
+                + "OUT,CAR-1,not a time\n"
+                + "PARK,CAR-2\n", 2, 1);
+
+        assertEquals(1, report.getEntries());
+        assertEquals(1, report.getRejectedEntries());
+        assertEquals(1, report.getExits());
+        assertEquals(1, report.getUnmatchedExits());
+        assertEquals(0, report.getFailures());
+        assertEquals(3, report.getParseErrors());
+        verify(parkingService).processIncomingVehicle(ParkingType.CAR, "CAR-1", new Date(1000));
+        verify(parkingService).processExitingVehicle("CAR-1", new Date(3601000));
+    }
+
+    @Test
+    public void ingestShouldKeepEventsOfAVehicleInOrderTest() throws Exception {
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class)))
+                .thenAnswer(invocation -> new EntryResult(invocation.getArgument(1), EntryResult.Status.PARKED, new Ticket()));
+        when(parkingService.processExitingVehicle(anyString(), any(Date.class)))
+                .thenAnswer(invocation -> new ExitResult(invocation.getArgument(0), ExitResult.Status.SETTLED, new Ticket()));
+
+        StringBuilder events = new StringBuilder();
+        for (int round = 0; round < 50; round++) {
+            for (int vehicle = 0; vehicle < 20; vehicle++) {
+                events.append("IN,CAR,V").append(vehicle).append(',').append(round * 2).append('\n');
+                //the same vehicle, typed in lower case at the exit
+                events.append("OUT,v").append(vehicle).append(',').append(round * 2 + 1).append('\n');
+            }
+        }
+
+        IngestionReport report = ingest(events.toString(), 4, 8);
+
+        assertEquals(1000, report.getEntries());
+        assertEquals(1000, report.getExits());
+        InOrder inOrder = inOrder(parkingService);
+        for (int round = 0; round < 50; round++) {
+            inOrder.verify(parkingService).processIncomingVehicle(ParkingType.CAR, "V7", new Date(round * 2));
+            inOrder.verify(parkingService).processExitingVehicle("v7", new Date(round * 2 + 1));
+        }
+    }
+
+    @Test
+    public void ingestShouldCountFailedEventsTest() throws Exception {
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class)))
+                .thenThrow(new RuntimeException("database down"));
+        when(parkingService.processExitingVehicle(anyString(), any(Date.class)))
+                .thenReturn(new ExitResult("CAR-1", ExitResult.Status.FAILED, new Ticket()));
+
+        IngestionReport report = ingest("IN,CAR,CAR-1\nOUT,CAR-1\n", 1, 1);
+
+        assertEquals(0, report.getEntries());
+        assertEquals(0, report.getExits());
+        assertEquals(2, report.getFailures());
+    }
+}
@@ -0,0 +1,179 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class GateServerTest {
+
+    private static final long IN_TIME = 1_700_000_000_000L;
+
+    private GateServer gateServer;
+
+    @BeforeEach
+    private void setUpPerTest() throws IOException {
+        InMemoryParkingSpotRepository parkingSpotRepository = new InMemoryParkingSpotRepository(3, 2);
+        ParkingService parkingService = new ParkingService(null, parkingSpotRepository, new InMemoryTicketRepository(parkingSpotRepository));
+        gateServer = new GateServer(parkingService, 0, GateServer.newLaneExecutor(4));
+    }
+
+    @AfterEach
+    private void tearDownPerTest() {
+        gateServer.close();
+    }
+
+    private String[] post(String pathAndQuery) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + gateServer.getPort() + pathAndQuery).openConnection();
+        connection.setRequestMethod("POST");
+        int status = connection.getResponseCode();
+        InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return new String[]{String.valueOf(status), reader.lines().collect(Collectors.joining("\n"))};
+        }
+    }
+
+    @Test
+    public void entryThenExitIsSettled() throws IOException {
+        String[] entry = post("/entry?type=car&vehicle=ABCDEF&time=" + IN_TIME);
+        String[] exit = post("/exit?vehicle=ABCDEF&time=" + (IN_TIME + 60 * 60 * 1000));
+
+        assertEquals("200", entry[0]);
+        assertEquals("spot=1\ninTime=" + IN_TIME, entry[1]);
+        assertEquals("200", exit[0]);
+        assertTrue(exit[1].startsWith("price=1.5\n"));
+    }
+
+    @Test
+    public void entryWhenParkingFullIsUnavailable() throws IOException {
+        assertEquals("200", post("/entry?type=BIKE&vehicle=BIKE-1")[0]);
+        assertEquals("200", post("/entry?type=BIKE&vehicle=BIKE-2")[0]);
+
+        assertEquals("503", post("/entry?type=BIKE&vehicle=BIKE-3")[0]);
+    }
+
+    @Test
+    public void entryNotSavedIsAnError() throws IOException {
+        ParkingService parkingService = mock(ParkingService.class);
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class)))
+                .thenReturn(new EntryResult("ABCDEF", EntryResult.Status.FAILED, null));
+        gateServer.close();
+        gateServer = new GateServer(parkingService, 0, GateServer.newLaneExecutor(1));
+
+        String[] entry = post("/entry?type=CAR&vehicle=ABCDEF");
+
+        assertEquals("500", entry[0]);
+        assertEquals("error=unable to save ticket", entry[1]);
+    }
+
+    @Test
+    public void requestsBeyondTheQueueAreUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ParkingService parkingService = mock(ParkingService.class);
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class))).thenAnswer(invocation -> {
+            release.await();
+            return new EntryResult(invocation.getArgument(1), EntryResult.Status.FAILED, null);
+        });
+        gateServer.close();
+        //one request running and 4 queued
+        gateServer = new GateServer(parkingService, 0, GateServer.newLaneExecutor(1));
+        int requests = 2 + GateServer.QUEUED_REQUESTS_PER_LANE + 3;
+        ExecutorService lanes = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<String[]>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String vehicleRegNumber = "LANE" + i;
+                responses.add(lanes.submit(() -> post("/entry?type=CAR&vehicle=" + vehicleRegNumber)));
+            }
+            //the rejected ones are answered while the others wait
+            int waiting = 1 + GateServer.QUEUED_REQUESTS_PER_LANE;
+            long deadline = System.currentTimeMillis() + 10000;
+            while (responses.stream().filter(Future::isDone).count() < requests - waiting && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            int unavailable = 0;
+            for (Future<String[]> response : responses) {
+                if (response.isDone() && "503".equals(response.get()[0])) {
+                    unavailable++;
+                }
+            }
+            release.countDown();
+            int failed = 0;
+            for (Future<String[]> response : responses) {
+                if ("500".equals(response.get()[0])) {
+                    failed++;
+                }
+            }
+
+            assertEquals(waiting, failed);
+            assertEquals(requests - waiting, unavailable);
+        } finally {
+            release.countDown();
+            lanes.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidRequestsAreRejected() throws IOException {
+        assertEquals("400", post("/entry?type=TRUCK&vehicle=ABCDEF")[0]);
+        assertEquals("400", post("/entry?type=CAR")[0]);
+        assertEquals("400", post("/entry?type=CAR&vehicle=ABCDEFGHIJK")[0]);
+        assertEquals("400", post("/exit?vehicle=ABCDEF&time=now")[0]);
+        assertEquals("404", post("/exit?vehicle=ABCDEF")[0]);
+
+        HttpURLConnection get = (HttpURLConnection) new URL("http://127.0.0.1:" + gateServer.getPort() + "/entry").openConnection();
+        assertEquals(405, get.getResponseCode());
+    }
+
+    @Test
+    public void concurrentLanesGetDistinctSpots() throws Exception {
+        ExecutorService lanes = Executors.newFixedThreadPool(5);
+        try {
+            List<Callable<String[]>> entries = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String vehicleRegNumber = "LANE" + i;
+                entries.add(() -> post("/entry?type=CAR&vehicle=" + vehicleRegNumber));
+            }
+            List<String> spots = new ArrayList<>();
+            int full = 0;
+            for (Future<String[]> response : lanes.invokeAll(entries)) {
+                if ("503".equals(response.get()[0])) {
+                    full++;
+                } else {
+                    spots.add(response.get()[1].split("\n")[0]);
+                }
+            }
+
+            assertEquals(3, full);
+            assertEquals(3, spots.stream().distinct().count());
+        } finally {
+            lanes.shutdown();
+        }
+    }
+}
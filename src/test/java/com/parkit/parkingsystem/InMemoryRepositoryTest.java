@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The entry and exit workflows on the in memory storage, with no database
+ */
+public class InMemoryRepositoryTest {
+
+    private InMemoryParkingSpotRepository parkingSpotRepository;
+    private InMemoryTicketRepository ticketRepository;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        //the parking of Data.sql: spots 1 to 3 for cars, 4 and 5 for bikes
+        parkingSpotRepository = new InMemoryParkingSpotRepository(3, 2);
+        ticketRepository = new InMemoryTicketRepository(parkingSpotRepository);
+        parkingService = new ParkingService(null, parkingSpotRepository, ticketRepository);
+    }
+
+    @Test
+    public void processIncomingVehicleShouldTakeLowestSpotOfTheTypeTest() {
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.BIKE, "ABCDEF", new Date()).getTicket();
+
+        assertEquals(4, ticket.getParkingSpot().getId());
+        assertEquals(1, ticketRepository.getCountOfPreviousTickets("ABCDEF"));
+        assertEquals(ticket.getId(), ticketRepository.getOpenTicket("ABCDEF").getId());
+        assertEquals(5, parkingSpotRepository.getNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(1, parkingSpotRepository.countAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void processIncomingVehicleWhenParkingFullShouldNotSaveTicketTest() {
+        assertEquals(EntryResult.Status.PARKED, parkingService.processIncomingVehicle(ParkingType.BIKE, "BIKE-1", new Date()).getStatus());
+        assertEquals(EntryResult.Status.PARKED, parkingService.processIncomingVehicle(ParkingType.BIKE, "BIKE-2", new Date()).getStatus());
+
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, parkingService.processIncomingVehicle(ParkingType.BIKE, "BIKE-3", new Date()).getStatus());
+        assertEquals(0, ticketRepository.getCountOfPreviousTickets("BIKE-3"));
+    }
+
+    @Test
+    public void processExitingVehicleShouldPriceTicketAndReleaseSpotTest() {
+        Date inTime = new Date(System.currentTimeMillis() - (60 * 60 * 1000));
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", inTime);
+        Date outTime = new Date();
+
+        ExitResult exitResult = parkingService.processExitingVehicle("ABCDEF", outTime);
+
+        assertEquals(ExitResult.Status.SETTLED, exitResult.getStatus());
+        Ticket ticketAfterExit = ticketRepository.getTicket("ABCDEF");
+        assertThat(ticketAfterExit.getPrice()).isCloseTo(Fare.CAR_RATE_PER_HOUR, withinPercentage(1));
+        assertEquals(outTime, ticketAfterExit.getOutTime());
+        assertNull(ticketRepository.getOpenTicket("ABCDEF"));
+        assertEquals(3, parkingSpotRepository.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void closeTicketTwiceShouldOnlyCloseItOnceTest() {
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        Ticket ticket = ticketRepository.getOpenTicket("ABCDEF");
+        ticket.setOutTime(new Date());
+        Ticket sameTicket = ticketRepository.getOpenTicket("ABCDEF");
+        sameTicket.setOutTime(new Date());
+
+        assertTrue(ticketRepository.closeTicket(ticket));
+        assertFalse(ticketRepository.closeTicket(sameTicket));
+        assertEquals(3, parkingSpotRepository.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void recurringVehicleShouldGetDiscountTest() {
+        Date inTime = new Date(System.currentTimeMillis() - (60 * 60 * 1000));
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", inTime);
+        parkingService.processExitingVehicle("ABCDEF", new Date());
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", inTime);
+
+        ExitResult exitResult = parkingService.processExitingVehicle("ABCDEF", new Date());
+
+        assertThat(exitResult.getTicket().getPrice()).isCloseTo(Fare.CAR_RATE_PER_HOUR * 0.95, withinPercentage(1));
+    }
+
+    @Test
+    public void concurrentEntriesShouldNeverShareASpotTest() throws InterruptedException {
+        int numberOfSpots = 20000;
+        int numberOfGates = 16;
+        InMemoryParkingSpotRepository largeParking = new InMemoryParkingSpotRepository(numberOfSpots, 0);
+        InMemoryTicketRepository largeParkingTickets = new InMemoryTicketRepository(largeParking);
+        Set<Integer> takenSpots = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger vehicles = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(numberOfGates);
+        for (int gate = 0; gate < numberOfGates; gate++) {
+            gates.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (true) {
+                    Ticket ticket = new Ticket();
+                    ticket.setVehicleRegNumber("V" + vehicles.incrementAndGet());
+                    ticket.setInTime(new Date());
+                    if (!largeParkingTickets.saveIncomingTicket(ticket, ParkingType.CAR)) {
+                        return;
+                    }
+                    if (!takenSpots.add(ticket.getParkingSpot().getId())) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        gates.shutdown();
+        assertTrue(gates.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, duplicates.get());
+        assertEquals(numberOfSpots, takenSpots.size());
+        assertEquals(-1, largeParking.getNextAvailableSlot(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,91 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.MetricsEndpoint;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.OperationTimer;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void timerReportsPercentilesOfRecordedLatencies() {
+        OperationTimer timer = new MetricsRegistry(false).timer("test");
+        for (int i = 1; i <= 1000; i++) {
+            //latencies of 1 to 1000 microseconds
+            timer.recordNanos(i * 1000L);
+        }
+
+        assertEquals(1000, timer.getCount());
+        assertEquals(500, timer.getP50Micros(), 5);
+        assertEquals(990, timer.getP99Micros(), 10);
+        assertEquals(1000, timer.getMaxMicros(), 1);
+    }
+
+    @Test
+    public void timedRepositoryCountsCallsAndErrors() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        TicketRepository ticketRepository = registry.timed(TicketRepository.class,
+                new InMemoryTicketRepository(new InMemoryParkingSpotRepository(1, 0)));
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+
+        assertTrue(ticketRepository.saveIncomingTicket(ticket, ParkingType.CAR));
+        assertNotNull(ticketRepository.getOpenTicket("ABCDEF"));
+        assertThrows(NullPointerException.class, () -> ticketRepository.closeTicket(null));
+
+        assertEquals(1, registry.timer("TicketRepository.saveIncomingTicket").getCount());
+        assertEquals(1, registry.timer("TicketRepository.getOpenTicket").getCount());
+        assertEquals(1, registry.timer("TicketRepository.closeTicket").getErrorCount());
+    }
+
+    @Test
+    public void endpointServesPrometheusText() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        registry.timer("ParkingService.processIncomingVehicle").recordNanos(2000);
+
+        String body;
+        try (MetricsEndpoint endpoint = new MetricsEndpoint(registry, 0)) {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + endpoint.getPort()
+                    + MetricsEndpoint.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                body = reader.lines().collect(Collectors.joining("\n"));
+            }
+        }
+
+        assertTrue(body.contains("# TYPE parkingsystem_operation_seconds summary"));
+        assertTrue(body.contains("parkingsystem_operation_seconds{operation=\"ParkingService.processIncomingVehicle\",quantile=\"0.999\"}"));
+        assertTrue(body.contains("parkingsystem_operation_seconds_count{operation=\"ParkingService.processIncomingVehicle\"} 1"));
+        assertTrue(body.contains("parkingsystem_operation_errors_total{operation=\"ParkingService.processIncomingVehicle\"} 0"));
+    }
+
+    @Test
+    public void defaultRegistryTimersAreExportedInJmx() throws Exception {
+        MetricsRegistry.getDefault().timer("MetricsRegistryTest.jmx").record(System.nanoTime());
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        Object count = mBeanServer.getAttribute(new ObjectName(MetricsRegistry.JMX_DOMAIN
+                + ":type=OperationTimer,name=" + ObjectName.quote("MetricsRegistryTest.jmx")), "Count");
+
+        assertEquals(1L, count);
+    }
+}
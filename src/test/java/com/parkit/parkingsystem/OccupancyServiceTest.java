@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.Occupancy;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.OccupancyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OccupancyServiceTest {
+
+    private InMemoryParkingSpotRepository parkingSpotRepository;
+    private OccupancyService occupancyService;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        parkingSpotRepository = new InMemoryParkingSpotRepository(3, 2);
+        occupancyService = new OccupancyService(parkingSpotRepository::getAvailabilityIndex, 10);
+    }
+
+    @AfterEach
+    private void tearDownPerTest() {
+        occupancyService.close();
+    }
+
+    @Test
+    public void availableSpotsFollowClaimsAndUpdates() {
+        parkingSpotRepository.claimNextAvailableSlot(ParkingType.CAR);
+        parkingSpotRepository.updateParking(new ParkingSpot(4, ParkingType.BIKE, false));
+
+        assertEquals(2, occupancyService.getAvailableSpots(ParkingType.CAR));
+        assertEquals(1, occupancyService.getAvailableSpots(ParkingType.BIKE));
+
+        parkingSpotRepository.releaseSlot(1);
+
+        assertEquals(3, occupancyService.getAvailableSpots(ParkingType.CAR));
+    }
+
+    @Test
+    public void occupanciesArePerFacilityAndType() {
+        ParkingSpotIndex index = new ParkingSpotIndex();
+        index.update(new ParkingSpot(1, ParkingType.CAR, true, 1, 0));
+        index.update(new ParkingSpot(2, ParkingType.CAR, false, 1, 1));
+        index.update(new ParkingSpot(3, ParkingType.CAR, true, 2, 0));
+        OccupancyService garagesOccupancy = new OccupancyService(() -> index);
+
+        List<Occupancy> occupancies = garagesOccupancy.getOccupancies();
+
+        assertEquals(2, occupancies.size());
+        assertEquals(1, occupancies.get(0).getFacilityId());
+        assertEquals(1, occupancies.get(0).getAvailableSpots());
+        assertEquals(1, occupancies.get(0).getOccupiedSpots());
+        assertEquals(2, occupancies.get(1).getFacilityId());
+        assertEquals(1, garagesOccupancy.getAvailableSpots(2, ParkingType.CAR));
+    }
+
+    @Test
+    public void subscriberGetsCurrentCountsThenChanges() throws InterruptedException {
+        BlockingQueue<Occupancy> pushed = new LinkedBlockingQueue<>();
+        occupancyService.subscribe(pushed::add);
+
+        //one push per parking type on subscription
+        assertNotNull(pushed.poll(5, TimeUnit.SECONDS));
+        assertNotNull(pushed.poll(5, TimeUnit.SECONDS));
+        parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE);
+
+        Occupancy change = pushed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(change);
+        assertEquals(ParkingType.BIKE, change.getParkingType());
+        assertEquals(1, change.getAvailableSpots());
+        assertTrue(pushed.poll(50, TimeUnit.MILLISECONDS) == null);
+    }
+
+    @Test
+    public void readsWithoutIndexReturnMinusOne() {
+        OccupancyService notLoaded = new OccupancyService(() -> null);
+
+        assertEquals(-1, notLoaded.getAvailableSpots(ParkingType.CAR));
+        assertTrue(notLoaded.getOccupancies().isEmpty());
+    }
+}
@@ -1,11 +1,17 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.VehicleExit;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TariffTable;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,9 +20,16 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,10 +54,8 @@ public class ParkingServiceTest {
             ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
             ticket.setParkingSpot(parkingSpot);
             ticket.setVehicleRegNumber("ABCDEF");
-            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-            lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
-
-            lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+            lenient().when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
+            lenient().when(ticketDAO.closeTicket(any(Ticket.class))).thenReturn(true);
 
             parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
         } catch (Exception e) {
@@ -53,14 +64,95 @@ public class ParkingServiceTest {
         }
     }
 
+    @Test
+    public void processIncomingVehicleShouldSaveTicketOnClaimedSpotTest() {
+        //given
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class), eq(ParkingType.CAR))).thenAnswer(invocation -> {
+            Ticket savedTicket = invocation.getArgument(0);
+            savedTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            return true;
+        });
+        //when
+        parkingService.processIncomingVehicle();
+        //then the spot is claimed within the ticket transaction
+        verify(ticketDAO, Mockito.times(1)).saveIncomingTicket(any(Ticket.class), eq(ParkingType.CAR));
+        verify(parkingSpotDAO, Mockito.never()).updateParking(any(ParkingSpot.class));
+    }
+
+    @Test
+    public void processIncomingVehicleWhenTicketNotSavedShouldFailTest() {
+        //given
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class), eq(ParkingType.CAR))).thenThrow(new IllegalStateException("database down"));
+        //when
+        EntryResult entryResult = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", new Date());
+        //then a failure is not reported as a full parking
+        assertEquals(EntryResult.Status.FAILED, entryResult.getStatus());
+        assertNull(entryResult.getTicket());
+    }
+
+    @Test
+    public void processIncomingVehicleWhenNoSpotAvailableShouldBeRejectedTest() {
+        //given
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class), eq(ParkingType.CAR))).thenReturn(false);
+        //when
+        EntryResult entryResult = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF", new Date());
+        //then
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, entryResult.getStatus());
+    }
+
+    @Test
+    public void processIncomingVehicleWithInvalidTypeShouldNotSaveTicketTest() {
+        //given
+        when(inputReaderUtil.readSelection()).thenReturn(3);
+        //when
+        parkingService.processIncomingVehicle();
+        //then
+        verify(ticketDAO, Mockito.never()).saveIncomingTicket(any(Ticket.class), any(ParkingType.class));
+    }
+
     @Test
     public void processExitingVehicleTest() {
         parkingService.processExitingVehicle();
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        //the fare and the spot release are written by one transaction
+        verify(ticketDAO, Mockito.times(1)).closeTicket(any(Ticket.class));
+        verify(ticketDAO, Mockito.never()).updateTicket(any(Ticket.class));
     }
 
 
 
+    @Test
+    public void processExitingVehicleWithoutTariffShouldFailTest() {
+        //given tariffs of cars only
+        FareCalculatorService fareCalculatorService = ParkingService.getFareCalculatorService();
+        TariffTable tariffTable = fareCalculatorService.getTariffTable();
+        fareCalculatorService.setTariffTable(new TariffTable.Builder(ZoneOffset.UTC).rate(ParkingType.CAR, 1.5).build());
+        Ticket ticket = new Ticket();
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("BIKE");
+        when(ticketDAO.getOpenTicket("BIKE")).thenReturn(ticket);
+        try {
+            //when
+            ExitResult exitResult = parkingService.processExitingVehicle("BIKE", new Date());
+            //then
+            assertEquals(ExitResult.Status.FAILED, exitResult.getStatus());
+            verify(ticketDAO, Mockito.never()).closeTicket(any(Ticket.class));
+        } finally {
+            fareCalculatorService.setTariffTable(tariffTable);
+        }
+    }
+
+    @Test
+    public void processExitingVehicleWithoutOpenTicketShouldNotCloseTicketTest() {
+        //given
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(null);
+        //when
+        parkingService.processExitingVehicle();
+        //then
+        verify(ticketDAO, Mockito.never()).closeTicket(any(Ticket.class));
+    }
+
     /**
      * Display welcome message with discount if one ticket found in DB
      */
@@ -86,8 +178,40 @@ public class ParkingServiceTest {
         //when
         parkingService.applyDiscount(ticket);
 
-        //then
+        //then the discount is only written when the ticket is closed
         verify(ticketDAO, Mockito.times(1)).getCountOfPreviousTickets(anyString());
-        verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
+        verify(ticketDAO, Mockito.never()).updateTicket(any(Ticket.class));
+        assertEquals(0.95, ticket.getPrice());
+    }
+
+    @Test
+    public void settleExitsShouldCloseOpenTicketsInOneBatchTest() {
+        //given one parked car, one unknown vehicle and one out time before the entry
+        Date now = new Date();
+        Ticket parkedTicket = new Ticket();
+        parkedTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        parkedTicket.setVehicleRegNumber("ABCDEF");
+        parkedTicket.setInTime(new Date(now.getTime() - (60 * 60 * 1000)));
+        Ticket futureTicket = new Ticket();
+        futureTicket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        futureTicket.setVehicleRegNumber("FUTURE");
+        futureTicket.setInTime(new Date(now.getTime() + (60 * 60 * 1000)));
+        Map<String, Ticket> openTickets = new HashMap<>();
+        openTickets.put("ABCDEF", parkedTicket);
+        openTickets.put("FUTURE", futureTicket);
+        when(ticketDAO.getOpenTickets(anyList())).thenReturn(openTickets);
+        when(ticketDAO.getCountsOfPreviousTickets(anyList())).thenReturn(Collections.singletonMap("ABCDEF", 2));
+        when(ticketDAO.closeTickets(anyList())).thenReturn(new boolean[]{true});
+        List<VehicleExit> vehicleExits = Arrays.asList(
+                new VehicleExit("ABCDEF", now), new VehicleExit("UNKNOWN", now), new VehicleExit("FUTURE", now));
+        //when
+        List<ExitResult> results = parkingService.settleExits(vehicleExits);
+        //then
+        assertEquals(ExitResult.Status.SETTLED, results.get(0).getStatus());
+        assertEquals(Fare.CAR_RATE_PER_HOUR * (1 - Fare.DISCOUNT_FOR_MORE_THAN_ONE_PREVIOUSLY_PARKING), results.get(0).getTicket().getPrice(), 0.001);
+        assertEquals(ExitResult.Status.NO_OPEN_TICKET, results.get(1).getStatus());
+        assertEquals(ExitResult.Status.INVALID_OUT_TIME, results.get(2).getStatus());
+        verify(ticketDAO, Mockito.times(1)).closeTickets(Collections.singletonList(parkedTicket));
+        verify(ticketDAO, Mockito.never()).closeTicket(any(Ticket.class));
     }
 }
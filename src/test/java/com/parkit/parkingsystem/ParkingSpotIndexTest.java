@@ -0,0 +1,165 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParkingSpotIndexTest {
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, true));
+        parkingSpotIndex.update(new ParkingSpot(2, ParkingType.CAR, true));
+        parkingSpotIndex.update(new ParkingSpot(3, ParkingType.CAR, false));
+        parkingSpotIndex.update(new ParkingSpot(4, ParkingType.BIKE, true));
+    }
+
+    @Test
+    public void getLowestAvailableShouldReturnLowestFreeSpotOfTheType() {
+        assertEquals(1, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(4, parkingSpotIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void getLowestAvailableWhenSpotTakenShouldReturnNextFreeSpot() {
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, false));
+
+        assertEquals(2, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void getLowestAvailableWhenSpotReleasedShouldReturnReleasedSpot() {
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, false));
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, true));
+
+        assertEquals(1, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void getLowestAvailableWhenTypeFullShouldReturnMinusOne() {
+        parkingSpotIndex.update(new ParkingSpot(4, ParkingType.BIKE, false));
+
+        assertEquals(-1, parkingSpotIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void claimLowestAvailableShouldSkipHeldSpotStillCountedAvailable() {
+        parkingSpotIndex.hold(1);
+
+        assertEquals(2, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(-1, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.countAvailable(ParkingType.CAR));
+        assertTrue(parkingSpotIndex.isAvailable(1));
+    }
+
+    @Test
+    public void heldSpotReleasedAndUnheldShouldBeClaimedAgain() {
+        //held while occupied, then released by its vehicle
+        parkingSpotIndex.hold(3);
+        parkingSpotIndex.update(new ParkingSpot(3, ParkingType.CAR, true));
+        parkingSpotIndex.update(new ParkingSpot(1, ParkingType.CAR, false));
+        parkingSpotIndex.update(new ParkingSpot(2, ParkingType.CAR, false));
+        assertEquals(-1, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.countAvailable(ParkingType.CAR));
+
+        parkingSpotIndex.unhold(3);
+
+        assertEquals(3, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(0, parkingSpotIndex.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void holdUpdaterShouldRunBeforeEachClaim() {
+        parkingSpotIndex.setHoldUpdater(() -> parkingSpotIndex.hold(1));
+
+        assertEquals(2, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(Collections.singleton(1), parkingSpotIndex.getHeldSpots());
+    }
+
+    @Test
+    public void claimLowestAvailableFromConcurrentGatesShouldNeverReturnSameSpotTwice() throws Exception {
+        //given a big lot and many gates claiming at once
+        int numberOfSpots = 20000;
+        int numberOfGates = 16;
+        ParkingSpotIndex bigLotIndex = new ParkingSpotIndex();
+        for (int number = 1; number <= numberOfSpots; number++) {
+            bigLotIndex.update(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        Set<Integer> claimedSpots = ConcurrentHashMap.newKeySet();
+        AtomicInteger doubleAllocations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(numberOfGates);
+        //when
+        for (int gate = 0; gate < numberOfGates; gate++) {
+            gates.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                int spot;
+                while ((spot = bigLotIndex.claimLowestAvailable(ParkingType.CAR)) > 0) {
+                    if (!claimedSpots.add(spot)) {
+                        doubleAllocations.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        gates.shutdown();
+        assertTrue(gates.awaitTermination(30, TimeUnit.SECONDS));
+        //then
+        assertEquals(0, doubleAllocations.get());
+        assertEquals(numberOfSpots, claimedSpots.size());
+        assertEquals(-1, bigLotIndex.getLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimLowestAvailableInFacilityShouldOnlyTakeSpotsOfThatFacilityLowestLevelFirst() {
+        ParkingSpotIndex garagesIndex = new ParkingSpotIndex();
+        garagesIndex.update(new ParkingSpot(10, ParkingType.CAR, true, 2, 1));
+        garagesIndex.update(new ParkingSpot(11, ParkingType.CAR, true, 2, -1));
+        garagesIndex.update(new ParkingSpot(12, ParkingType.CAR, true, 2, 0));
+        garagesIndex.update(new ParkingSpot(20, ParkingType.CAR, true, 3, 0));
+
+        assertEquals(11, garagesIndex.claimLowestAvailable(2, ParkingType.CAR));
+        assertEquals(12, garagesIndex.claimLowestAvailable(2, ParkingType.CAR));
+        assertEquals(10, garagesIndex.claimLowestAvailable(2, ParkingType.CAR));
+        assertEquals(-1, garagesIndex.claimLowestAvailable(2, ParkingType.CAR));
+        assertEquals(1, garagesIndex.countAvailable(3, ParkingType.CAR));
+        assertEquals(4, garagesIndex.getShardCount());
+    }
+
+    @Test
+    public void updateWithoutFacilityShouldKeepSpotInItsShard() {
+        ParkingSpotIndex garagesIndex = new ParkingSpotIndex();
+        garagesIndex.update(new ParkingSpot(10, ParkingType.CAR, true, 2, 3));
+        assertEquals(10, garagesIndex.claimLowestAvailable(2, ParkingType.CAR));
+
+        //given back by a caller that only knows the spot number and type
+        garagesIndex.update(new ParkingSpot(10, ParkingType.CAR, true));
+
+        assertEquals(0, garagesIndex.countAvailable(ParkingSpot.DEFAULT_FACILITY, ParkingType.CAR));
+        assertEquals(1, garagesIndex.countAvailable(2, ParkingType.CAR));
+        assertEquals(10, garagesIndex.getLowestAvailable(2, ParkingType.CAR));
+    }
+}
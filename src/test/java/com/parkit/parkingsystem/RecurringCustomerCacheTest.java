@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RecurringCustomerCacheTest {
+
+    private static final long TIME_TO_LIVE_MS = 1000;
+
+    private AtomicLong now;
+    private RecurringCustomerCache recurringCustomerCache;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        now = new AtomicLong(0);
+        recurringCustomerCache = new RecurringCustomerCache(2, TIME_TO_LIVE_MS, now::get);
+    }
+
+    @Test
+    public void getWhenVehicleCachedShouldReturnCountAndCountHit() {
+        recurringCustomerCache.put("ABCDEF", 3);
+
+        assertEquals(Integer.valueOf(3), recurringCustomerCache.get("ABCDEF"));
+        assertEquals(1, recurringCustomerCache.getHitCount());
+        assertEquals(0, recurringCustomerCache.getMissCount());
+    }
+
+    @Test
+    public void getWhenVehicleUnknownShouldReturnNullAndCountMiss() {
+        assertNull(recurringCustomerCache.get("ABCDEF"));
+        assertEquals(1, recurringCustomerCache.getMissCount());
+    }
+
+    @Test
+    public void incrementWhenVehicleCachedShouldCountNewTicket() {
+        recurringCustomerCache.put("ABCDEF", 1);
+
+        recurringCustomerCache.increment("ABCDEF");
+
+        assertEquals(Integer.valueOf(2), recurringCustomerCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void incrementWhenVehicleUnknownShouldNotCacheIt() {
+        recurringCustomerCache.increment("ABCDEF");
+
+        assertNull(recurringCustomerCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void putWhenLoadedShouldCacheCount() {
+        long loadToken = recurringCustomerCache.beginLoad("ABCDEF");
+
+        assertNull(recurringCustomerCache.get("ABCDEF"));
+        recurringCustomerCache.put("ABCDEF", 3, loadToken);
+
+        assertEquals(Integer.valueOf(3), recurringCustomerCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void putWhenTicketCountedDuringLoadShouldDropCount() {
+        long loadToken = recurringCustomerCache.beginLoad("ABCDEF");
+        //saved after the count was read
+        recurringCustomerCache.increment("ABCDEF");
+
+        recurringCustomerCache.put("ABCDEF", 3, loadToken);
+
+        assertNull(recurringCustomerCache.get("ABCDEF"));
+        assertEquals(Integer.valueOf(4), cacheLoaded("ABCDEF", 4));
+    }
+
+    @Test
+    public void putWhenLoadSupersededShouldKeepLastLoad() {
+        long firstToken = recurringCustomerCache.beginLoad("ABCDEF");
+        long secondToken = recurringCustomerCache.beginLoad("ABCDEF");
+
+        recurringCustomerCache.put("ABCDEF", 4, secondToken);
+        recurringCustomerCache.put("ABCDEF", 3, firstToken);
+
+        assertEquals(Integer.valueOf(4), recurringCustomerCache.get("ABCDEF"));
+    }
+
+    private Integer cacheLoaded(String vehicleRegNumber, int count) {
+        recurringCustomerCache.put(vehicleRegNumber, count, recurringCustomerCache.beginLoad(vehicleRegNumber));
+        return recurringCustomerCache.get(vehicleRegNumber);
+    }
+
+    @Test
+    public void getWhenEntryExpiredShouldReturnNull() {
+        recurringCustomerCache.put("ABCDEF", 1);
+
+        now.addAndGet(TIME_TO_LIVE_MS);
+
+        assertNull(recurringCustomerCache.get("ABCDEF"));
+        assertEquals(0, recurringCustomerCache.size());
+    }
+
+    @Test
+    public void putWhenCacheFullShouldEvictExpiredVehicles() {
+        recurringCustomerCache.put("AAAAAA", 1);
+        now.addAndGet(TIME_TO_LIVE_MS / 2);
+        recurringCustomerCache.put("BBBBBB", 1);
+        now.addAndGet(TIME_TO_LIVE_MS / 2);
+
+        recurringCustomerCache.put("CCCCCC", 1);
+
+        assertEquals(2, recurringCustomerCache.size());
+        assertEquals(Integer.valueOf(1), recurringCustomerCache.get("BBBBBB"));
+        assertEquals(Integer.valueOf(1), recurringCustomerCache.get("CCCCCC"));
+    }
+
+    @Test
+    public void putWhenCacheFullOfLiveVehiclesShouldLeaveVehicleOut() {
+        recurringCustomerCache.put("AAAAAA", 1);
+        recurringCustomerCache.put("BBBBBB", 1);
+
+        recurringCustomerCache.put("CCCCCC", 1);
+        recurringCustomerCache.put("DDDDDD", 1, recurringCustomerCache.beginLoad("DDDDDD"));
+
+        assertEquals(2, recurringCustomerCache.size());
+        assertNull(recurringCustomerCache.get("CCCCCC"));
+        assertNull(recurringCustomerCache.get("DDDDDD"));
+        assertEquals(Integer.valueOf(1), recurringCustomerCache.get("AAAAAA"));
+    }
+}
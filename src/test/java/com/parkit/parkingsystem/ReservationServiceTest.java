@@ -0,0 +1,130 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryReservationRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReservationServiceTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    private InMemoryParkingSpotRepository parkingSpotRepository;
+    private InMemoryReservationRepository reservationRepository;
+    private ReservationService reservationService;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        parkingSpotRepository = new InMemoryParkingSpotRepository(3, 2);
+        reservationRepository = new InMemoryReservationRepository();
+        reservationService = new ReservationService(parkingSpotRepository::getAvailabilityIndex, reservationRepository, 30 * MINUTE);
+        parkingService = new ParkingService(null, parkingSpotRepository, new InMemoryTicketRepository(parkingSpotRepository));
+        parkingService.setReservationService(reservationService);
+    }
+
+    private static Date inMinutes(long minutes) {
+        return new Date(System.currentTimeMillis() + minutes * MINUTE);
+    }
+
+    @Test
+    public void walkInSkipsSpotBookedSoon() {
+        Reservation reservation = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "RESERVED", inMinutes(20), inMinutes(80));
+
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.CAR, "WALKIN", new Date()).getTicket();
+
+        assertEquals(1, reservation.getParkingNumber());
+        assertEquals(2, ticket.getParkingSpot().getId());
+    }
+
+    @Test
+    public void spotBookedLaterIsGivenToWalkIn() {
+        reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "RESERVED", inMinutes(120), inMinutes(180));
+
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.CAR, "WALKIN", new Date()).getTicket();
+
+        assertEquals(1, ticket.getParkingSpot().getId());
+    }
+
+    @Test
+    public void overlappingBookingsTakeNextSpot() {
+        Reservation first = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "FIRST", inMinutes(120), inMinutes(180));
+        Reservation second = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "SECOND", inMinutes(150), inMinutes(200));
+        Reservation after = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "AFTER", inMinutes(180), inMinutes(240));
+
+        assertEquals(1, first.getParkingNumber());
+        assertEquals(2, second.getParkingNumber());
+        assertEquals(1, after.getParkingNumber());
+        assertEquals(3, reservationService.getReservationCount());
+    }
+
+    @Test
+    public void bookingStartingSoonNeedsAvailableSpot() {
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "PARKED", new Date());
+
+        Reservation reservation = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.BIKE, "RESERVED", inMinutes(10), inMinutes(60));
+        Reservation none = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.BIKE, "LATE", inMinutes(10), inMinutes(60));
+
+        assertEquals(5, reservation.getParkingNumber());
+        assertNull(none);
+    }
+
+    @Test
+    public void checkInReleasesReservation() {
+        reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.BIKE, "RESERVED", inMinutes(10), inMinutes(60));
+        reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.BIKE, "OTHER", inMinutes(10), inMinutes(60));
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, parkingService.processIncomingVehicle(ParkingType.BIKE, "WALKIN", new Date()).getStatus());
+
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.BIKE, "RESERVED", new Date()).getTicket();
+
+        assertNotNull(ticket);
+        assertEquals(4, ticket.getParkingSpot().getId());
+        assertEquals(1, reservationService.getReservationCount());
+        assertEquals(1, reservationRepository.getReservationsEndingAfter(System.currentTimeMillis()).size());
+    }
+
+    @Test
+    public void cancelFreesSpot() {
+        Reservation reservation = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "RESERVED", inMinutes(20), inMinutes(80));
+
+        reservationService.cancel(reservation);
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.CAR, "WALKIN", new Date()).getTicket();
+
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertEquals(0, reservationService.getReservationCount());
+    }
+
+    @Test
+    public void backToBackBookingsHoldSpotUntilBothAreGone() {
+        Reservation first = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "FIRST", inMinutes(10), inMinutes(20));
+        Reservation second = reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "SECOND", inMinutes(20), inMinutes(40));
+        assertEquals(first.getParkingNumber(), second.getParkingNumber());
+
+        reservationService.cancel(first);
+        assertEquals(2, parkingSpotRepository.getAvailabilityIndex().getLowestAvailable(ParkingType.CAR));
+        reservationService.cancel(second);
+
+        assertEquals(1, parkingSpotRepository.getAvailabilityIndex().getLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void bookingMustEndAfterItStarts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reservationService.book(ParkingSpot.ANY_FACILITY, ParkingType.CAR, "RESERVED", inMinutes(20), inMinutes(20)));
+    }
+}
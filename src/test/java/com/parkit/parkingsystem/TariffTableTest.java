@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffTable;
+import com.parkit.parkingsystem.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTableTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    //a Monday
+    private static long at(int dayOfMonth, int hour, int minute) {
+        return LocalDateTime.of(2024, 1, dayOfMonth, hour, minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static TariffTable peakTariffs() {
+        return new TariffTable.Builder(ZoneOffset.UTC)
+                .freeDuration(ParkingType.CAR, 0.5)
+                .rate(ParkingType.CAR, 1.0)
+                .rate(ParkingSpot.ANY_FACILITY, ParkingType.CAR, 3.0,
+                        EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), LocalTime.of(8, 0), LocalTime.of(18, 0))
+                .build();
+    }
+
+    @Test
+    public void fareTariffsGiveTheFareConstantsPrices() {
+        TariffTable tariffTable = TariffTable.fromFare();
+        long inTime = at(1, 10, 7);
+        for (long minutes : new long[]{0, 29, 30, 31, 45, 60, 24 * 60, 3 * 24 * 60 + 17}) {
+            long outTime = inTime + minutes * 60 * 1000;
+            double duration = ((double) outTime - (double) inTime) / HOUR;
+            assertEquals(Money.toMinorUnits((duration > Fare.CAR_FREE_DURATION_PAR_HOUR) ? duration * Fare.CAR_RATE_PER_HOUR : 0),
+                    tariffTable.priceInMinorUnits(ParkingSpot.DEFAULT_FACILITY, ParkingType.CAR, inTime, outTime));
+            assertEquals(Money.toMinorUnits((duration > Fare.BIKE_FREE_DURATION_PAR_HOUR) ? duration * Fare.BIKE_RATE_PER_HOUR : 0),
+                    tariffTable.priceInMinorUnits(ParkingSpot.DEFAULT_FACILITY, ParkingType.BIKE, inTime, outTime));
+        }
+    }
+
+    @Test
+    public void stayIsPricedAtTheRateOfEachHour() {
+        TariffTable tariffTable = peakTariffs();
+
+        //one off peak hour then one peak hour
+        assertEquals(4000, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(1, 7, 0), at(1, 9, 0)));
+        //saturday is off peak
+        assertEquals(2000, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(6, 9, 0), at(6, 11, 0)));
+        //a full week is 50 peak hours and 118 off peak hours
+        assertEquals(272000, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(1, 7, 0), at(8, 9, 0)));
+        //part of a bucket
+        assertEquals(2250, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(2, 8, 5), at(2, 8, 50)));
+        //free duration
+        assertEquals(0, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(2, 8, 0), at(2, 8, 30)));
+    }
+
+    @Test
+    public void facilityRulesOverrideTheDefaultRules() {
+        TariffTable tariffTable = new TariffTable.Builder(ZoneOffset.UTC)
+                .freeDuration(ParkingType.CAR, 0.5)
+                .rate(ParkingType.CAR, 1.5)
+                .rate(2, ParkingType.CAR, 2.0, EnumSet.allOf(DayOfWeek.class), LocalTime.MIDNIGHT, LocalTime.MIDNIGHT)
+                .build();
+
+        assertEquals(3000, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(1, 10, 0), at(1, 12, 0)));
+        assertEquals(4000, tariffTable.priceInMinorUnits(2, ParkingType.CAR, at(1, 10, 0), at(1, 12, 0)));
+        //the free duration of every facility still applies
+        assertEquals(0, tariffTable.priceInMinorUnits(2, ParkingType.CAR, at(1, 10, 0), at(1, 10, 20)));
+        assertThrows(IllegalArgumentException.class, () -> tariffTable.priceInMinorUnits(1, ParkingType.BIKE, at(1, 10, 0), at(1, 12, 0)));
+    }
+
+    @Test
+    public void parsedRulesUseTheirOffsetAndWrapAroundMidnight() throws IOException {
+        String rules = "# night rate\n"
+                + "offset,+01:00\n"
+                + "rate,CAR,1.0\n"
+                + "rate,CAR,0.5,0,SAT|SUN,22:00,02:00\n";
+        TariffTable tariffTable = TariffTable.parse(new BufferedReader(new StringReader(rules)));
+
+        //saturday 21:00 to sunday 03:00 local time, one hour at 1.0, four at 0.5 and one at 1.0
+        assertEquals(4000, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(6, 20, 0), at(7, 2, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> TariffTable.parse(new BufferedReader(new StringReader("rate,CAR,1.0,0,MON,08:10,09:00"))));
+    }
+
+    @Test
+    public void priceIsRoundedOnceToTheNearestMinorUnit() {
+        TariffTable tariffTable = peakTariffs();
+
+        //40 minutes at 1.0 then 31 seconds at 3.0 is 0.6666... + 0.0258333... = 0.6925
+        assertEquals(693, tariffTable.priceInMinorUnits(1, ParkingType.CAR, at(1, 7, 20), at(1, 8, 0) + 31000));
+        //halves are rounded away from zero
+        assertEquals(2, Money.divide(3, 2));
+        assertEquals(-2, Money.divide(-3, 2));
+        assertEquals(1, Money.divide(4, 3));
+    }
+
+    @Test
+    public void swappedTariffsApplyToTheNextFares() {
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(at(1, 7, 0)));
+        ticket.setOutTime(new Date(at(1, 9, 0)));
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(2 * Fare.CAR_RATE_PER_HOUR, ticket.getPrice());
+
+        fareCalculatorService.setTariffTable(peakTariffs());
+        fareCalculatorService.calculateFare(ticket);
+
+        assertEquals(4.0, ticket.getPrice());
+    }
+}
@@ -0,0 +1,185 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.dao.JournalParkingSpotRepository;
+import com.parkit.parkingsystem.dao.JournalTicketRepository;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketJournalTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private Path directory;
+    private TicketJournal journal;
+    private InMemoryParkingSpotRepository parkingSpots;
+    private InMemoryTicketRepository tickets;
+    private JournalTicketRepository ticketRepository;
+
+    @BeforeEach
+    private void setUpPerTest() throws IOException {
+        directory = Files.createTempDirectory("ticket-journal");
+    }
+
+    @AfterEach
+    private void tearDownPerTest() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private void open(int capacity) throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        parkingSpots = new InMemoryParkingSpotRepository(3, 2);
+        tickets = new InMemoryTicketRepository(parkingSpots);
+        journal = new TicketJournal(directory, capacity, parkingSpots, tickets);
+        ticketRepository = new JournalTicketRepository(tickets, journal);
+    }
+
+    private Ticket park(String vehicleRegNumber, ParkingType parkingType, Date inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(inTime);
+        assertTrue(ticketRepository.saveIncomingTicket(ticket, parkingType));
+        return ticket;
+    }
+
+    private void leave(String vehicleRegNumber, double price, Date outTime) {
+        Ticket ticket = ticketRepository.getOpenTicket(vehicleRegNumber);
+        ticket.setPrice(price);
+        ticket.setOutTime(outTime);
+        assertTrue(ticketRepository.closeTicket(ticket));
+    }
+
+    @Test
+    public void reopenShouldReplaySpotsAndTicketsTest() throws IOException {
+        open(TicketJournal.DEFAULT_CAPACITY);
+        Date inTime = new Date(System.currentTimeMillis() - ONE_HOUR);
+        Date outTime = new Date();
+        park("ABCDEF", ParkingType.CAR, inTime);
+        leave("ABCDEF", 1.5, outTime);
+        Ticket openTicket = park("ABCDEF", ParkingType.CAR, inTime);
+        park("GHIJKL", ParkingType.BIKE, inTime);
+
+        open(TicketJournal.DEFAULT_CAPACITY);
+
+        assertEquals(8, journal.getRecordCount());
+        assertEquals(2, tickets.getCountOfPreviousTickets("ABCDEF"));
+        Ticket replayedTicket = tickets.getOpenTicket("ABCDEF");
+        assertEquals(openTicket.getId(), replayedTicket.getId());
+        assertEquals(1, replayedTicket.getParkingSpot().getId());
+        assertEquals(inTime, replayedTicket.getInTime());
+        assertNull(replayedTicket.getOutTime());
+        assertEquals(2, parkingSpots.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(5, parkingSpots.getNextAvailableSlot(ParkingType.BIKE));
+        //new tickets continue the ids of the replayed ones
+        assertEquals(openTicket.getId() + 2, park("MNOPQR", ParkingType.CAR, inTime).getId());
+    }
+
+    @Test
+    public void fullJournalShouldBeCompactedIntoSnapshotTest() throws IOException {
+        open(4);
+        Date inTime = new Date(System.currentTimeMillis() - ONE_HOUR);
+        for (int visit = 0; visit < 10; visit++) {
+            park("ABCDEF", ParkingType.CAR, inTime);
+            leave("ABCDEF", visit, new Date());
+        }
+        park("GHIJKL", ParkingType.CAR, inTime);
+
+        assertTrue(Files.exists(directory.resolve(TicketJournal.SNAPSHOT_FILE)));
+        assertTrue(journal.getRecordCount() < 4);
+        open(4);
+
+        assertEquals(10, tickets.getCountOfPreviousTickets("ABCDEF"));
+        assertNull(tickets.getOpenTicket("ABCDEF"));
+        assertEquals(9.0, tickets.getTicket("ABCDEF").getPrice());
+        assertEquals(1, tickets.getOpenTicket("GHIJKL").getParkingSpot().getId());
+        assertEquals(2, parkingSpots.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void changesShouldBeSyncedBeforeTheyAreAcknowledgedTest() throws IOException {
+        open(TicketJournal.DEFAULT_CAPACITY);
+        park("ABCDEF", ParkingType.CAR, new Date(System.currentTimeMillis() - ONE_HOUR));
+        leave("ABCDEF", 1.5, new Date());
+
+        assertEquals(4, journal.getRecordCount());
+        assertEquals(0, journal.getUnsyncedRecordCount());
+    }
+
+    @Test
+    public void changesShouldNotBeSyncedWithoutSyncOnWriteTest() throws IOException {
+        parkingSpots = new InMemoryParkingSpotRepository(3, 2);
+        tickets = new InMemoryTicketRepository(parkingSpots);
+        journal = new TicketJournal(directory, TicketJournal.DEFAULT_CAPACITY, parkingSpots, tickets, false);
+        ticketRepository = new JournalTicketRepository(tickets, journal);
+        park("ABCDEF", ParkingType.CAR, new Date(System.currentTimeMillis() - ONE_HOUR));
+
+        assertEquals(2, journal.getUnsyncedRecordCount());
+        journal.compact();
+        assertEquals(0, journal.getUnsyncedRecordCount());
+    }
+
+    @Test
+    public void tornRecordShouldEndReplayTest() throws IOException {
+        open(TicketJournal.DEFAULT_CAPACITY);
+        Date inTime = new Date(System.currentTimeMillis() - ONE_HOUR);
+        park("ABCDEF", ParkingType.CAR, inTime);
+        park("GHIJKL", ParkingType.CAR, inTime);
+        journal.close();
+        //a crash while the fourth record, the ticket of GHIJKL, was being written
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(TicketJournal.JOURNAL_FILE).toFile(), "rw")) {
+            file.seek(3 * 64 + 40);
+            file.write(0x7f);
+        }
+        journal = null;
+
+        open(TicketJournal.DEFAULT_CAPACITY);
+
+        assertEquals(3, journal.getRecordCount());
+        assertNotNull(tickets.getOpenTicket("ABCDEF"));
+        assertNull(tickets.getOpenTicket("GHIJKL"));
+    }
+
+    @Test
+    public void spotChangesShouldBeReplayedTest() throws IOException {
+        open(TicketJournal.DEFAULT_CAPACITY);
+        JournalParkingSpotRepository parkingSpotRepository = new JournalParkingSpotRepository(parkingSpots, journal);
+        assertEquals(1, parkingSpotRepository.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotRepository.claimNextAvailableSlot(ParkingType.BIKE));
+
+        open(TicketJournal.DEFAULT_CAPACITY);
+
+        assertEquals(2, parkingSpots.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(5, parkingSpots.getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void tooLongVehicleRegNumberShouldNotTakeSpotTest() throws IOException {
+        open(TicketJournal.DEFAULT_CAPACITY);
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber("A VEHICLE REG NUMBER LONGER THAN A RECORD");
+        ticket.setInTime(new Date());
+
+        assertThrows(IllegalArgumentException.class, () -> ticketRepository.saveIncomingTicket(ticket, ParkingType.CAR));
+        assertEquals(3, parkingSpots.countAvailable(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,113 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotRepository;
+import com.parkit.parkingsystem.dao.InMemoryTicketRepository;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.SimulationReport;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TrafficProfile;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TrafficSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class TrafficSimulatorTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    private static String events(TrafficProfile profile) throws IOException {
+        StringWriter writer = new StringWriter();
+        new TrafficSimulator(null, profile, 1).writeEvents(writer);
+        return writer.toString();
+    }
+
+    private static TrafficProfile profile(long seed) {
+        TrafficProfile profile = new TrafficProfile();
+        profile.setSeed(seed);
+        profile.setHours(4);
+        profile.setArrivalsPerHour(300);
+        profile.setMeanStayMinutes(30);
+        return profile;
+    }
+
+    @Test
+    public void sameSeedGivesSameEvents() throws IOException {
+        String events = events(profile(42));
+
+        assertEquals(events, events(profile(42)));
+        assertNotEquals(events, events(profile(43)));
+        //every vehicle that enters leaves
+        String[] lines = events.split("\n");
+        long entries = Arrays.stream(lines).filter(line -> line.startsWith("IN,")).count();
+        assertEquals(lines.length, 2 * entries);
+    }
+
+    @Test
+    public void arrivalsRiseAroundPeaks() throws IOException {
+        TrafficProfile profile = profile(7);
+        profile.setHours(24);
+        profile.setArrivalsPerHour(100);
+        profile.setPeaks(Collections.singletonList(LocalTime.of(8, 0)));
+        int peakArrivals = 0;
+        int nightArrivals = 0;
+        for (String line : events(profile).split("\n")) {
+            String[] fields = line.split(",");
+            if (fields[0].equals("IN")) {
+                long hour = (Long.parseLong(fields[3]) - TrafficSimulator.START_TIME) / HOUR_MS;
+                if (hour == 7 || hour == 8) {
+                    peakArrivals++;
+                } else if (hour == 2 || hour == 3) {
+                    nightArrivals++;
+                }
+            }
+        }
+
+        assertTrue(peakArrivals > 2 * nightArrivals, peakArrivals + " arrivals at peak, " + nightArrivals + " at night");
+    }
+
+    @Test
+    public void concurrentLanesNeverShareASpot() throws InterruptedException {
+        InMemoryParkingSpotRepository parkingSpotRepository = new InMemoryParkingSpotRepository(40, 10);
+        ParkingService parkingService = new ParkingService(null, parkingSpotRepository, new InMemoryTicketRepository(parkingSpotRepository));
+
+        SimulationReport report = new TrafficSimulator(parkingService, profile(1), 4).run();
+
+        assertEquals(report.getScheduledEvents() / 2, report.getEntries() + report.getRejectedEntries());
+        assertTrue(report.getRejectedEntries() > 0);
+        assertEquals(report.getEntries(), report.getExits());
+        assertEquals(0, report.getFailures());
+        assertEquals(0, report.getDoubleAssignments());
+    }
+
+    @Test
+    public void spotGivenTwiceIsDetected() throws InterruptedException {
+        ParkingService parkingService = mock(ParkingService.class);
+        //every vehicle is parked on spot 1
+        when(parkingService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class))).thenAnswer(invocation -> {
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1, invocation.getArgument(0), false));
+            return new EntryResult(invocation.getArgument(1), EntryResult.Status.PARKED, ticket);
+        });
+        when(parkingService.processExitingVehicle(anyString(), any(Date.class)))
+                .thenAnswer(invocation -> new ExitResult(invocation.getArgument(0), ExitResult.Status.SETTLED, new Ticket()));
+
+        SimulationReport report = new TrafficSimulator(parkingService, profile(1), 2).run();
+
+        assertTrue(report.getDoubleAssignments() > 0);
+        assertEquals(report.getEntries(), report.getExits());
+    }
+}
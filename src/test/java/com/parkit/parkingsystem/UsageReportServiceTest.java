@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ClosedTicketSource;
+import com.parkit.parkingsystem.dao.TicketExportReader;
+import com.parkit.parkingsystem.model.DailyUsage;
+import com.parkit.parkingsystem.service.UsageReportService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageReportServiceTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private static long at(int dayOfMonth, int hour, int minute) {
+        return LocalDateTime.of(2024, 1, dayOfMonth, hour, minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Tickets of type, in time, out time and price rows, in in time order
+     */
+    private static ClosedTicketSource source(Object[]... tickets) {
+        return (fromInTime, toInTime, visitor) -> {
+            long count = 0;
+            for (Object[] ticket : tickets) {
+                long inTime = (Long) ticket[1];
+                if (inTime >= fromInTime && inTime < toInTime) {
+                    visitor.visit((ParkingType) ticket[0], inTime, (Long) ticket[2], (Long) ticket[3]);
+                    count++;
+                }
+            }
+            return count;
+        };
+    }
+
+    private static Object[] ticket(ParkingType parkingType, long inTime, long outTime, long price) {
+        return new Object[]{parkingType, inTime, outTime, price};
+    }
+
+    @Test
+    public void revenueStaysAndPeakOccupancyAreReportedPerDayAndType() throws IOException {
+        UsageReportService usageReportService = new UsageReportService(source(
+                ticket(ParkingType.CAR, at(1, 10, 0), at(1, 12, 0), 3000),
+                ticket(ParkingType.CAR, at(1, 11, 0), at(2, 9, 0), 33000),
+                ticket(ParkingType.BIKE, at(1, 11, 30), at(1, 12, 30), 1000),
+                ticket(ParkingType.CAR, at(2, 8, 0), at(2, 10, 0), 3000),
+                ticket(ParkingType.CAR, at(4, 10, 0), at(4, 11, 0), 1500)), ZoneOffset.UTC);
+        StringWriter csv = new StringWriter();
+
+        long count = usageReportService.writeCsv(FIRST_DAY, FIRST_DAY.plusDays(3), csv);
+
+        assertEquals(4, count);
+        assertEquals(UsageReportService.CSV_HEADER + "\n"
+                + "2024-01-01,CAR,1,3.000,120.0,2\n"
+                + "2024-01-01,BIKE,1,1.000,60.0,1\n"
+                + "2024-01-02,CAR,2,36.000,720.0,2\n", csv.toString());
+    }
+
+    @Test
+    public void vehicleParkedAllDayCountsInTheOccupancyOfThatDay() throws IOException {
+        List<DailyUsage> days = new ArrayList<>();
+        UsageReportService usageReportService = new UsageReportService(source(
+                ticket(ParkingType.CAR, at(1, 20, 0), at(3, 8, 0), 54000)), ZoneOffset.UTC);
+
+        usageReportService.aggregate(FIRST_DAY, FIRST_DAY.plusDays(7), days::add);
+
+        assertEquals(3, days.size());
+        assertEquals(0, days.get(1).getExits());
+        assertEquals(1, days.get(1).getPeakOccupancy());
+        assertEquals(54000, days.get(2).getRevenue());
+    }
+
+    @Test
+    public void completeDaysArePassedOnBeforeTheStreamEnds() throws IOException {
+        List<DailyUsage> days = new ArrayList<>();
+        List<Integer> daysAfterVisit = new ArrayList<>();
+        ClosedTicketSource tickets = source(
+                ticket(ParkingType.CAR, at(1, 10, 0), at(1, 12, 0), 3000),
+                ticket(ParkingType.CAR, at(3, 10, 0), at(3, 12, 0), 3000));
+        UsageReportService usageReportService = new UsageReportService((fromInTime, toInTime, visitor) ->
+                tickets.forEachClosedTicket(fromInTime, toInTime, (parkingType, inTime, outTime, price) -> {
+                    visitor.visit(parkingType, inTime, outTime, price);
+                    daysAfterVisit.add(days.size());
+                }), ZoneOffset.UTC);
+
+        usageReportService.aggregate(FIRST_DAY, FIRST_DAY.plusDays(7), days::add);
+
+        assertEquals(Arrays.asList(0, 1), daysAfterVisit);
+        assertEquals(2, days.size());
+    }
+
+    @Test
+    public void exportIsReadInOrderAndOpenTicketsAreSkipped() throws IOException {
+        Path export = Files.createTempFile("tickets", ".csv");
+        try {
+            Files.write(export, Arrays.asList(
+                    "IN_TIME,OUT_TIME,PRICE,TYPE",
+                    "2024-01-01 10:00:00,2024-01-01 12:00:00,3.000,CAR",
+                    "2024-01-01 11:00:00,NULL,0,CAR",
+                    "2024-01-01 11:30:00.5," + at(1, 12, 30) + ",1,BIKE"), StandardCharsets.UTF_8);
+            UsageReportService usageReportService = new UsageReportService(new TicketExportReader(export, ZoneOffset.UTC), ZoneOffset.UTC);
+            List<DailyUsage> days = new ArrayList<>();
+
+            assertEquals(2, usageReportService.aggregate(FIRST_DAY, FIRST_DAY.plusDays(1), days::add));
+            assertEquals(3000, days.get(0).getRevenue());
+            assertEquals(1000, days.get(1).getRevenue());
+
+            Files.write(export, Arrays.asList(
+                    "2024-01-02 10:00:00,2024-01-02 12:00:00,3.000,CAR",
+                    "2024-01-01 10:00:00,2024-01-01 12:00:00,3.000,CAR"), StandardCharsets.UTF_8);
+            assertThrows(IOException.class, () -> usageReportService.aggregate(FIRST_DAY, FIRST_DAY.plusDays(2), days::add));
+        } finally {
+            Files.delete(export);
+        }
+    }
+}
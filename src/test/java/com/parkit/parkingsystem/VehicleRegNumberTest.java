@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.model.VehicleRegNumber;
+import com.parkit.parkingsystem.util.LongKeyMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleRegNumberTest {
+
+    @Test
+    public void plateIsPackedAndUnpacked() {
+        VehicleRegNumber vehicleRegNumber = VehicleRegNumber.of(" ab-123 cd ");
+
+        assertTrue(vehicleRegNumber.isPacked());
+        assertEquals("AB-123 CD", vehicleRegNumber.toString());
+        assertEquals(VehicleRegNumber.pack("AB-123 CD"), vehicleRegNumber.getCode());
+        assertEquals(vehicleRegNumber, VehicleRegNumber.fromCode(vehicleRegNumber.getCode()));
+    }
+
+    @Test
+    public void distinctPlatesHaveDistinctCodes() {
+        assertNotEquals(VehicleRegNumber.pack("A"), VehicleRegNumber.pack("A0"));
+        assertNotEquals(VehicleRegNumber.pack("0"), VehicleRegNumber.pack(""));
+        assertEquals("ZZZZZZZZZZ", VehicleRegNumber.fromCode(VehicleRegNumber.pack("zzzzzzzzzz")).toString());
+        assertTrue(VehicleRegNumber.pack("A") < VehicleRegNumber.pack("AB"));
+    }
+
+    @Test
+    public void oddPlatesAreHashed() {
+        long code = VehicleRegNumber.pack("ÉTÉ-42");
+        long longCode = VehicleRegNumber.pack("ABCDEFGHIJK");
+
+        assertTrue(code < 0);
+        assertEquals(code, VehicleRegNumber.pack(" été-42"));
+        assertEquals("ÉTÉ-42", VehicleRegNumber.of(" été-42").toString());
+        assertEquals(VehicleRegNumber.of("ÉTÉ-42"), VehicleRegNumber.of(" été-42"));
+        assertTrue(longCode < 0);
+        assertNotEquals(code, longCode);
+        assertTrue(VehicleRegNumber.sameVehicle(code, "ÉTÉ-42", " été-42"));
+        assertFalse(VehicleRegNumber.sameVehicle(code, "ÉTÉ-42", "ÉTÉ-43"));
+    }
+
+    @Test
+    public void anyNumberOfOddPlatesIsPacked() {
+        Map<Long, String> plates = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            String plate = "P." + i;
+            long code = VehicleRegNumber.pack(plate);
+            assertTrue(code < 0);
+            assertNull(plates.put(code, plate), "code of " + plate);
+        }
+        assertEquals(VehicleRegNumber.pack("P.49999"), VehicleRegNumber.pack("p.49999 "));
+    }
+
+    @Test
+    public void platesLongerThanTheColumnAreRejected() {
+        assertEquals(" ab-123 cd ", VehicleRegNumber.validate(" ab-123 cd "));
+        assertEquals("ÉTÉ-42", VehicleRegNumber.validate("ÉTÉ-42"));
+        assertThrows(IllegalArgumentException.class, () -> VehicleRegNumber.validate("ABCDEFGHIJK"));
+        assertThrows(IllegalArgumentException.class, () -> VehicleRegNumber.validate(" "));
+    }
+
+    @Test
+    public void longKeyMapMatchesHashMap() {
+        LongKeyMap<Long> map = new LongKeyMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void longKeyMapRemovesOnlyExpectedValue() {
+        LongKeyMap<String> map = new LongKeyMap<>();
+        String value = new String("value");
+        map.put(1, value);
+
+        assertFalse(map.remove(1, new String("value")));
+        assertTrue(map.remove(1, value));
+        assertNull(map.compute(1, current -> null));
+        assertEquals("new", map.compute(1, current -> (current == null) ? "new" : current));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void longKeyMapRemovesMatchingValues() {
+        LongKeyMap<Long> map = new LongKeyMap<>();
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, key);
+        }
+
+        assertEquals(500, map.removeIf(value -> value % 2 == 0));
+        assertEquals(500, map.size());
+        for (long key = 0; key < 1000; key++) {
+            assertEquals((key % 2 == 0) ? null : Long.valueOf(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.WriteBehindTicketRepository;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindTicketRepositoryTest {
+
+    @Mock
+    private TicketDAO ticketDAO;
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+
+    private WriteBehindTicketRepository repository;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        ticketDAO.parkingSpotDAO = parkingSpotDAO;
+    }
+
+    @AfterEach
+    private void tearDownPerTest() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private Ticket incomingTicket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    public void incomingTicketsAreGivenASpotAtOnceAndSavedInOneBatch() {
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1, 2);
+        when(ticketDAO.saveIncomingTickets(anyList())).thenReturn(true);
+        repository = new WriteBehindTicketRepository(ticketDAO, 10, 10, 100);
+
+        Ticket first = incomingTicket("ABCDEF");
+        Ticket second = incomingTicket("GHIJKL");
+        assertTrue(repository.saveIncomingTicket(first, ParkingType.CAR));
+        assertTrue(repository.saveIncomingTicket(second, ParkingType.CAR));
+        repository.close();
+
+        assertEquals(1, first.getParkingSpot().getId());
+        assertEquals(2, second.getParkingSpot().getId());
+        assertEquals(2, repository.getQueuedTicketCount());
+        assertEquals(2, repository.getFlushedTicketCount());
+        assertEquals(0, repository.getQueueDepth());
+        verify(ticketDAO, never()).saveIncomingTicket(any(Ticket.class), any(ParkingType.class));
+    }
+
+    @Test
+    public void ticketThatCannotBeQueuedDoesNotTakeASpot() {
+        repository = new WriteBehindTicketRepository(ticketDAO, 10, 10, 100);
+
+        assertThrows(NullPointerException.class, () -> repository.saveIncomingTicket(incomingTicket(null), ParkingType.CAR));
+
+        verify(parkingSpotDAO, never()).reserveNextAvailableSlot(anyInt(), any(ParkingType.class));
+    }
+
+    @Test
+    public void failedBatchIsRetriedUntilSaved() {
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveIncomingTickets(anyList())).thenReturn(false, false, true);
+        repository = new WriteBehindTicketRepository(ticketDAO, 10, 10, 100);
+
+        assertTrue(repository.saveIncomingTicket(incomingTicket("ABCDEF"), ParkingType.CAR));
+        repository.close();
+
+        assertEquals(2, repository.getRetryCount());
+        assertEquals(1, repository.getFlushedTicketCount());
+        verify(ticketDAO, times(3)).saveIncomingTickets(anyList());
+    }
+
+    @Test
+    public void batchStillFailingIsSavedTicketByTicket() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch queued = new CountDownLatch(1);
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1, 2, 3);
+        when(ticketDAO.saveIncomingTickets(anyList())).thenAnswer(invocation -> {
+            List<Ticket> tickets = invocation.getArgument(0);
+            if (tickets.get(0).getVehicleRegNumber().equals("AAAAAA")) {
+                //hold the writer until the next two tickets are queued in one batch
+                writing.countDown();
+                queued.await();
+                return true;
+            }
+            //the second ticket cannot be saved, alone or with the third one
+            return tickets.size() == 1 && tickets.get(0).getVehicleRegNumber().equals("CCCCCC");
+        });
+        repository = new WriteBehindTicketRepository(ticketDAO, 10, 10, 100, 2);
+
+        assertTrue(repository.saveIncomingTicket(incomingTicket("AAAAAA"), ParkingType.CAR));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(repository.saveIncomingTicket(incomingTicket("BBBBBB"), ParkingType.CAR));
+        assertTrue(repository.saveIncomingTicket(incomingTicket("CCCCCC"), ParkingType.CAR));
+        queued.countDown();
+        //a reader of the dropped ticket is released without it
+        assertNull(repository.getOpenTicket("BBBBBB"));
+        repository.getOpenTicket("CCCCCC");
+
+        assertEquals(1, repository.getRetryCount());
+        assertEquals(2, repository.getFlushedTicketCount());
+        assertEquals(1, repository.getDroppedTicketCount());
+        verify(parkingSpotDAO).updateAvailabilityIndex(new ParkingSpot(2, ParkingType.CAR, true));
+    }
+
+    @Test
+    public void exitWaitsForTheQueuedTicketOfTheVehicle() {
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.saveIncomingTickets(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            List<Ticket> tickets = invocation.getArgument(0);
+            tickets.get(0).setId(42);
+            return true;
+        });
+        AtomicLong flushedWhenRead = new AtomicLong(-1);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenAnswer(invocation -> {
+            flushedWhenRead.set(repository.getFlushedTicketCount());
+            return null;
+        });
+        repository = new WriteBehindTicketRepository(ticketDAO, 10, 10, 100);
+
+        assertTrue(repository.saveIncomingTicket(incomingTicket("ABCDEF"), ParkingType.CAR));
+        repository.getOpenTicket("ABCDEF");
+
+        assertEquals(1, flushedWhenRead.get());
+    }
+
+    @Test
+    public void fullQueueFallsBackToSynchronousSave() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch databaseBack = new CountDownLatch(1);
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingSpot.ANY_FACILITY, ParkingType.CAR)).thenReturn(1, 2, 3);
+        when(ticketDAO.saveIncomingTickets(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            databaseBack.await();
+            return true;
+        });
+        when(ticketDAO.saveIncomingTicket(any(Ticket.class), any(ParkingType.class))).thenReturn(true);
+        repository = new WriteBehindTicketRepository(ticketDAO, 1, 10, 0);
+
+        //the writer is stuck on the first ticket, the second one fills the queue
+        assertTrue(repository.saveIncomingTicket(incomingTicket("AAAAAA"), ParkingType.CAR));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(repository.saveIncomingTicket(incomingTicket("BBBBBB"), ParkingType.CAR));
+        Ticket third = incomingTicket("CCCCCC");
+        assertTrue(repository.saveIncomingTicket(third, ParkingType.CAR));
+        databaseBack.countDown();
+
+        assertEquals(1, repository.getSynchronousSaveCount());
+        verify(parkingSpotDAO).updateAvailabilityIndex(new ParkingSpot(3, ParkingType.CAR, true));
+        verify(ticketDAO).saveIncomingTicket(third, ParkingType.CAR);
+    }
+}
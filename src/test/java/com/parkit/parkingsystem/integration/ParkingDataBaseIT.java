@@ -1,7 +1,9 @@
 package com.parkit.parkingsystem.integration;
 
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
@@ -18,6 +20,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Collections;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -42,6 +47,7 @@ public class ParkingDataBaseIT {
         parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
         ticketDAO = new TicketDAO();
         ticketDAO.dataBaseConfig = dataBaseTestConfig;
+        ticketDAO.parkingSpotDAO = parkingSpotDAO;
         dataBasePrepareService = new DataBasePrepareService();
     }
 
@@ -50,6 +56,8 @@ public class ParkingDataBaseIT {
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        //the ticket table has been truncated, forget the cached ticket counts
+        ticketDAO.recurringCustomerCache.clear();
     }
 
     @AfterAll
@@ -97,4 +105,62 @@ public class ParkingDataBaseIT {
         assertThat(ticketAfterExit.getOutTime()).isCloseTo(closeToOutDate,10000);
     }
 
+    @Test
+    public void testArchivedTicketsStillCountIT() {
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+        TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+        ticketArchiveDAO.dataBaseConfig = dataBaseTestConfig;
+
+        long archived = ticketArchiveDAO.archiveClosedBefore(System.currentTimeMillis() + 1000);
+        ticketDAO.recurringCustomerCache.clear();
+
+        assertEquals(1, archived);
+        assertEquals(1, ticketDAO.getCountOfPreviousTickets("ABCDEF"));
+        assertThat(ticketDAO.getTicket("ABCDEF").getOutTime()).isNotNull();
+    }
+
+    @Test
+    public void testReusedTicketIdIsArchivedIT() throws Exception {
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+        ticketArchiveDAO.dataBaseConfig = dataBaseTestConfig;
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+        ticketArchiveDAO.archiveClosedBefore(System.currentTimeMillis() + 1000);
+        //MySQL before 8 restarts the ids of an empty ticket table after a restart
+        Connection con = dataBaseTestConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement("alter table ticket AUTO_INCREMENT = 1")) {
+            ps.execute();
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+        parkingService.processIncomingVehicle();
+        parkingService.processExitingVehicle();
+
+        long archived = ticketArchiveDAO.archiveClosedBefore(System.currentTimeMillis() + 1000);
+        ticketDAO.recurringCustomerCache.clear();
+
+        assertEquals(1, archived);
+        assertEquals(2, ticketDAO.getCountOfPreviousTickets("ABCDEF"));
+    }
+
+    @Test
+    public void testBatchOnTakenSpotIsSavedOnNextSpotIT() {
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        parkingService.processIncomingVehicle();
+        //queued on spot 1 by a write-behind gate that did not see it taken
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("GHIJKL");
+        ticket.setPrice(0);
+        ticket.setInTime(new Date());
+
+        assertThat(ticketDAO.saveIncomingTickets(Collections.singletonList(ticket))).isTrue();
+
+        assertEquals(2, ticket.getParkingSpot().getId());
+        assertEquals(2, ticketDAO.getOpenTicket("GHIJKL").getParkingSpot().getId());
+        assertEquals(1, ticketDAO.getOpenTicket("ABCDEF").getParkingSpot().getId());
+    }
 }
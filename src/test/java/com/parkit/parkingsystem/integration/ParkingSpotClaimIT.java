@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Stress the spot claim with many gates at once, the test database has 3 CAR spots
+ */
+public class ParkingSpotClaimIT {
+
+    private static final int NUMBER_OF_GATES = 32;
+    private static final int NUMBER_OF_ROUNDS = 50;
+    private static final int NUMBER_OF_CAR_SPOTS = 3;
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static DataBasePrepareService dataBasePrepareService;
+    private static ExecutorService gates;
+
+    @BeforeAll
+    private static void setUp() {
+        dataBasePrepareService = new DataBasePrepareService();
+        gates = Executors.newFixedThreadPool(NUMBER_OF_GATES);
+    }
+
+    @BeforeEach
+    private void setUpPerTest() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        gates.shutdown();
+        dataBasePrepareService.closeConnection();
+    }
+
+    @Test
+    public void claimFromConcurrentGatesWithoutIndexShouldNeverDoubleAllocate() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+
+        claimFromConcurrentGates(parkingSpotDAO, false);
+    }
+
+    @Test
+    public void claimFromConcurrentGatesWithIndexShouldNeverDoubleAllocate() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+
+        claimFromConcurrentGates(parkingSpotDAO, true);
+    }
+
+    private void claimFromConcurrentGates(ParkingSpotDAO parkingSpotDAO, boolean withIndex) throws Exception {
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+            if (withIndex) {
+                parkingSpotDAO.loadAvailabilityIndex();
+            }
+            List<Callable<Integer>> claims = new ArrayList<>();
+            for (int gate = 0; gate < NUMBER_OF_GATES; gate++) {
+                claims.add(() -> parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+            }
+            List<Integer> claimedSpots = new ArrayList<>();
+            for (Future<Integer> claim : gates.invokeAll(claims)) {
+                if (claim.get() > 0) {
+                    claimedSpots.add(claim.get());
+                }
+            }
+            Set<Integer> distinctSpots = new HashSet<>(claimedSpots);
+            //every CAR spot is handed out exactly once per round
+            assertEquals(claimedSpots.size(), distinctSpots.size());
+            assertEquals(NUMBER_OF_CAR_SPOTS, claimedSpots.size());
+
+            dataBasePrepareService.clearDataBaseEntries();
+        }
+    }
+}
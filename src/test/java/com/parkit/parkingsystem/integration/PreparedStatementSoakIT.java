@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Run the entry and exit DAO calls over and over and check the server side prepared statement count stays flat.
+ * The number of DAO calls defaults to one million and can be changed with -Dsoak.operations=N
+ */
+public class PreparedStatementSoakIT {
+
+    private static final long OPERATIONS = Long.getLong("soak.operations", 1_000_000L);
+    //saveIncomingTicket, getOpenTicket, getCountOfPreviousTickets and closeTicket
+    private static final int OPERATIONS_PER_CYCLE = 4;
+    private static final int NUMBER_OF_SAMPLES = 10;
+    //vehicles in rotation, so the ticket history of each one stays short
+    private static final int NUMBER_OF_VEHICLES = 1000;
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static DataBasePrepareService dataBasePrepareService;
+
+    @BeforeAll
+    private static void setUp() {
+        dataBasePrepareService = new DataBasePrepareService();
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        dataBasePrepareService.clearDataBaseEntries();
+        dataBasePrepareService.closeConnection();
+    }
+
+    @Test
+    public void preparedStatementCountShouldStayFlatTest() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseTestConfig;
+        ticketDAO.parkingSpotDAO = parkingSpotDAO;
+        //nothing cached and no open ticket index, so every call goes to database
+        ticketDAO.recurringCustomerCache = new RecurringCustomerCache(0, 0);
+
+        long cycles = OPERATIONS / OPERATIONS_PER_CYCLE;
+        long cyclesPerSample = Math.max(1, cycles / NUMBER_OF_SAMPLES);
+        List<Long> samples = new ArrayList<>();
+        for (long cycle = 0; cycle < cycles; cycle++) {
+            String vehicleRegNumber = "SOAK-" + (cycle % NUMBER_OF_VEHICLES);
+            Ticket ticket = new Ticket();
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+            assertTrue(ticketDAO.saveIncomingTicket(ticket, ParkingType.CAR));
+
+            Ticket openTicket = ticketDAO.getOpenTicket(vehicleRegNumber);
+            assertNotNull(openTicket);
+            ticketDAO.getCountOfPreviousTickets(vehicleRegNumber);
+            openTicket.setOutTime(new Date());
+            openTicket.setPrice(1.5);
+            assertTrue(ticketDAO.closeTicket(openTicket));
+
+            if ((cycle + 1) % cyclesPerSample == 0) {
+                samples.add(getPreparedStatementCount());
+            }
+        }
+
+        //the first sample is taken once every pooled connection has prepared every query,
+        //a leak would make the later ones grow with the number of calls
+        assertThat(samples).isNotEmpty();
+        assertThat(samples).allSatisfy(sample -> assertThat(sample).isLessThanOrEqualTo(samples.get(0)));
+    }
+
+    private long getPreparedStatementCount() throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseTestConfig.getConnection();
+            //a plain statement, so the sample itself is not a prepared statement
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery("show global status like 'Prepared_stmt_count'")) {
+                rs.next();
+                return rs.getLong(2);
+            }
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+}
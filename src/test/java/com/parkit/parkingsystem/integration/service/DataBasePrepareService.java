@@ -1,9 +1,10 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.sql.PreparedStatement;
 
 public class DataBasePrepareService {
 
@@ -15,10 +16,22 @@ public class DataBasePrepareService {
             connection = dataBaseTestConfig.getConnection();
 
             //set parking entries to available
-            connection.prepareStatement("update parking set available = true").execute();
+            try (PreparedStatement ps = connection.prepareStatement("update parking set available = true")) {
+                ps.execute();
+            }
 
             //clear ticket entries;
-            connection.prepareStatement("truncate table ticket").execute();
+            try (PreparedStatement ps = connection.prepareStatement("truncate table ticket")) {
+                ps.execute();
+            }
+
+            //clear archived tickets and their visits
+            try (PreparedStatement ps = connection.prepareStatement("truncate table ticket_archive")) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("truncate table vehicle_visits")) {
+                ps.execute();
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -28,13 +41,8 @@ public class DataBasePrepareService {
     }
 
     public void closeConnection()  {
-        Connection connection = null;
-       try {
-           connection = dataBaseTestConfig.getConnection();
-           dataBaseTestConfig.closeConnection(connection);
-       }catch (Exception e){
-           e.printStackTrace();
-       }
+        //shut the connection pools down so no connection outlives the test run
+        DataBaseConfig.closeDataSources();
     }
 
 }